@@ -0,0 +1,226 @@
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import tester.*;
+
+//Builds large Boards with randomly placed mines by splitting their rows into bands of
+//BAND_ROWS, which threads fill in parallel. Each band gets its share of the mines in proportion
+//to its tiles and places them with its own Random, seeded from BatchRunner.gameSeed(seed, band),
+//so the same seed always gives the same Board whatever the number of threads. Once every band
+//has its mines, the threads count the neighboring mines of each band, reading the rows just
+//above and below it from the bands beside it
+class BandBuilder {
+  static final int BAND_ROWS = 64;
+
+  int rowMax;
+  int colMax;
+  int numMines;
+  long seed;
+
+  BandBuilder(int rowMax, int colMax, int numMines, long seed) {
+    if (numMines < 0 || (long) numMines > (long) rowMax * colMax) {
+      throw new IllegalArgumentException("Number of mines must be less than number of cells");
+    }
+    this.rowMax = rowMax;
+    this.colMax = colMax;
+    this.numMines = numMines;
+    this.seed = seed;
+  }
+
+  //Returns the number of bands
+  int bands() {
+    return (this.rowMax + BAND_ROWS - 1) / BAND_ROWS;
+  }
+
+  //Returns the index of the first tile of the given band
+  long startOf(int band) {
+    return (long) Math.min(this.rowMax, band * BAND_ROWS) * this.colMax;
+  }
+
+  //Returns how many mines the given band gets, rounded so that every band's add up to numMines
+  int minesIn(int band) {
+    long size = (long) this.rowMax * this.colMax;
+    return (int) (this.numMines * this.startOf(band + 1) / size
+        - this.numMines * this.startOf(band) / size);
+  }
+
+  //Builds the Board on one thread
+  Board build() {
+    Board board = new Board(this.rowMax, this.colMax);
+    int mines = 0;
+    for (int band = 0; band < this.bands(); band++) {
+      mines += this.place(board, band);
+    }
+    board.countRows(0, this.rowMax);
+    this.finish(board, mines);
+    return board;
+  }
+
+  //Builds the same Board as build, split across the given number of threads
+  Board build(int threads) {
+    if (threads <= 1) {
+      return this.build();
+    }
+    Board board = new Board(this.rowMax, this.colMax);
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    try {
+      int mines = this.runShards(pool, board, false, threads);
+      this.runShards(pool, board, true, threads);
+      this.finish(board, mines);
+      return board;
+    }
+    catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new RuntimeException(e.getCause());
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    }
+    finally {
+      pool.shutdownNow();
+    }
+  }
+
+  //Has the given number of threads place the mines of every band, or count them if counting
+  //is true, and waits for them, returning how many mines were placed
+  int runShards(ExecutorService pool, Board board, boolean counting, int threads)
+      throws ExecutionException, InterruptedException {
+    ArrayList<Future<Integer>> shards = new ArrayList<Future<Integer>>();
+    for (int i = 0; i < threads; i++) {
+      shards.add(pool.submit(new BandShard(this, board, counting, i, threads)));
+    }
+    int mines = 0;
+    for (Future<Integer> shard : shards) {
+      mines += shard.get();
+    }
+    return mines;
+  }
+
+  //Places the mines of the given band on the given Board without counting them, returning
+  //how many it placed. Bands that are mostly mines start full and have tiles cleared instead
+  int place(Board board, int band) {
+    int start = (int) this.startOf(band);
+    int size = (int) (this.startOf(band + 1) - start);
+    int mines = this.minesIn(band);
+    Random rand = new Random(BatchRunner.gameSeed(this.seed, band));
+    boolean dense = mines > size / 2;
+    byte fill = dense ? Board.MINE : 0;
+    if (dense) {
+      for (int i = start; i < start + size; i++) {
+        board.state[i] = Board.MINE;
+      }
+    }
+    int picks = dense ? size - mines : mines;
+    for (int i = 0; i < picks; i++) {
+      int pick = start + rand.nextInt(size);
+      while (board.state[pick] != fill) {
+        pick = start + rand.nextInt(size);
+      }
+      board.state[pick] = (byte) (fill ^ Board.MINE);
+    }
+    return mines;
+  }
+
+  //Counts the neighboring mines of the given band on the given Board
+  void count(Board board, int band) {
+    int from = band * BAND_ROWS;
+    board.countRows(from, Math.min(this.rowMax, from + BAND_ROWS));
+  }
+
+  //Sets the totals of the given Board once it has the given number of mines
+  void finish(Board board, int mines) {
+    board.mineCount = mines;
+    board.safeHidden = board.size() - mines;
+  }
+}
+
+//Represents one thread's share of a BandBuilder's bands: every step-th band from first
+class BandShard implements Callable<Integer> {
+  BandBuilder builder;
+  Board board;
+  boolean counting;
+  int first;
+  int step;
+
+  BandShard(BandBuilder builder, Board board, boolean counting, int first, int step) {
+    this.builder = builder;
+    this.board = board;
+    this.counting = counting;
+    this.first = first;
+    this.step = step;
+  }
+
+  //Places or counts the mines of this shard's bands, returning how many mines were placed
+  public Integer call() {
+    int mines = 0;
+    for (int band = this.first; band < this.builder.bands(); band += this.step) {
+      if (this.counting) {
+        this.builder.count(this.board, band);
+      }
+      else {
+        mines += this.builder.place(this.board, band);
+      }
+    }
+    return mines;
+  }
+}
+
+class ExamplesBandBuilder {
+
+  //Returns a Board with the same mines as the given one, placed and counted one by one
+  Board countedOneByOne(Board board) {
+    Board same = new Board(board.rowMax, board.colMax);
+    for (int i = 0; i < board.size(); i++) {
+      if (board.isMine(i)) {
+        same.makeMine(i);
+      }
+    }
+    return same;
+  }
+
+  void testShares(Tester t) {
+    BandBuilder builder = new BandBuilder(150, 7, 100, 1);
+    t.checkExpect(builder.bands(), 3);
+    t.checkExpect(builder.startOf(2), 896L);
+    t.checkExpect(builder.startOf(3), 1050L);
+    t.checkExpect(builder.minesIn(0) + builder.minesIn(1) + builder.minesIn(2), 100);
+    t.checkExpect(builder.minesIn(2), 15);
+    t.checkConstructorException(
+        new IllegalArgumentException("Number of mines must be less than number of cells"),
+        "BandBuilder", 2, 2, 5, 1L);
+  }
+
+  void testBuild(Tester t) {
+    BandBuilder builder = new BandBuilder(150, 7, 100, 1);
+    Board board = builder.build();
+    Board same = this.countedOneByOne(board);
+    t.checkExpect(board.mineCount, 100);
+    t.checkExpect(board.safeHidden, 950);
+    t.checkExpect(board.neighborMines, same.neighborMines);
+    t.checkExpect(board.state, same.state);
+    board.checkCounts();
+    t.checkExpect(builder.build(2).state, board.state);
+    t.checkExpect(builder.build(3).neighborMines, board.neighborMines);
+    t.checkExpect(builder.build(8).state, board.state);
+    t.checkExpect(new BandBuilder(150, 7, 100, 2).build().state.equals(board.state), false);
+  }
+
+  void testDense(Tester t) {
+    Board board = new BandBuilder(70, 30, 1900, 4).build(2);
+    t.checkExpect(board.mineCount, 1900);
+    t.checkExpect(board.neighborMines, this.countedOneByOne(board).neighborMines);
+    Board full = new BandBuilder(65, 3, 195, 4).build();
+    t.checkExpect(full.safeHidden, 0);
+    t.checkExpect(full.neighborMines[0], (byte) 3);
+    Board empty = new BandBuilder(65, 3, 0, 4).build(4);
+    t.checkExpect(empty.state, new byte[195]);
+  }
+}
@@ -0,0 +1,206 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import tester.*;
+
+//Represents many reveals and flags to be made at once with MineWorld.apply, as an automated
+//player or a replay tool would send them
+class MoveBatch {
+  int size = 0;
+  int[] rows;
+  int[] cols;
+  boolean[] flags;
+
+  MoveBatch() {
+    this(16);
+  }
+
+  //Creates an empty batch with room for the given number of moves before it grows
+  MoveBatch(int capacity) {
+    this.rows = new int[Math.max(1, capacity)];
+    this.cols = new int[Math.max(1, capacity)];
+    this.flags = new boolean[Math.max(1, capacity)];
+  }
+
+  //Adds a reveal of the tile at the given row and column, returning this batch
+  MoveBatch reveal(int row, int col) {
+    return this.add(row, col, false);
+  }
+
+  //Adds a flag toggle on the tile at the given row and column, returning this batch
+  MoveBatch flag(int row, int col) {
+    return this.add(row, col, true);
+  }
+
+  //Adds a move on the tile at the given row and column, returning this batch
+  MoveBatch add(int row, int col, boolean flag) {
+    if (this.size == this.rows.length) {
+      this.rows = Arrays.copyOf(this.rows, this.size * 2);
+      this.cols = Arrays.copyOf(this.cols, this.size * 2);
+      this.flags = Arrays.copyOf(this.flags, this.size * 2);
+    }
+    this.rows[this.size] = row;
+    this.cols[this.size] = col;
+    this.flags[this.size] = flag;
+    this.size += 1;
+    return this;
+  }
+}
+
+//Represents what a MoveBatch changed: every tile it revealed, in the order they were revealed,
+//every tile whose flag it toggled, how many moves it kept and the game's status afterwards
+class BatchOutcome {
+  int[] revealed;
+  int[] flagged;
+  int moves;
+  GameStatus status;
+
+  BatchOutcome(int[] revealed, int[] flagged, int moves, GameStatus status) {
+    this.revealed = revealed;
+    this.flagged = flagged;
+    this.moves = moves;
+    this.status = status;
+  }
+}
+
+class ExamplesBatch {
+
+  //Makes a 6x6 game with a wall of mines down its third column
+  MineWorld world() {
+    MineWorld world = new MineWorld(6, 6, new Random(1));
+    for (int row = 0; row < 6; row++) {
+      world.board.makeMine(row * 6 + 2);
+    }
+    return world;
+  }
+
+  void testRevealAll(Tester t) {
+    Board board = this.world().board;
+    board.toggleFlag(35);
+    Board same = this.world().board;
+    same.toggleFlag(35);
+
+    int[] seeds = {0, 0, 35, 15, 5, 30};
+    int[] ends = new int[seeds.length];
+    int count = board.revealAll(seeds, seeds.length, ends);
+    int total = 0;
+    for (int seed : seeds) {
+      total += same.reveal(seed);
+    }
+    t.checkExpect(count, total);
+    t.checkExpect(count, 30);
+    t.checkExpect(ends, new int[] {12, 12, 12, 13, 30, 30});
+    t.checkExpect(board.state, same.state);
+    t.checkExpect(board.safeHidden, same.safeHidden);
+    t.checkExpect(board.revealed[12], 15);
+    t.checkExpect(board.revealed[13], 5);
+    board.checkCounts();
+    t.checkExpect(board.revealAll(seeds, seeds.length, ends), 0);
+    t.checkExpect(ends, new int[] {0, 0, 0, 0, 0, 0});
+    t.checkExpect(board.floodDepth, 0);
+  }
+
+  void testApply(Tester t) {
+    MineWorld world = this.world();
+    BatchOutcome outcome = world.apply(new MoveBatch(1).reveal(0, 0).flag(0, 0).flag(5, 5)
+        .flag(0, 0).reveal(3, 0).reveal(3, 0).reveal(0, 3));
+    MineWorld same = this.world();
+    same.flag(0, 0);
+    same.flag(5, 5);
+    same.reveal(3, 0);
+    same.reveal(0, 3);
+    t.checkExpect(world.board.state, same.board.state);
+    t.checkExpect(outcome.flagged, new int[] {0, 35});
+    t.checkExpect(outcome.revealed.length, 13);
+    t.checkExpect(outcome.revealed[0], 18);
+    t.checkExpect(outcome.revealed[12], 3);
+    t.checkExpect(outcome.moves, 4);
+    t.checkExpect(world.moves, 4);
+    t.checkExpect(outcome.status, GameStatus.PLAYING);
+
+    t.checkExpect(world.apply(new MoveBatch().reveal(0, 5)).status, GameStatus.WON);
+    t.checkExpect(world.undo(), true);
+    t.checkExpect(world.board.state, same.board.state);
+    t.checkExpect(world.undo(), true);
+    t.checkExpect(world.board.isRevealed(3), false);
+    t.checkExpect(world.undo(), true);
+    t.checkExpect(world.board.isRevealed(18), false);
+    t.checkExpect(world.board.isFlagged(0), true);
+
+    t.checkException(new IllegalArgumentException("Tile is not on the board"), this.world(),
+        "apply", new MoveBatch().flag(0, 0).reveal(6, 0));
+    MineWorld untouched = this.world();
+    t.checkExpect(untouched.apply(new MoveBatch()).moves, 0);
+    t.checkExpect(untouched.board.state, this.world().board.state);
+  }
+
+  void testUnflagForgets(Tester t) {
+    //  0 1 .
+    //  0 1 *   where a flag on 2 makes the mine at 5 look safe until a batch takes it away
+    MineWorld world = new MineWorld(2, 3, new Random(1));
+    world.board.makeMine(5);
+    world.reveal(0, 0);
+    world.apply(new MoveBatch().flag(0, 2));
+    t.checkExpect(world.solver().suggest(), 5);
+    world.apply(new MoveBatch().flag(0, 2).flag(1, 2));
+    t.checkExpect(world.solver, null);
+    t.checkExpect(world.solver().suggest(), 2);
+    world.apply(new MoveBatch().flag(1, 2));
+    t.checkExpect(world.solver().suggest(), -1);
+  }
+
+  void testWaiting(Tester t) {
+    NoGuessGenerator generator = new NoGuessGenerator(9, 9, 10);
+    MineWorld world = new MineWorld(generator, 3);
+    world.apply(new MoveBatch().flag(0, 0).reveal(0, 0).reveal(4, 4).reveal(8, 8));
+    MineWorld same = new MineWorld(generator, 3);
+    same.flag(0, 0);
+    same.reveal(4, 4);
+    same.reveal(8, 8);
+    t.checkExpect(world.waiting, false);
+    t.checkExpect(world.board.state, same.board.state);
+  }
+
+  void testJournal(Tester t) {
+    Path file;
+    try {
+      file = Files.createTempFile("batch", ".journal");
+      file.toFile().deleteOnExit();
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    MineWorld world = new MineWorld(16, 30, 99, 5L);
+    world.startJournal(file, 3);
+    Random rand = new Random(2);
+    for (int round = 0; round < 4; round++) {
+      MoveBatch batch = new MoveBatch();
+      for (int i = 0; i < 6; i++) {
+        batch.add(rand.nextInt(16), rand.nextInt(30), i % 3 == 2);
+      }
+      world.apply(batch);
+    }
+    world.journal.close();
+
+    Replay replay = new Replay(file);
+    t.checkExpect(replay.moveCount, world.moves);
+    t.checkExpect(replay.snapshotCount > 0, true);
+    t.checkExpect(replay.end().board.state, world.board.state);
+    t.checkExpect(replay.at(world.moves - 1).board.state,
+        this.replayFromStart(replay, world.moves - 1).board.state);
+  }
+
+  //Returns the game in the given replay after the given number of moves, played again from
+  //its first move without using any snapshot
+  MineWorld replayFromStart(Replay replay, int moves) {
+    MineWorld world = replay.start();
+    for (int i = 0; i < moves; i++) {
+      Replay.apply(world, replay.moves[i]);
+    }
+    return world;
+  }
+}
@@ -0,0 +1,424 @@
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import tester.*;
+
+//Represents an operation whose speed is measured by Benchmarks
+interface IBenchmark {
+
+  //Runs the operation once, returning a value that depends on its work so it cannot be skipped
+  long run();
+
+}
+
+//Builds a whole game: placing the mines and counting their neighbors
+class ConstructBench implements IBenchmark {
+  int rowMax;
+  int colMax;
+  int numMines;
+  Random rand = new Random(1);
+
+  ConstructBench(int rowMax, int colMax, int numMines) {
+    this.rowMax = rowMax;
+    this.colMax = colMax;
+    this.numMines = numMines;
+  }
+
+  //Builds one board
+  public long run() {
+    return new MineWorld(this.rowMax, this.colMax, this.numMines, this.rand).board.mineCount;
+  }
+}
+
+//Builds a board by bands with a BandBuilder on the given number of threads, with a new seed
+//each run
+class BandBench implements IBenchmark {
+  int rowMax;
+  int colMax;
+  int numMines;
+  int threads;
+  long seed = 0;
+
+  BandBench(int rowMax, int colMax, int numMines, int threads) {
+    this.rowMax = rowMax;
+    this.colMax = colMax;
+    this.numMines = numMines;
+    this.threads = threads;
+  }
+
+  //Builds one board
+  public long run() {
+    this.seed += 1;
+    return new BandBuilder(this.rowMax, this.colMax, this.numMines, this.seed)
+        .build(this.threads).mineCount;
+  }
+}
+
+//Opens the empty region around one tile and then hides it again, so that each run does the
+//same fill
+class FloodFillBench implements IBenchmark {
+  Board board;
+  int start;
+
+  FloodFillBench(int rowMax, int colMax, int numMines) {
+    MineWorld world = new MineWorld(rowMax, colMax, numMines, new Random(1));
+    this.board = world.board;
+    this.start = 0;
+    for (int i = 0; i < this.board.size(); i++) {
+      if (this.board.neighborMines[i] == 0 && !this.board.isMine(i)) {
+        this.start = i;
+        break;
+      }
+    }
+  }
+
+  //Fills from the start tile and hides the tiles it revealed
+  public long run() {
+    int count = this.board.floodFill(this.start);
+    for (int i = 0; i < count; i++) {
+      this.board.clear(this.board.revealed[i], Board.REVEALED);
+    }
+    return count;
+  }
+}
+
+//Counts the mines around every tile, either on a Board one tile at a time or on a BitBoard 64
+//tiles at a time
+class CountBench implements IBenchmark {
+  Board board;
+  BitBoard bits;
+
+  CountBench(int rowMax, int colMax, int numMines, boolean useBits) {
+    this.board = new MineWorld(rowMax, colMax, numMines, new Random(1)).board;
+    if (useBits) {
+      this.bits = BitBoard.of(this.board);
+    }
+  }
+
+  //Counts every tile's neighbors once
+  public long run() {
+    if (this.bits != null) {
+      this.bits.countNeighborMines();
+      return this.bits.zero[0];
+    }
+    this.board.countAllNeighborMines();
+    return this.board.neighborMines[0];
+  }
+}
+
+//Opens the same empty region as FloodFillBench with a ParallelFill on the given number of
+//threads and then hides it again
+class ParallelFloodBench implements IBenchmark {
+  FloodFillBench flood;
+  ParallelFill fill;
+
+  ParallelFloodBench(int rowMax, int colMax, int numMines, int threads) {
+    this.flood = new FloodFillBench(rowMax, colMax, numMines);
+    this.fill = new ParallelFill(this.flood.board, threads);
+  }
+
+  //Fills from the start tile and hides the tiles it revealed
+  public long run() {
+    Board board = this.flood.board;
+    int count = this.fill.fill(this.flood.start);
+    for (int i = 0; i < count; i++) {
+      board.clear(board.revealed[i], Board.REVEALED);
+    }
+    return count;
+  }
+}
+
+//Opens the same empty region as FloodFillBench on a BitBoard and then hides it again, copying
+//back only the rows the fill changed
+class BitFloodBench implements IBenchmark {
+  BitBoard bits;
+  long[] hidden;
+  int start;
+
+  BitFloodBench(int rowMax, int colMax, int numMines) {
+    FloodFillBench flood = new FloodFillBench(rowMax, colMax, numMines);
+    this.bits = BitBoard.of(flood.board);
+    this.hidden = this.bits.revealed.clone();
+    this.start = flood.start;
+  }
+
+  //Fills from the start tile and hides the tiles it revealed
+  public long run() {
+    long count = this.bits.floodFill(this.start / this.bits.colMax,
+        this.start % this.bits.colMax);
+    for (int r = 0; r < this.bits.rowMax; r++) {
+      if (this.bits.dirtyRows[r]) {
+        this.bits.dirtyRows[r] = false;
+        System.arraycopy(this.hidden, r * this.bits.words, this.bits.revealed,
+            r * this.bits.words, this.bits.words);
+      }
+    }
+    this.bits.safeHidden += (int) count;
+    return count;
+  }
+}
+
+//Checks whether a game in progress has been won or lost
+class TickBench implements IBenchmark {
+  MineWorld world;
+
+  TickBench(int rowMax, int colMax, int numMines) {
+    this.world = new MineWorld(rowMax, colMax, numMines, new Random(1));
+  }
+
+  //Runs one tick
+  public long run() {
+    this.world.onTick();
+    return this.world.board.safeHidden;
+  }
+}
+
+//Draws a frame of a game, optionally flagging one tile before each frame
+class SceneBench implements IBenchmark {
+  MineWorld world;
+  boolean change;
+  int next = 0;
+
+  SceneBench(int rowMax, int colMax, int numMines, boolean change) {
+    this.world = new MineWorld(rowMax, colMax, numMines, new Random(1));
+    this.change = change;
+    this.world.makeScene();
+  }
+
+  //Draws one frame
+  public long run() {
+    if (this.change) {
+      this.world.board.toggleFlag(this.next);
+      this.next = (this.next + this.world.colMax + 1) % this.world.board.size();
+    }
+    return this.world.makeScene().hashCode();
+  }
+}
+
+//Visits the neighbors of a block of tiles through Cell.neighbors and NeighborIterator
+class NeighborIteratorBench implements IBenchmark {
+  MineWorld world;
+  int tiles;
+
+  NeighborIteratorBench(int rowMax, int colMax, int numMines) {
+    this.world = new MineWorld(rowMax, colMax, numMines, new Random(1));
+    this.tiles = Math.min(this.world.board.size(), 10000);
+  }
+
+  //Counts the mines around each tile in the block
+  public long run() {
+    long mines = 0;
+    for (int i = 0; i < this.tiles; i++) {
+      NeighborIterator map = new NeighborIterator(this.world.cellAt(i).neighbors());
+      while (map.hasNext()) {
+        if (map.next().mineStatus()) {
+          mines += 1;
+        }
+      }
+    }
+    return mines;
+  }
+}
+
+//Visits the neighbors of a block of tiles through Board.neighbors
+class BoardNeighborsBench implements IBenchmark {
+  Board board;
+  int tiles;
+  int[] around = new int[8];
+
+  BoardNeighborsBench(int rowMax, int colMax, int numMines) {
+    this.board = new MineWorld(rowMax, colMax, numMines, new Random(1)).board;
+    this.tiles = Math.min(this.board.size(), 10000);
+  }
+
+  //Counts the mines around each tile in the block
+  public long run() {
+    long mines = 0;
+    for (int i = 0; i < this.tiles; i++) {
+      int count = this.board.neighbors(i, this.around);
+      for (int j = 0; j < count; j++) {
+        mines += this.board.state[this.around[j]] & Board.MINE;
+      }
+    }
+    return mines;
+  }
+}
+
+//Works out the chance of a mine on every tile of a game part way through, played with the
+//SolverStrategy, either counting every component again or reusing the counts from before
+class ProbabilityBench implements IBenchmark {
+  MineWorld world;
+  boolean cached;
+
+  ProbabilityBench(int rowMax, int colMax, int numMines, boolean cached) {
+    Random rand = new Random(1);
+    this.world = new MineWorld(rowMax, colMax, numMines, rand);
+    this.cached = cached;
+    IStrategy strategy = new SolverStrategy();
+    for (int i = 0; i < (rowMax * colMax) / 20 && this.world.status() == GameStatus.PLAYING;
+        i++) {
+      strategy.move(this.world, rand);
+    }
+  }
+
+  //Works out the chances once
+  public long run() {
+    if (!this.cached) {
+      this.world.probabilities().cache.clear();
+    }
+    return this.world.probabilities().compute().length;
+  }
+}
+
+//Measures the time and memory taken by the main operations of the game, over a range of
+//board sizes and mine densities
+class Benchmarks {
+  static final int[][] SIZES = {{9, 9}, {16, 30}, {100, 100}, {500, 500}, {2000, 2000}};
+  static final double[] DENSITIES = {0.0, 0.05, 0.15, 0.2};
+
+  //Runs the given benchmark repeatedly for about the given number of milliseconds to warm it
+  //up, then again for as long to measure it, returning a line with its name, the number of
+  //runs, the average nanoseconds per run and the average bytes allocated per run
+  static String measure(String name, IBenchmark bench, long millis) {
+    long sink = Benchmarks.repeat(bench, millis)[2];
+
+    long allocated = Benchmarks.allocatedBytes();
+    long[] timed = Benchmarks.repeat(bench, millis);
+    long bytes = Benchmarks.allocatedBytes() - allocated;
+    sink += timed[2];
+
+    return String.format("%-40s %10d runs %14d ns/op %14d B/op%s", name, timed[0],
+        timed[1] / timed[0], allocated < 0 ? -1 : bytes / timed[0], sink == 42 ? " " : "");
+  }
+
+  //Runs the given benchmark at least once and until the given number of milliseconds have
+  //passed, returning the number of runs, the nanoseconds taken, and a sum of the results
+  static long[] repeat(IBenchmark bench, long millis) {
+    long runs = 0;
+    long sink = 0;
+    long start = System.nanoTime();
+    long end = start + (millis * 1000000);
+    long now = start;
+    while (runs == 0 || now < end) {
+      sink += bench.run();
+      runs += 1;
+      now = System.nanoTime();
+    }
+    return new long[] {runs, now - start, sink};
+  }
+
+  //Returns the number of bytes this thread has allocated so far, or -1 if the JVM cannot say
+  static long allocatedBytes() {
+    java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    if (threads instanceof com.sun.management.ThreadMXBean) {
+      return ((com.sun.management.ThreadMXBean) threads)
+          .getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    return -1;
+  }
+
+  //Runs every benchmark for each size and density. Takes the number of milliseconds to spend
+  //warming up and measuring each one, which defaults to 1000
+  public static void main(String[] args) {
+    long millis = args.length > 0 ? Long.parseLong(args[0]) : 1000;
+    for (int[] size : Benchmarks.SIZES) {
+      for (double density : Benchmarks.DENSITIES) {
+        int rows = size[0];
+        int cols = size[1];
+        int mines = (int) (rows * cols * density);
+        String board = rows + "x" + cols + " " + (int) (density * 100) + "% ";
+        System.out.println(Benchmarks.measure(board + "construct",
+            new ConstructBench(rows, cols, mines), millis));
+        System.out.println(Benchmarks.measure(board + "construct by bands",
+            new BandBench(rows, cols, mines, Runtime.getRuntime().availableProcessors()),
+            millis));
+        System.out.println(Benchmarks.measure(board + "floodFill",
+            new FloodFillBench(rows, cols, mines), millis));
+        System.out.println(Benchmarks.measure(board + "parallel floodFill",
+            new ParallelFloodBench(rows, cols, mines,
+                Runtime.getRuntime().availableProcessors()), millis));
+        System.out.println(Benchmarks.measure(board + "BitBoard floodFill",
+            new BitFloodBench(rows, cols, mines), millis));
+        System.out.println(Benchmarks.measure(board + "countNeighborMines",
+            new CountBench(rows, cols, mines, false), millis));
+        System.out.println(Benchmarks.measure(board + "BitBoard countNeighborMines",
+            new CountBench(rows, cols, mines, true), millis));
+        System.out.println(Benchmarks.measure(board + "onTick",
+            new TickBench(rows, cols, mines), millis));
+        System.out.println(Benchmarks.measure(board + "makeScene",
+            new SceneBench(rows, cols, mines, false), millis));
+        System.out.println(Benchmarks.measure(board + "makeScene flag",
+            new SceneBench(rows, cols, mines, true), millis));
+        System.out.println(Benchmarks.measure(board + "NeighborIterator",
+            new NeighborIteratorBench(rows, cols, mines), millis));
+        System.out.println(Benchmarks.measure(board + "Board.neighbors",
+            new BoardNeighborsBench(rows, cols, mines), millis));
+        if (rows * cols <= 250000) {
+          System.out.println(Benchmarks.measure(board + "probabilities",
+              new ProbabilityBench(rows, cols, mines, false), millis));
+          System.out.println(Benchmarks.measure(board + "probabilities cached",
+              new ProbabilityBench(rows, cols, mines, true), millis));
+        }
+      }
+    }
+  }
+}
+
+class ExamplesBenchmarks {
+
+  void testRepeat(Tester t) {
+    long[] result = Benchmarks.repeat(new ConstructBench(9, 9, 10), 0);
+    t.checkExpect(result[0], 1L);
+    t.checkExpect(result[2], 10L);
+  }
+
+  void testFloodFillBench(Tester t) {
+    FloodFillBench bench = new FloodFillBench(9, 9, 0);
+    t.checkExpect(bench.run(), 81L);
+    t.checkExpect(bench.board.isRevealed(40), false);
+    t.checkExpect(bench.board.safeHidden, 81);
+    t.checkExpect(bench.run(), 81L);
+    ParallelFloodBench parallel = new ParallelFloodBench(9, 9, 0, 2);
+    parallel.fill.minSize = 0;
+    parallel.fill.blockShift = 2;
+    t.checkExpect(parallel.run(), 81L);
+    t.checkExpect(parallel.flood.board.safeHidden, 81);
+    t.checkExpect(parallel.run(), 81L);
+  }
+
+  void testBitBoardBenches(Tester t) {
+    BitFloodBench flood = new BitFloodBench(9, 9, 0);
+    t.checkExpect(flood.run(), 81L);
+    t.checkExpect(flood.bits.isRevealedAt(4, 4), false);
+    t.checkExpect(flood.bits.safeHidden, 81);
+    t.checkExpect(flood.run(), 81L);
+    t.checkExpect(new CountBench(9, 9, 0, true).run(), (1L << 9) - 1);
+    t.checkExpect(new CountBench(3, 3, 9, false).run(), 3L);
+    t.checkExpect(new BandBench(100, 10, 250, 2).run(), 250L);
+  }
+
+  void testBenches(Tester t) {
+    t.checkExpect(new TickBench(9, 9, 10).run(), 71L);
+    SceneBench scene = new SceneBench(9, 9, 10, true);
+    scene.run();
+    t.checkExpect(scene.world.board.isFlagged(0), true);
+    t.checkExpect(scene.next, 10);
+    t.checkExpect(new NeighborIteratorBench(3, 3, 9).run(), 40L);
+    t.checkExpect(new BoardNeighborsBench(3, 3, 9).run(), 40L);
+    ProbabilityBench chances = new ProbabilityBench(16, 30, 99, true);
+    t.checkExpect(chances.world.moves > 0, true);
+    t.checkExpect(chances.run(), 480L);
+    int hits = chances.world.probabilities().hits;
+    t.checkExpect(chances.run(), 480L);
+    t.checkExpect(chances.world.probabilities().hits - hits,
+        chances.world.probabilities().cache.size());
+  }
+
+  void testMeasure(Tester t) {
+    String line = Benchmarks.measure("construct", new ConstructBench(9, 9, 10), 1);
+    t.checkExpect(line.startsWith("construct "), true);
+    t.checkExpect(line.contains(" ns/op "), true);
+    t.checkExpect(line.contains(" B/op"), true);
+    t.checkExpect(Benchmarks.allocatedBytes() > 0, true);
+  }
+}
@@ -0,0 +1,462 @@
+import java.util.Arrays;
+import java.util.Random;
+
+import tester.*;
+
+//Represents the tiles of a Minesweeper game as planes of bits, one bit per tile and words bits
+//long per row, so that 64 tiles are handled by each operation. Neighbor counts are added up for
+//a whole word at once from the mine plane shifted one tile each way, and kept as four planes
+//holding the bits of each count. Revealing floods the region of tiles with no neighboring mines
+//a row at a time, spreading sideways within a row using carries through runs of such tiles
+class BitBoard implements IBoard {
+  int rowMax;
+  int colMax;
+  int words;
+  long lastMask;
+  long[] mines;
+  long[] revealed;
+  long[] flagged;
+  long[][] counts = new long[4][];
+  long[] zero;
+  long[] fill;
+  long[] rowSeed;
+  long[] rowMask;
+  int[] work;
+  boolean[] queued;
+  boolean[] dirtyRows;
+  int mineCount = 0;
+  int safeHidden;
+  int minesRevealed = 0;
+
+  BitBoard(int rowMax, int colMax) {
+    if (rowMax < 1 || colMax < 1) {
+      throw new IllegalArgumentException("Board must have at least one row and column");
+    }
+    if ((long) rowMax * colMax > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Board is too large");
+    }
+    this.rowMax = rowMax;
+    this.colMax = colMax;
+    this.words = (colMax + 63) >> 6;
+    this.lastMask = -1L >>> (-colMax & 63);
+    int size = rowMax * this.words;
+    this.mines = new long[size];
+    this.revealed = new long[size];
+    this.flagged = new long[size];
+    for (int i = 0; i < 4; i++) {
+      this.counts[i] = new long[size];
+    }
+    this.zero = new long[size];
+    this.fill = new long[size];
+    this.rowSeed = new long[this.words];
+    this.rowMask = new long[this.words];
+    this.work = new int[rowMax];
+    this.queued = new boolean[rowMax];
+    this.dirtyRows = new boolean[rowMax];
+    this.safeHidden = rowMax * colMax;
+    this.countNeighborMines();
+  }
+
+  //Returns a BitBoard with the same tiles as the given Board
+  static BitBoard of(Board board) {
+    BitBoard bits = new BitBoard(board.rowMax, board.colMax);
+    for (int i = 0; i < board.size(); i++) {
+      int at = bits.wordOf(i / board.colMax, i % board.colMax);
+      long bit = 1L << (i % board.colMax);
+      if (board.isMine(i)) {
+        bits.mines[at] |= bit;
+      }
+      if (board.isRevealed(i)) {
+        bits.revealed[at] |= bit;
+      }
+      if (board.isFlagged(i)) {
+        bits.flagged[at] |= bit;
+      }
+    }
+    bits.mineCount = board.mineCount;
+    bits.safeHidden = board.safeHidden;
+    bits.minesRevealed = board.minesRevealed;
+    bits.countNeighborMines();
+    return bits;
+  }
+
+  //Returns the index of the word holding the tile at the given row and column
+  int wordOf(int row, int col) {
+    return (row * this.words) + (col >> 6);
+  }
+
+  //Returns the bits of the tiles in the given row of the given plane that lie in word w, or 0
+  //if there is no such row or word
+  long word(long[] plane, int row, int w) {
+    if (row < 0 || row >= this.rowMax || w < 0 || w >= this.words) {
+      return 0;
+    }
+    return plane[(row * this.words) + w];
+  }
+
+  //Returns the bits of word w of the given row of the given plane moved one tile right, so
+  //that each tile gets the bit of the tile to its left
+  long fromLeft(long[] plane, int row, int w) {
+    return (this.word(plane, row, w) << 1) | (this.word(plane, row, w - 1) >>> 63);
+  }
+
+  //Returns the bits of word w of the given row of the given plane moved one tile left, so that
+  //each tile gets the bit of the tile to its right
+  long fromRight(long[] plane, int row, int w) {
+    return (this.word(plane, row, w) >>> 1) | (this.word(plane, row, w + 1) << 63);
+  }
+
+  //Returns word w of the given row of the given plane spread one tile to each side
+  long spread(long[] plane, int row, int w) {
+    return this.word(plane, row, w) | this.fromLeft(plane, row, w)
+        | this.fromRight(plane, row, w);
+  }
+
+  //Returns the mask of the tiles that are on the board in word w of a row
+  long valid(int w) {
+    return w == this.words - 1 ? this.lastMask : -1L;
+  }
+
+  //Turns the tile at the given row and column into a mine. The neighbor counts are not updated
+  //until countNeighborMines is called
+  void makeMine(int row, int col) {
+    int at = this.wordOf(row, col);
+    long bit = 1L << col;
+    if ((this.mines[at] & bit) != 0) {
+      return;
+    }
+    this.mines[at] |= bit;
+    this.mineCount += 1;
+    if ((this.revealed[at] & bit) != 0) {
+      this.minesRevealed += 1;
+    }
+    else {
+      this.safeHidden -= 1;
+    }
+  }
+
+  //Counts the mines around every tile, 64 tiles at a time. The eight neighbor planes of a word
+  //are added with carry-save adders into the four bits of each count
+  void countNeighborMines() {
+    for (int r = 0; r < this.rowMax; r++) {
+      for (int w = 0; w < this.words; w++) {
+        long a = this.fromLeft(this.mines, r - 1, w);
+        long b = this.word(this.mines, r - 1, w);
+        long c = this.fromRight(this.mines, r - 1, w);
+        long d = this.fromLeft(this.mines, r, w);
+        long e = this.fromRight(this.mines, r, w);
+        long f = this.fromLeft(this.mines, r + 1, w);
+        long g = this.word(this.mines, r + 1, w);
+        long h = this.fromRight(this.mines, r + 1, w);
+
+        long sumAbc = a ^ b ^ c;
+        long carryAbc = (a & b) | (c & (a ^ b));
+        long sumDef = d ^ e ^ f;
+        long carryDef = (d & e) | (f & (d ^ e));
+        long sumGh = g ^ h;
+        long carryGh = g & h;
+
+        long ones = sumAbc ^ sumDef ^ sumGh;
+        long onesCarry = (sumAbc & sumDef) | (sumGh & (sumAbc ^ sumDef));
+        long twosSum = carryAbc ^ carryDef ^ carryGh;
+        long twosCarry = (carryAbc & carryDef) | (carryGh & (carryAbc ^ carryDef));
+        long twos = twosSum ^ onesCarry;
+        long fours = twosCarry ^ (twosSum & onesCarry);
+        long eights = twosCarry & twosSum & onesCarry;
+
+        int at = (r * this.words) + w;
+        this.counts[0][at] = ones;
+        this.counts[1][at] = twos;
+        this.counts[2][at] = fours;
+        this.counts[3][at] = eights;
+        this.zero[at] = ~(ones | twos | fours | eights) & this.valid(w);
+      }
+    }
+  }
+
+  public int rows() {
+    return this.rowMax;
+  }
+
+  public int cols() {
+    return this.colMax;
+  }
+
+  public boolean isMineAt(int row, int col) {
+    return (this.mines[this.wordOf(row, col)] & (1L << col)) != 0;
+  }
+
+  public boolean isRevealedAt(int row, int col) {
+    return (this.revealed[this.wordOf(row, col)] & (1L << col)) != 0;
+  }
+
+  public boolean isFlaggedAt(int row, int col) {
+    return (this.flagged[this.wordOf(row, col)] & (1L << col)) != 0;
+  }
+
+  public int neighborMinesAt(int row, int col) {
+    int at = this.wordOf(row, col);
+    int count = 0;
+    for (int i = 0; i < 4; i++) {
+      count |= (int) ((this.counts[i][at] >>> col) & 1) << i;
+    }
+    return count;
+  }
+
+  public void toggleFlagAt(int row, int col) {
+    this.flagged[this.wordOf(row, col)] ^= 1L << col;
+    this.dirtyRows[row] = true;
+  }
+
+  public boolean isLost() {
+    return this.minesRevealed > 0;
+  }
+
+  public boolean isWon() {
+    return this.safeHidden == 0;
+  }
+
+  //Reveals the tile at the given row and column the way a click would, doing nothing if it is
+  //flagged, and returns how many tiles were newly revealed
+  public long revealAt(int row, int col) {
+    if (this.isFlaggedAt(row, col)) {
+      return 0;
+    }
+    return this.floodFill(row, col);
+  }
+
+  //Reveals the tile at the given row and column and every tile reachable from it through
+  //hidden tiles with no neighboring mines, the same tiles as Board.floodFill, returning how
+  //many tiles were newly revealed
+  long floodFill(int row, int col) {
+    int at = this.wordOf(row, col);
+    long bit = 1L << col;
+    if ((this.revealed[at] & bit) != 0) {
+      return 0;
+    }
+    this.revealed[at] |= bit;
+    this.dirtyRows[row] = true;
+    if ((this.mines[at] & bit) != 0) {
+      this.minesRevealed += 1;
+    }
+    else {
+      this.safeHidden -= 1;
+    }
+    if ((this.zero[at] & bit) == 0) {
+      return 1;
+    }
+
+    this.fill[at] |= bit;
+    this.fillRow(row);
+    int top = row;
+    int bottom = row;
+    int pending = this.queueAround(row, 0);
+    while (pending > 0) {
+      pending -= 1;
+      int r = this.work[pending];
+      this.queued[r] = false;
+      if (this.fillRow(r)) {
+        pending = this.queueAround(r, pending);
+        top = Math.min(top, r);
+        bottom = Math.max(bottom, r);
+      }
+    }
+
+    long count = 1;
+    for (int r = Math.max(0, top - 1); r <= Math.min(this.rowMax - 1, bottom + 1); r++) {
+      this.dirtyRows[r] = true;
+      for (int w = 0; w < this.words; w++) {
+        int i = (r * this.words) + w;
+        long reached = this.spread(this.fill, r - 1, w) | this.spread(this.fill, r, w)
+            | this.spread(this.fill, r + 1, w);
+        long fresh = reached & ~this.revealed[i] & this.valid(w);
+        this.revealed[i] |= fresh;
+        this.minesRevealed += Long.bitCount(fresh & this.mines[i]);
+        this.safeHidden -= Long.bitCount(fresh & ~this.mines[i]);
+        count += Long.bitCount(fresh);
+      }
+    }
+    Arrays.fill(this.fill, top * this.words, (bottom + 1) * this.words, 0);
+    return count;
+  }
+
+  //Adds the rows above and below the given row to the rows waiting to be flooded, unless they
+  //are already waiting, returning how many rows are waiting now
+  int queueAround(int r, int pending) {
+    for (int next = r - 1; next <= r + 1; next += 2) {
+      if (next >= 0 && next < this.rowMax && !this.queued[next]) {
+        this.queued[next] = true;
+        this.work[pending] = next;
+        pending += 1;
+      }
+    }
+    return pending;
+  }
+
+  //Grows the flooded part of the given row to every hidden tile with no neighboring mines that
+  //touches the flooded tiles of the rows above and below or of this row, and spreads it
+  //sideways along the runs of such tiles. Returns whether the row's flooded part grew
+  boolean fillRow(int r) {
+    int base = r * this.words;
+    for (int w = 0; w < this.words; w++) {
+      long open = this.zero[base + w] & ~this.revealed[base + w];
+      this.rowMask[w] = open | this.fill[base + w];
+      this.rowSeed[w] = this.fill[base + w]
+          | ((this.spread(this.fill, r - 1, w) | this.spread(this.fill, r + 1, w)) & open);
+    }
+
+    //Adding the seeds to the mask carries each one up through the rest of its run, and
+    //reversing the bits does the same downwards
+    long carry = 0;
+    for (int w = 0; w < this.words; w++) {
+      long mask = this.rowMask[w];
+      long seed = (this.rowSeed[w] | carry) & mask;
+      seed |= ((mask + seed) ^ mask) & mask;
+      this.rowSeed[w] = seed;
+      carry = seed >>> 63;
+    }
+    carry = 0;
+    for (int w = this.words - 1; w >= 0; w--) {
+      long mask = Long.reverse(this.rowMask[w]);
+      long seed = (Long.reverse(this.rowSeed[w]) | carry) & mask;
+      seed |= ((mask + seed) ^ mask) & mask;
+      this.rowSeed[w] = Long.reverse(seed);
+      carry = seed >>> 63;
+    }
+
+    boolean grew = false;
+    for (int w = 0; w < this.words; w++) {
+      if (this.rowSeed[w] != this.fill[base + w]) {
+        this.fill[base + w] = this.rowSeed[w];
+        grew = true;
+      }
+    }
+    return grew;
+  }
+}
+
+class ExamplesBitBoard {
+
+  //Checks that the given boards have the same tiles, counts and state
+  void checkSame(Tester t, BitBoard bits, Board board) {
+    int different = 0;
+    for (int r = 0; r < board.rowMax; r++) {
+      for (int c = 0; c < board.colMax; c++) {
+        if (bits.isMineAt(r, c) != board.isMineAt(r, c)
+            || bits.isRevealedAt(r, c) != board.isRevealedAt(r, c)
+            || bits.isFlaggedAt(r, c) != board.isFlaggedAt(r, c)
+            || bits.neighborMinesAt(r, c) != board.neighborMinesAt(r, c)) {
+          different += 1;
+        }
+      }
+    }
+    t.checkExpect(different, 0);
+    t.checkExpect(bits.mineCount, board.mineCount);
+    t.checkExpect(bits.safeHidden, board.safeHidden);
+    t.checkExpect(bits.minesRevealed, board.minesRevealed);
+  }
+
+  void testConstructor(Tester t) {
+    BitBoard bits = new BitBoard(3, 130);
+    t.checkExpect(bits.words, 3);
+    t.checkExpect(bits.lastMask, 3L);
+    t.checkExpect(new BitBoard(2, 64).lastMask, -1L);
+    t.checkExpect(bits.mines.length, 9);
+    t.checkExpect(bits.safeHidden, 390);
+    t.checkExpect(bits.zero[8], 3L);
+    t.checkConstructorException(
+        new IllegalArgumentException("Board must have at least one row and column"),
+        "BitBoard", 0, 5);
+  }
+
+  void testShifts(Tester t) {
+    BitBoard bits = new BitBoard(2, 130);
+    bits.makeMine(0, 63);
+    bits.makeMine(0, 64);
+    bits.makeMine(1, 0);
+    t.checkExpect(bits.fromLeft(bits.mines, 0, 1), (1L << 0) | (1L << 1));
+    t.checkExpect(bits.fromRight(bits.mines, 0, 0), (1L << 62) | (1L << 63));
+    t.checkExpect(bits.spread(bits.mines, 1, 0), 3L);
+    t.checkExpect(bits.word(bits.mines, 2, 0), 0L);
+    t.checkExpect(bits.word(bits.mines, 0, -1), 0L);
+    t.checkExpect(bits.valid(2), 3L);
+  }
+
+  void testCounts(Tester t) {
+    BitBoard bits = new BitBoard(3, 3);
+    for (int r = 0; r < 3; r++) {
+      for (int c = 0; c < 3; c++) {
+        if (r != 1 || c != 1) {
+          bits.makeMine(r, c);
+        }
+      }
+    }
+    bits.countNeighborMines();
+    t.checkExpect(bits.neighborMinesAt(1, 1), 8);
+    t.checkExpect(bits.neighborMinesAt(0, 0), 2);
+    t.checkExpect(bits.neighborMinesAt(0, 1), 4);
+    t.checkExpect(bits.mineCount, 8);
+    t.checkExpect(bits.safeHidden, 1);
+
+    Random rand = new Random(3);
+    for (int[] size : new int[][] {{1, 1}, {7, 64}, {20, 129}, {33, 200}}) {
+      MineWorld world = new MineWorld(size[0], size[1], (size[0] * size[1]) / 4, rand);
+      this.checkSame(t, BitBoard.of(world.board), world.board);
+    }
+  }
+
+  void testFloodFill(Tester t) {
+    BitBoard bits = new BitBoard(3, 70);
+    bits.makeMine(0, 69);
+    bits.countNeighborMines();
+    t.checkExpect(bits.revealAt(0, 0), 209L);
+    t.checkExpect(bits.isRevealedAt(0, 69), false);
+    t.checkExpect(bits.isWon(), true);
+    t.checkExpect(bits.revealAt(0, 0), 0L);
+    t.checkExpect(bits.fill, new long[6]);
+    t.checkExpect(bits.dirtyRows, new boolean[] {true, true, true});
+
+    bits = new BitBoard(3, 70);
+    bits.makeMine(0, 69);
+    bits.countNeighborMines();
+    bits.toggleFlagAt(0, 0);
+    t.checkExpect(bits.dirtyRows, new boolean[] {true, false, false});
+    t.checkExpect(bits.revealAt(0, 0), 0L);
+    t.checkExpect(bits.revealAt(0, 68), 1L);
+    t.checkExpect(bits.revealAt(0, 69), 3L);
+    t.checkExpect(bits.isLost(), true);
+  }
+
+  void testAgainstBoard(Tester t) {
+    Random rand = new Random(7);
+    for (int game = 0; game < 20; game++) {
+      int rows = 1 + rand.nextInt(40);
+      int cols = 1 + rand.nextInt(150);
+      MineWorld world = new MineWorld(rows, cols, (rows * cols) / (4 + rand.nextInt(30)), rand);
+      Board board = world.board;
+      for (int i = 0; i < board.size(); i += 1 + rand.nextInt(50)) {
+        board.toggleFlag(i);
+      }
+      BitBoard bits = BitBoard.of(board);
+      for (int move = 0; move < 30; move++) {
+        int r = rand.nextInt(rows);
+        int c = rand.nextInt(cols);
+        t.checkExpect(bits.revealAt(r, c), board.revealAt(r, c));
+      }
+      this.checkSame(t, bits, board);
+    }
+  }
+
+  void testLargeFlood(Tester t) {
+    Board board = new Board(500, 500);
+    for (int r = 1; r < 499; r += 4) {
+      for (int c = (r % 8 == 1) ? 0 : 2; c < ((r % 8 == 1) ? 498 : 500); c++) {
+        board.makeMine((r * 500) + c);
+      }
+    }
+    BitBoard bits = BitBoard.of(board);
+    t.checkExpect(bits.revealAt(0, 499), board.revealAt(0, 499));
+    t.checkExpect(bits.fill, new long[bits.fill.length]);
+    this.checkSame(t, bits, board);
+  }
+}
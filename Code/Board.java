@@ -0,0 +1,679 @@
+import java.util.Arrays;
+
+import tester.*;
+
+//Represents the tiles of a Minesweeper game, addressed by row and column
+interface IBoard {
+
+  //Returns the number of rows of tiles
+  int rows();
+
+  //Returns the number of columns of tiles
+  int cols();
+
+  //Returns whether the tile at the given row and column is a mine
+  boolean isMineAt(int row, int col);
+
+  //Returns whether the tile at the given row and column has been revealed
+  boolean isRevealedAt(int row, int col);
+
+  //Returns whether the tile at the given row and column has been flagged
+  boolean isFlaggedAt(int row, int col);
+
+  //Returns the number of mines around the tile at the given row and column
+  int neighborMinesAt(int row, int col);
+
+  //Reveals the tile at the given row and column the way a click would, doing nothing if it is
+  //flagged, and returns how many tiles were newly revealed
+  long revealAt(int row, int col);
+
+  //Toggles whether the tile at the given row and column is flagged
+  void toggleFlagAt(int row, int col);
+
+  //Returns whether a mine has been revealed
+  boolean isLost();
+
+  //Returns whether every tile that is not a mine has been revealed
+  boolean isWon();
+
+}
+
+//Represents the state of every tile of a Minesweeper game, packed into primitive arrays
+//indexed by (row * colMax) + col
+class Board implements IBoard {
+  static final byte MINE = 1;
+  static final byte REVEALED = 2;
+  static final byte FLAGGED = 4;
+
+  //The row and column steps to each neighbor of a tile, in the order Top, TopRight, Right,
+  //BottomRight, Bottom, BottomLeft, Left, TopLeft
+  static final int[] DROW = {-1, -1, 0, 1, 1, 1, 0, -1};
+  static final int[] DCOL = {0, 1, 1, 1, 0, -1, -1, -1};
+
+  //When true, MineWorld checks the running counts below against a scan of every tile
+  static boolean DEBUG = false;
+
+  int rowMax;
+  int colMax;
+  byte[] state;
+  byte[] neighborMines;
+  int[] revealed = new int[16];
+  int mineCount = 0;
+  int safeHidden;
+  int minesRevealed = 0;
+  //How many steps the last flood fill spread from the tile it started at
+  int floodDepth = 0;
+  boolean[] dirtyRows;
+  int[] offsets = new int[8];
+  int[] around = new int[8];
+
+  Board(int rowMax, int colMax) {
+    if (rowMax < 1 || colMax < 1) {
+      throw new IllegalArgumentException("Board must have at least one row and column");
+    }
+    if ((long) rowMax * colMax > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Board is too large");
+    }
+    this.rowMax = rowMax;
+    this.colMax = colMax;
+    this.state = new byte[rowMax * colMax];
+    this.neighborMines = new byte[rowMax * colMax];
+    this.safeHidden = rowMax * colMax;
+    this.dirtyRows = new boolean[rowMax];
+    for (int i = 0; i < 8; i++) {
+      this.offsets[i] = (DROW[i] * colMax) + DCOL[i];
+    }
+  }
+
+  //Writes the indices of the tiles around idx into out, in the same order as DROW and DCOL,
+  //and returns how many there are. Tiles away from the edges take a path with no bounds checks
+  int neighbors(int idx, int[] out) {
+    int row = idx / this.colMax;
+    int col = idx - (row * this.colMax);
+    if (row > 0 && row < this.rowMax - 1 && col > 0 && col < this.colMax - 1) {
+      for (int i = 0; i < 8; i++) {
+        out[i] = idx + this.offsets[i];
+      }
+      return 8;
+    }
+
+    int count = 0;
+    for (int i = 0; i < 8; i++) {
+      int r = row + DROW[i];
+      int c = col + DCOL[i];
+      if (r >= 0 && r < this.rowMax && c >= 0 && c < this.colMax) {
+        out[count] = idx + this.offsets[i];
+        count += 1;
+      }
+    }
+    return count;
+  }
+
+  //Returns the number of tiles on this Board
+  int size() {
+    return this.state.length;
+  }
+
+  //Returns the number of rows of this Board
+  public int rows() {
+    return this.rowMax;
+  }
+
+  //Returns the number of columns of this Board
+  public int cols() {
+    return this.colMax;
+  }
+
+  //Returns whether the tile at the given row and column is a mine
+  public boolean isMineAt(int row, int col) {
+    return this.isMine((row * this.colMax) + col);
+  }
+
+  //Returns whether the tile at the given row and column has been revealed
+  public boolean isRevealedAt(int row, int col) {
+    return this.isRevealed((row * this.colMax) + col);
+  }
+
+  //Returns whether the tile at the given row and column has been flagged
+  public boolean isFlaggedAt(int row, int col) {
+    return this.isFlagged((row * this.colMax) + col);
+  }
+
+  //Returns the number of mines around the tile at the given row and column
+  public int neighborMinesAt(int row, int col) {
+    return this.neighborMines[(row * this.colMax) + col];
+  }
+
+  //Reveals the tile at the given row and column the way a click would
+  public long revealAt(int row, int col) {
+    return this.reveal((row * this.colMax) + col);
+  }
+
+  //Toggles whether the tile at the given row and column is flagged
+  public void toggleFlagAt(int row, int col) {
+    this.toggleFlag((row * this.colMax) + col);
+  }
+
+  //Returns whether the given bit is set for the tile at idx
+  boolean has(int idx, byte bit) {
+    return (this.state[idx] & bit) != 0;
+  }
+
+  //Sets the given bit for the tile at idx
+  void set(int idx, byte bit) {
+    if ((bit & MINE) != 0 && !this.isMine(idx)) {
+      this.countMine(idx, 1);
+    }
+    if ((bit & REVEALED) != 0 && !this.isRevealed(idx)) {
+      this.countReveal(idx, 1);
+    }
+    this.state[idx] |= bit;
+    this.dirtyRows[idx / this.colMax] = true;
+  }
+
+  //Clears the given bit for the tile at idx
+  void clear(int idx, byte bit) {
+    if ((bit & REVEALED) != 0 && this.isRevealed(idx)) {
+      this.countReveal(idx, -1);
+    }
+    if ((bit & MINE) != 0 && this.isMine(idx)) {
+      this.countMine(idx, -1);
+    }
+    this.state[idx] &= ~bit;
+    this.dirtyRows[idx / this.colMax] = true;
+  }
+
+  //Updates the running counts for the tile at idx being revealed (1) or hidden again (-1)
+  void countReveal(int idx, int change) {
+    if (this.isMine(idx)) {
+      this.minesRevealed += change;
+    }
+    else {
+      this.safeHidden -= change;
+    }
+  }
+
+  //Updates the running counts for the tile at idx becoming a mine (1) or a safe tile (-1)
+  void countMine(int idx, int change) {
+    this.mineCount += change;
+    if (this.isRevealed(idx)) {
+      this.minesRevealed += change;
+    }
+    else {
+      this.safeHidden -= change;
+    }
+  }
+
+  //Returns whether the tile at idx is a mine
+  boolean isMine(int idx) {
+    return (this.state[idx] & MINE) != 0;
+  }
+
+  //Returns whether the tile at idx has been revealed
+  boolean isRevealed(int idx) {
+    return (this.state[idx] & REVEALED) != 0;
+  }
+
+  //Returns whether the tile at idx has been flagged
+  boolean isFlagged(int idx) {
+    return (this.state[idx] & FLAGGED) != 0;
+  }
+
+  //Turns the tile at idx into a mine, adding it to the neighbor counts of the tiles around it
+  void makeMine(int idx) {
+    if (this.isMine(idx)) {
+      return;
+    }
+    this.set(idx, MINE);
+
+    int count = this.neighbors(idx, this.around);
+    for (int i = 0; i < count; i++) {
+      this.neighborMines[this.around[i]] += 1;
+    }
+  }
+
+  //Turns the mine at idx back into a safe tile, taking it out of the neighbor counts of the
+  //tiles around it
+  void removeMine(int idx) {
+    if (!this.isMine(idx)) {
+      return;
+    }
+    this.clear(idx, MINE);
+
+    int count = this.neighbors(idx, this.around);
+    for (int i = 0; i < count; i++) {
+      this.neighborMines[this.around[i]] -= 1;
+    }
+  }
+
+  //Hides and unflags every tile, keeping the mines where they are
+  void hideAll() {
+    for (int i = 0; i < this.size(); i++) {
+      this.state[i] &= MINE;
+    }
+    this.safeHidden = this.size() - this.mineCount;
+    this.minesRevealed = 0;
+    Arrays.fill(this.dirtyRows, true);
+  }
+
+  //Hides every tile and removes every mine and flag, leaving this Board as it was when made
+  void clearAll() {
+    Arrays.fill(this.state, (byte) 0);
+    Arrays.fill(this.neighborMines, (byte) 0);
+    this.mineCount = 0;
+    this.safeHidden = this.size();
+    this.minesRevealed = 0;
+    Arrays.fill(this.dirtyRows, true);
+  }
+
+  //Toggles whether the tile at idx is flagged
+  void toggleFlag(int idx) {
+    this.state[idx] ^= FLAGGED;
+    this.dirtyRows[idx / this.colMax] = true;
+  }
+
+  //Counts the number of mines around the tile at idx
+  int countNeighborMines(int idx) {
+    int count = this.neighbors(idx, this.around);
+    int numMines = 0;
+    for (int i = 0; i < count; i++) {
+      numMines += this.state[this.around[i]] & MINE;
+    }
+    return numMines;
+  }
+
+  //Recounts and stores the number of neighboring mines for every tile on this Board
+  void countAllNeighborMines() {
+    for (int i = 0; i < this.size(); i++) {
+      this.neighborMines[i] = (byte) this.countNeighborMines(i);
+    }
+  }
+
+  //Reveals the tile at idx the way a click would, doing nothing if it is flagged, and returns
+  //how many tiles were newly revealed
+  int reveal(int idx) {
+    if (this.isFlagged(idx)) {
+      return 0;
+    }
+    return this.floodFill(idx);
+  }
+
+  //Reveals the tile at idx and every tile reachable from it through tiles that have no mines
+  //as neighbors, returning how many tiles were newly revealed. The newly revealed indices are
+  //left in revealed[0 .. count), in the order they were revealed
+  int floodFill(int idx) {
+    this.floodDepth = 0;
+    if (this.isRevealed(idx)) {
+      return 0;
+    }
+
+    this.set(idx, REVEALED);
+    this.revealed[0] = idx;
+    return this.spread(0);
+  }
+
+  //Reveals each of the first n tiles of seeds in turn the way reveal would, returning how many
+  //tiles were newly revealed. It is one flood fill whose queue and whose revealed tiles are
+  //shared by every seed, so a seed already revealed by an earlier one, flagged, or repeated
+  //costs a single check. The tiles seed i revealed are left in revealed[ends[i - 1] .. ends[i])
+  int revealAll(int[] seeds, int n, int[] ends) {
+    int count = 0;
+    int depth = 0;
+    for (int i = 0; i < n; i++) {
+      int idx = seeds[i];
+      if (!this.isRevealed(idx) && !this.isFlagged(idx)) {
+        this.set(idx, REVEALED);
+        if (count == this.revealed.length) {
+          this.revealed = Arrays.copyOf(this.revealed,
+              (int) Math.min((long) count * 2, this.size()));
+        }
+        this.revealed[count] = idx;
+        count = this.spread(count);
+        depth = Math.max(depth, this.floodDepth);
+      }
+      ends[i] = count;
+    }
+    this.floodDepth = depth;
+    return count;
+  }
+
+  //Reveals every tile reachable from revealed[start], which has just been revealed, through
+  //tiles that have no mines as neighbors, adding them to revealed after it. Returns the
+  //length of revealed that is now in use
+  int spread(int start) {
+    int mines = 0;
+    int count = start + 1;
+    int depth = 0;
+    int layerEnd = count;
+
+    //revealed doubles as the work queue: every tile in it is visited exactly once, and only
+    //tiles with no neighboring mines add their neighbors to the end. The tiles one step further
+    //from the start than those before layerEnd all come after it
+    for (int head = start; head < count; head++) {
+      if (head == layerEnd) {
+        depth += 1;
+        layerEnd = count;
+      }
+      int next = this.revealed[head];
+      if (this.neighborMines[next] != 0) {
+        continue;
+      }
+
+      int row = next / this.colMax;
+      this.dirtyRows[row] = true;
+      if (row > 0) {
+        this.dirtyRows[row - 1] = true;
+      }
+      if (row < this.rowMax - 1) {
+        this.dirtyRows[row + 1] = true;
+      }
+
+      int around = this.neighbors(next, this.around);
+      for (int i = 0; i < around; i++) {
+        int n = this.around[i];
+        if (!this.isRevealed(n)) {
+          this.state[n] |= REVEALED;
+          mines += this.state[n] & MINE;
+          if (count == this.revealed.length) {
+            this.revealed = Arrays.copyOf(this.revealed,
+                (int) Math.min((long) count * 2, this.size()));
+          }
+          this.revealed[count] = n;
+          count += 1;
+        }
+      }
+    }
+
+    this.minesRevealed += mines;
+    this.safeHidden -= (count - start - 1) - mines;
+    this.floodDepth = depth;
+    return count;
+  }
+
+  //Returns whether a mine has been revealed on this Board
+  public boolean isLost() {
+    return this.minesRevealed > 0;
+  }
+
+  //Returns whether every tile on this Board that is not a mine has been revealed
+  public boolean isWon() {
+    return this.safeHidden == 0;
+  }
+
+  //Throws an exception if the running counts of this Board disagree with its tiles
+  void checkCounts() {
+    int mines = 0;
+    int hidden = 0;
+    int minesShown = 0;
+    for (int i = 0; i < this.size(); i++) {
+      if (this.isMine(i)) {
+        mines += 1;
+        if (this.isRevealed(i)) {
+          minesShown += 1;
+        }
+      }
+      else if (!this.isRevealed(i)) {
+        hidden += 1;
+      }
+    }
+
+    if (mines != this.mineCount || hidden != this.safeHidden
+        || minesShown != this.minesRevealed) {
+      throw new IllegalStateException("Board counts have drifted from its tiles");
+    }
+  }
+
+  //Rebuilds the running counts and neighbor counts of this Board from its tiles, after they
+  //were set directly rather than through makeMine and floodFill. Each row's counts come from
+  //the sums of mines down each column of it and the rows beside it, so there are no branches
+  //on where the mines are
+  void recount() {
+    int mines = 0;
+    int hidden = 0;
+    int shown = 0;
+    for (int i = 0; i < this.size(); i++) {
+      int mine = this.state[i] & MINE;
+      int revealed = (this.state[i] & REVEALED) >> 1;
+      mines += mine;
+      shown += mine & revealed;
+      hidden += (mine | revealed) ^ 1;
+    }
+    this.mineCount = mines;
+    this.safeHidden = hidden;
+    this.minesRevealed = shown;
+
+    this.countRows(0, this.rowMax);
+    Arrays.fill(this.dirtyRows, true);
+  }
+
+  //Stores the number of neighboring mines for every tile in rows from up to but not including
+  //to, reading the mines in the row on either side of them but changing nothing outside them
+  void countRows(int from, int to) {
+    int[] column = new int[this.colMax + 2];
+    for (int r = from; r < to; r++) {
+      int row = r * this.colMax;
+      for (int c = 0; c < this.colMax; c++) {
+        int sum = this.state[row + c] & MINE;
+        if (r > 0) {
+          sum += this.state[row - this.colMax + c] & MINE;
+        }
+        if (r < this.rowMax - 1) {
+          sum += this.state[row + this.colMax + c] & MINE;
+        }
+        column[c + 1] = sum;
+      }
+      for (int c = 0; c < this.colMax; c++) {
+        this.neighborMines[row + c] = (byte) (column[c] + column[c + 1] + column[c + 2]
+            - (this.state[row + c] & MINE));
+      }
+    }
+  }
+
+}
+
+class ExamplesBoard {
+  Board board1;
+
+  void reset() {
+    this.board1 = new Board(3, 4);
+  }
+
+  void testConstructor(Tester t) {
+    reset();
+    t.checkExpect(this.board1.size(), 12);
+    t.checkExpect(this.board1.state, new byte[12]);
+    t.checkConstructorException(
+        new IllegalArgumentException("Board must have at least one row and column"),
+        "Board", 0, 4);
+    t.checkConstructorException(
+        new IllegalArgumentException("Board is too large"),
+        "Board", 100000, 100000);
+  }
+
+  void testNeighbors(Tester t) {
+    reset();
+    int[] out = new int[8];
+    t.checkExpect(this.board1.neighbors(5, out), 8);
+    t.checkExpect(out, new int[] {1, 2, 6, 10, 9, 8, 4, 0});
+    t.checkExpect(this.board1.neighbors(0, out), 3);
+    t.checkExpect(Arrays.copyOf(out, 3), new int[] {1, 5, 4});
+    t.checkExpect(this.board1.neighbors(11, out), 3);
+    t.checkExpect(Arrays.copyOf(out, 3), new int[] {7, 10, 6});
+    t.checkExpect(this.board1.neighbors(4, out), 5);
+    t.checkExpect(Arrays.copyOf(out, 5), new int[] {0, 1, 5, 9, 8});
+    t.checkExpect(new Board(1, 1).neighbors(0, out), 0);
+    t.checkExpect(new Board(1, 3).neighbors(1, out), 2);
+    t.checkExpect(Arrays.copyOf(out, 2), new int[] {2, 0});
+  }
+
+  void testBits(Tester t) {
+    reset();
+    t.checkExpect(this.board1.isMine(5), false);
+    this.board1.makeMine(5);
+    t.checkExpect(this.board1.isMine(5), true);
+    t.checkExpect(this.board1.isRevealed(5), false);
+    this.board1.set(5, Board.REVEALED);
+    t.checkExpect(this.board1.has(5, Board.REVEALED), true);
+    this.board1.clear(5, Board.REVEALED);
+    t.checkExpect(this.board1.isRevealed(5), false);
+    t.checkExpect(this.board1.isMine(5), true);
+    this.board1.toggleFlag(5);
+    t.checkExpect(this.board1.isFlagged(5), true);
+    this.board1.toggleFlag(5);
+    t.checkExpect(this.board1.isFlagged(5), false);
+    t.checkExpect(this.board1.state[5], Board.MINE);
+    t.checkExpect(this.board1.dirtyRows, new boolean[] {false, true, false});
+  }
+
+  void testCounts(Tester t) {
+    reset();
+    t.checkExpect(this.board1.safeHidden, 12);
+    t.checkExpect(this.board1.isWon(), false);
+    this.board1.makeMine(11);
+    this.board1.makeMine(11);
+    t.checkExpect(this.board1.mineCount, 1);
+    t.checkExpect(this.board1.safeHidden, 11);
+    this.board1.countAllNeighborMines();
+    this.board1.floodFill(0);
+    t.checkExpect(this.board1.safeHidden, 0);
+    t.checkExpect(this.board1.isWon(), true);
+    t.checkExpect(this.board1.isLost(), false);
+    this.board1.set(11, Board.REVEALED);
+    t.checkExpect(this.board1.isLost(), true);
+    this.board1.clear(3, Board.REVEALED);
+    t.checkExpect(this.board1.safeHidden, 1);
+    this.board1.checkCounts();
+
+    this.board1.state[3] |= Board.REVEALED;
+    t.checkException(new IllegalStateException("Board counts have drifted from its tiles"),
+        this.board1, "checkCounts");
+  }
+
+  void testCountNeighborMines(Tester t) {
+    reset();
+    this.board1.makeMine(0);
+    this.board1.makeMine(5);
+    this.board1.makeMine(11);
+    t.checkExpect(this.board1.countNeighborMines(1), 2);
+    t.checkExpect(this.board1.countNeighborMines(5), 1);
+    t.checkExpect(this.board1.countNeighborMines(10), 2);
+    t.checkExpect(this.board1.countNeighborMines(3), 0);
+    t.checkExpect(this.board1.neighborMines,
+        new byte[] {1, 2, 1, 0, 2, 1, 2, 1, 1, 1, 2, 0});
+    this.board1.makeMine(5);
+    this.board1.neighborMines[3] = 7;
+    this.board1.countAllNeighborMines();
+    t.checkExpect(this.board1.neighborMines,
+        new byte[] {1, 2, 1, 0, 2, 1, 2, 1, 1, 1, 2, 0});
+  }
+
+  void testFloodFill(Tester t) {
+    reset();
+    this.board1.makeMine(11);
+    this.board1.countAllNeighborMines();
+    t.checkExpect(this.board1.floodFill(0), 11);
+    t.checkExpect(Arrays.copyOf(this.board1.revealed, 11),
+        new int[] {0, 1, 5, 4, 2, 6, 10, 9, 8, 3, 7});
+    for (int i = 0; i < 11; i++) {
+      t.checkExpect(this.board1.isRevealed(i), true);
+    }
+    t.checkExpect(this.board1.isRevealed(11), false);
+    t.checkExpect(this.board1.dirtyRows, new boolean[] {true, true, true});
+
+    reset();
+    this.board1.makeMine(2);
+    this.board1.countAllNeighborMines();
+    t.checkExpect(this.board1.floodFill(1), 1);
+    t.checkExpect(this.board1.isRevealed(1), true);
+    t.checkExpect(this.board1.isRevealed(0), false);
+    t.checkExpect(this.board1.floodFill(1), 0);
+  }
+
+  void testReveal(Tester t) {
+    reset();
+    this.board1.makeMine(11);
+    this.board1.countAllNeighborMines();
+    this.board1.toggleFlag(0);
+    t.checkExpect(this.board1.reveal(0), 0);
+    t.checkExpect(this.board1.isRevealed(0), false);
+    t.checkExpect(this.board1.reveal(1), 11);
+    t.checkExpect(this.board1.isRevealed(0), true);
+    t.checkExpect(this.board1.reveal(1), 0);
+  }
+
+  void testRowsAndCols(Tester t) {
+    reset();
+    IBoard board = this.board1;
+    this.board1.makeMine(6);
+    t.checkExpect(board.rows(), 3);
+    t.checkExpect(board.cols(), 4);
+    t.checkExpect(board.isMineAt(1, 2), true);
+    t.checkExpect(board.neighborMinesAt(0, 1), 1);
+    board.toggleFlagAt(2, 3);
+    t.checkExpect(board.isFlaggedAt(2, 3), true);
+    t.checkExpect(board.revealAt(2, 3), 0L);
+    t.checkExpect(board.revealAt(0, 3), 1L);
+    t.checkExpect(board.isRevealedAt(0, 3), true);
+    t.checkExpect(board.isRevealedAt(0, 2), false);
+  }
+
+  void testRemoveMine(Tester t) {
+    reset();
+    this.board1.makeMine(5);
+    this.board1.makeMine(6);
+    this.board1.removeMine(5);
+    this.board1.removeMine(5);
+    t.checkExpect(this.board1.isMine(5), false);
+    t.checkExpect(this.board1.mineCount, 1);
+    t.checkExpect(this.board1.safeHidden, 11);
+    t.checkExpect(this.board1.neighborMines[0], (byte) 0);
+    t.checkExpect(this.board1.neighborMines[5], (byte) 1);
+    this.board1.checkCounts();
+  }
+
+  void testHideAndClearAll(Tester t) {
+    reset();
+    this.board1.makeMine(0);
+    this.board1.floodFill(11);
+    this.board1.set(0, Board.REVEALED);
+    this.board1.toggleFlag(1);
+    this.board1.hideAll();
+    t.checkExpect(this.board1.state[0], Board.MINE);
+    t.checkExpect(this.board1.state[1], (byte) 0);
+    t.checkExpect(this.board1.isLost(), false);
+    t.checkExpect(this.board1.safeHidden, 11);
+    t.checkExpect(this.board1.neighborMines[1], (byte) 1);
+    this.board1.checkCounts();
+    this.board1.clearAll();
+    t.checkExpect(this.board1.state, new byte[12]);
+    t.checkExpect(this.board1.neighborMines, new byte[12]);
+    t.checkExpect(this.board1.mineCount, 0);
+    t.checkExpect(this.board1.safeHidden, 12);
+    this.board1.checkCounts();
+  }
+
+  void testRecount(Tester t) {
+    reset();
+    this.board1.state[5] = Board.MINE;
+    this.board1.state[6] = Board.MINE | Board.REVEALED;
+    this.board1.state[0] = Board.REVEALED | Board.FLAGGED;
+    this.board1.state[11] = Board.FLAGGED;
+    this.board1.recount();
+    t.checkExpect(this.board1.mineCount, 2);
+    t.checkExpect(this.board1.minesRevealed, 1);
+    t.checkExpect(this.board1.safeHidden, 9);
+    t.checkExpect(this.board1.neighborMines,
+        new byte[] {1, 2, 2, 1, 1, 1, 1, 1, 1, 2, 2, 1});
+    t.checkExpect(this.board1.dirtyRows, new boolean[] {true, true, true});
+    this.board1.checkCounts();
+  }
+
+  void testFloodFillLargeRegion(Tester t) {
+    Board big = new Board(2000, 2000);
+    big.makeMine(1999999);
+    big.countAllNeighborMines();
+    t.checkExpect(big.floodFill(0), 3999999);
+    t.checkExpect(big.isRevealed(3999999), true);
+    t.checkExpect(big.isRevealed(1999999), false);
+  }
+}
@@ -1,4 +1,3 @@
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Random;
 
@@ -19,181 +18,177 @@ interface IGamePiece {
   
 }
 
-//Represents one tile of a Minesweeper game
+//Represents one tile of a Minesweeper game, as a view onto its position in a Board
 class Cell implements IGamePiece {
-  boolean isMine = false;
-  boolean isRevealed = false;
-  boolean isFlagged = false;
-  HashMap<String, IGamePiece> neighbors = new HashMap<String, IGamePiece>();
-  int neighborMines;
+  Board board;
+  int idx;
   static int BLOCK_SIZE = 20;
 
-  Cell() {}
+  static final int MINE_TILE = 9;
+  static final int FLAG_TILE = 10;
+  static final int HIDDEN_TILE = 11;
+  static final int HINT_TILE = 12;
+  static final WorldImage[] TILES = new WorldImage[13];
+  static int tileSize = 0;
+
+  //Creates a Cell that is the only tile of its own Board
+  Cell() {
+    this(new Board(1, 1), 0);
+  }
+
+  Cell(Board board, int idx) {
+    this.board = board;
+    this.idx = idx;
+  }
 
   //Turns this Cell into a Mine
   public void makeMine() {
-    this.isMine = true;
+    this.board.makeMine(this.idx);
+  }
+
+  //Returns whether this Cell has been revealed
+  boolean isRevealed() {
+    return this.board.isRevealed(this.idx);
+  }
+
+  //Returns whether this Cell has been flagged
+  boolean isFlagged() {
+    return this.board.isFlagged(this.idx);
+  }
+
+  //Returns the stored number of this Cell's neighbors that are mines
+  int neighborMines() {
+    return this.board.neighborMines[this.idx];
   }
 
   //Counts the number of this Cell's neighbors that are mines
   int countNeighborMines() {
-    int numMines = 0;
-    NeighborIterator map = new NeighborIterator(this.neighbors);
-    IGamePiece lookingAt = new Wall();
+    return this.board.countNeighborMines(this.idx);
+  }
 
+  //Returns this Cell's neighbors keyed by direction, with Walls past the edges of the Board
+  HashMap<String, IGamePiece> neighbors() {
+    HashMap<String, IGamePiece> neighbors = new HashMap<String, IGamePiece>();
     for (int i = 0; i < 8; i++) {
-      lookingAt = map.next();
-      if (lookingAt.mineStatus()) {
-        numMines += 1;
-      }
+      neighbors.put(NeighborIterator.DIRECTIONS[i], this.neighborAt(Board.DROW[i], Board.DCOL[i]));
     }
+    return neighbors;
+  }
 
-    return numMines;
+  //Returns the Cell offset from this one by the given rows and columns, or a Wall if that
+  //position is off the Board
+  IGamePiece neighborAt(int dRow, int dCol) {
+    int row = (this.idx / this.board.colMax) + dRow;
+    int col = (this.idx % this.board.colMax) + dCol;
+    if (row < 0 || row >= this.board.rowMax || col < 0 || col >= this.board.colMax) {
+      return new Wall();
+    }
+    return new Cell(this.board, (row * this.board.colMax) + col);
   }
 
-  //Assigns the cells in the given array list to this Cell's neighbors based on their positions
-  //in the ArrayList of Cells
-  void assignToCell(int idx, ArrayList<Cell> cells, int rowMax, int colMax) {
+  //Returns whether this Cell is a Mine
+  public boolean mineStatus() {
+    return this.board.isMine(this.idx);
+  }
 
-    boolean leftCol = (idx % colMax == 0);
-    boolean topRow = (idx < colMax);
-    boolean rightCol = (idx % colMax == colMax - 1);
-    boolean bottomRow = (idx + colMax >= rowMax * colMax);
+  //Returns a WorldImage representation of this Cell based on its fields
+  WorldImage drawCell() {
+    return Cell.drawTile(this.board, this.idx);
+  }
 
-    if (leftCol) {
-      if (topRow) {
-        this.neighbors.putIfAbsent("BottomRight", cells.get(idx + (colMax + 1))); 
-      }
-      if (!topRow && !bottomRow) {
-        this.neighbors.putIfAbsent("TopRight", cells.get(idx - (colMax - 1)));  
-        this.neighbors.putIfAbsent("BottomRight", cells.get(idx + (colMax + 1))); 
-      }
-      this.neighbors.put("TopLeft", new Wall());
-      this.neighbors.put("Left", new Wall());
-      this.neighbors.put("BottomLeft", new Wall());
-    }
-    else {
-      this.neighbors.put("Left", cells.get(idx - 1));
-    }
-    if (topRow) {
-      if (rightCol) {
-        this.neighbors.putIfAbsent("BottomLeft", cells.get(idx + (colMax - 1)));
-      }
-      else if (!leftCol) {
-        this.neighbors.putIfAbsent("BottomRight", cells.get(idx + (colMax + 1))); 
-        this.neighbors.putIfAbsent("BottomLeft", cells.get(idx + (colMax - 1)));
+  //Returns the shared image for the tile at idx of the given Board
+  static WorldImage drawTile(Board board, int idx) {
+    return Cell.tileImage(Cell.tileFor(board, idx));
+  }
+
+  //Returns the shared image of the given tile, redrawing every tile image if BLOCK_SIZE has
+  //changed since they were last drawn
+  static WorldImage tileImage(int tile) {
+    if (Cell.tileSize != Cell.BLOCK_SIZE) {
+      for (int i = 0; i < Cell.TILES.length; i++) {
+        Cell.TILES[i] = Cell.makeTile(i);
       }
-      this.neighbors.put("TopLeft", new Wall());
-      this.neighbors.put("Top", new Wall());
-      this.neighbors.put("TopRight", new Wall());
-    }
-    else {
-      this.neighbors.put("Top", cells.get(idx - colMax));
+      Cell.tileSize = Cell.BLOCK_SIZE;
     }
-    if (rightCol) {
-      this.neighbors.put("TopRight", new Wall());
-      this.neighbors.put("Right", new Wall());
-      this.neighbors.put("BottomRight", new Wall());
-      if (!topRow && !bottomRow) {
-        this.neighbors.putIfAbsent("BottomLeft", cells.get(idx + (colMax - 1)));
-        this.neighbors.putIfAbsent("TopLeft", cells.get(idx - (colMax + 1)));
+    return Cell.TILES[tile];
+  }
+
+  //Returns which of the TILES shows the tile at idx of the given Board
+  static int tileFor(Board board, int idx) {
+    if (board.isRevealed(idx)) {
+      if (board.isMine(idx)) {
+        return Cell.MINE_TILE;
       }
+      return board.neighborMines[idx];
     }
-    else {
-      this.neighbors.put("Right", cells.get(idx + 1));
+    if (board.isFlagged(idx)) {
+      return Cell.FLAG_TILE;
     }
-    if (bottomRow) {
-      if (leftCol) {
-        this.neighbors.putIfAbsent("TopRight", cells.get(idx - (colMax - 1))); 
-        this.neighbors.putIfAbsent("TopLeft", new Wall());
-      }
-      else if (rightCol) {
-        this.neighbors.putIfAbsent("TopLeft", cells.get(idx - (colMax + 1)));
-        this.neighbors.putIfAbsent("TopRight", new Wall()); 
+    return Cell.HIDDEN_TILE;
+  }
 
+  //Returns which of the TILES shows the tile at the given row and column of any IBoard
+  static int tileAt(IBoard board, int row, int col) {
+    if (board.isRevealedAt(row, col)) {
+      if (board.isMineAt(row, col)) {
+        return Cell.MINE_TILE;
       }
-      else if (!rightCol && !leftCol) {
-        this.neighbors.putIfAbsent("TopRight", cells.get(idx - (colMax - 1)));  
-        this.neighbors.putIfAbsent("TopLeft", cells.get(idx - (colMax + 1)));
-      }
-      this.neighbors.put("BottomLeft", new Wall());
-      this.neighbors.put("Bottom", new Wall());
-      this.neighbors.put("BottomRight", new Wall());
-    }
-    else {
-      this.neighbors.put("Bottom", cells.get(idx + colMax));
+      return board.neighborMinesAt(row, col);
     }
-    if (!leftCol && !topRow && !rightCol && !bottomRow) {
-      this.neighbors.putIfAbsent("TopRight", cells.get(idx - (colMax - 1)));  
-      this.neighbors.putIfAbsent("BottomRight", cells.get(idx + (colMax + 1))); 
-      this.neighbors.putIfAbsent("BottomLeft", cells.get(idx + (colMax - 1)));
-      this.neighbors.putIfAbsent("TopLeft", cells.get(idx - (colMax + 1)));
+    if (board.isFlaggedAt(row, col)) {
+      return Cell.FLAG_TILE;
     }
+    return Cell.HIDDEN_TILE;
   }
 
-  //Returns whether this Cell is a Mine
-  public boolean mineStatus() {
-    return this.isMine;
-  }
-
-  //Returns a WorldImage representation of this Cell based on its fields
-  WorldImage drawCell() {
-    if (this.isRevealed) {
-      if (this.isMine) {
-        return new OverlayImage(
-            new CircleImage(6, OutlineMode.SOLID, Color.red),
-            new RectangleImage(Cell.BLOCK_SIZE, Cell.BLOCK_SIZE, OutlineMode.SOLID, Color.gray));
-      }
-      else {
-        return new OverlayImage(
-            new TextImage(Integer.toString(this.neighborMines), 12, Color.green),
-            new RectangleImage(Cell.BLOCK_SIZE, Cell.BLOCK_SIZE, OutlineMode.SOLID, Color.gray));
-      }
+  //Draws a new image of the given tile, where tiles 0 through 8 are revealed tiles with that
+  //many neighboring mines
+  static WorldImage makeTile(int tile) {
+    if (tile == Cell.MINE_TILE) {
+      return new OverlayImage(
+          new CircleImage(6, OutlineMode.SOLID, Color.red),
+          new RectangleImage(Cell.BLOCK_SIZE, Cell.BLOCK_SIZE, OutlineMode.SOLID, Color.gray));
     }
-    else {
-      if (isFlagged) {
-        return new OverlayImage(
-            new TriangleImage(
-                new Posn(0,0), new Posn(-5, 10), new Posn(5, 10), OutlineMode.SOLID, Color.orange),
-            new OverlayImage(
-                new RectangleImage(
-                    BLOCK_SIZE - 1, BLOCK_SIZE - 1, OutlineMode.SOLID, Color.DARK_GRAY),
-                new RectangleImage(BLOCK_SIZE, BLOCK_SIZE, OutlineMode.SOLID, Color.white)));
-      }
+    else if (tile == Cell.FLAG_TILE) {
+      return new OverlayImage(
+          new TriangleImage(
+              new Posn(0,0), new Posn(-5, 10), new Posn(5, 10), OutlineMode.SOLID, Color.orange),
+          new OverlayImage(
+              new RectangleImage(
+                  BLOCK_SIZE - 1, BLOCK_SIZE - 1, OutlineMode.SOLID, Color.DARK_GRAY),
+              new RectangleImage(BLOCK_SIZE, BLOCK_SIZE, OutlineMode.SOLID, Color.white)));
+    }
+    else if (tile == Cell.HINT_TILE) {
+      return new OverlayImage(
+          new CircleImage(4, OutlineMode.SOLID, Color.yellow),
+          Cell.makeTile(Cell.HIDDEN_TILE));
+    }
+    else if (tile == Cell.HIDDEN_TILE) {
       return new OverlayImage(
           new RectangleImage(BLOCK_SIZE - 1, BLOCK_SIZE - 1, OutlineMode.SOLID, Color.DARK_GRAY),
           new RectangleImage(Cell.BLOCK_SIZE, Cell.BLOCK_SIZE, OutlineMode.SOLID, Color.white));
     }
+    else {
+      return new OverlayImage(
+          new TextImage(Integer.toString(tile), 12, Color.green),
+          new RectangleImage(Cell.BLOCK_SIZE, Cell.BLOCK_SIZE, OutlineMode.SOLID, Color.gray));
+    }
   }
 
   //If the tile is not already flagged or revealed, then reveal cell(s)
   void handleLeftClick() {
-    if (!isFlagged && !isRevealed) {
-      this.floodFill();
-    }
+    this.board.reveal(this.idx);
   }
   
   //Toggle whether this cell is flagged
   void handleRightClick() {
-    this.isFlagged = !this.isFlagged;
+    this.board.toggleFlag(this.idx);
   }
 
-  //Reveals this tile and any adjacent tiles that have no mines as neighbors
+  //Reveals this tile and every tile reachable from it through tiles that have no mines as
+  //neighbors
   public void floodFill() {
-    if (this.neighborMines == 0 && !isRevealed) {
-      this.isRevealed = true;
-      
-      NeighborIterator map = new NeighborIterator(this.neighbors);
-      IGamePiece lookingAt = new Wall();
-
-      for (int i = 0; i < 8; i++) {
-        lookingAt = map.next();
-        lookingAt.floodFill();
-      }
-    }
-    else {
-      this.isRevealed = true;
-    }
+    this.board.floodFill(this.idx);
   }
   
 }
@@ -226,28 +221,27 @@ class ExamplesGamePiece {
   Wall wall1;
 
   MineWorld world2;
-  ArrayList<Cell> emptyCells;
 
   void reset() {
     this.cell1 = new Cell();
     this.wall1 = new Wall();
     this.world2 = new MineWorld(4, 4, new Random(4));
-    this.emptyCells = this.world2.cells;
   }
 
   void testCountNeighbors(Tester t) {
     reset();
-    this.world2.assignCells();
     this.world2.makeMines(4);
-    t.checkExpect(world2.cells.get(0).countNeighborMines(), 1);
+    t.checkExpect(world2.cellAt(0).countNeighborMines(), 0);
+    t.checkExpect(world2.cellAt(2).countNeighborMines(), 1);
+    t.checkExpect(world2.cellAt(13).countNeighborMines(), 2);
     reset();
   }
 
   void testMakeMine(Tester t) {
     reset();
-    t.checkExpect(this.cell1.isMine, false);
+    t.checkExpect(this.cell1.mineStatus(), false);
     this.cell1.makeMine();
-    t.checkExpect(this.cell1.isMine, true);
+    t.checkExpect(this.cell1.board.isMine(0), true);
     reset();
   }
 
@@ -261,33 +255,35 @@ class ExamplesGamePiece {
     t.checkExpect(this.wall1.mineStatus(), false);
   }
 
-  void testAssignToCell(Tester t) {
+  void testNeighbors(Tester t) {
     reset();
-    t.checkExpect(this.cell1.neighbors, new HashMap<String, IGamePiece>());
-    this.cell1.assignToCell(0, this.emptyCells, 4, 4);
-    t.checkExpect(this.cell1.neighbors.get("BottomRight"), this.emptyCells.get(5));
-    t.checkExpect(this.cell1.neighbors.get("TopLeft"), new Wall());
+    t.checkExpect(this.cell1.neighbors().get("Top"), new Wall());
+    t.checkExpect(this.cell1.neighbors().get("BottomRight"), new Wall());
+    t.checkExpect(this.world2.cellAt(0).neighbors().get("BottomRight"), this.world2.cellAt(5));
+    t.checkExpect(this.world2.cellAt(0).neighbors().get("TopLeft"), new Wall());
+    t.checkExpect(this.world2.cellAt(15).neighbors().get("TopLeft"), this.world2.cellAt(10));
+    t.checkExpect(this.world2.cellAt(15).neighbors().get("Right"), new Wall());
     reset();
   }
 
   void testDrawCell(Tester t) {
     reset();
-    this.cell1.isRevealed = true;
+    this.cell1.board.set(0, Board.REVEALED);
     t.checkExpect(this.cell1.drawCell(),
         new OverlayImage(
             new TextImage(Integer.toString(0), 12, Color.green),
             new RectangleImage(Cell.BLOCK_SIZE, Cell.BLOCK_SIZE,
                 OutlineMode.SOLID, Color.gray)));
     
-    this.cell1.isMine = true;
+    this.cell1.makeMine();
 
     t.checkExpect(this.cell1.drawCell(), new OverlayImage(
         new CircleImage(6, OutlineMode.SOLID, Color.red),
         new RectangleImage(Cell.BLOCK_SIZE, Cell.BLOCK_SIZE, OutlineMode.SOLID, Color.gray)));
     
-    this.cell1.isRevealed = false;
+    this.cell1.board.clear(0, Board.REVEALED);
     
-    this.cell1.isFlagged = true;
+    this.cell1.board.set(0, Board.FLAGGED);
     
     t.checkExpect(this.cell1.drawCell(),
         new OverlayImage(
@@ -302,7 +298,7 @@ class ExamplesGamePiece {
                 new RectangleImage(
                     Cell.BLOCK_SIZE, Cell.BLOCK_SIZE, OutlineMode.SOLID, Color.white))));
     
-    this.cell1.isFlagged = false;
+    this.cell1.board.clear(0, Board.FLAGGED);
 
     t.checkExpect(this.cell1.drawCell(),
         new OverlayImage(
@@ -312,24 +308,67 @@ class ExamplesGamePiece {
     reset();
   }
   
+  void testDrawTile(Tester t) {
+    reset();
+    this.world2.makeMines(4);
+    t.checkExpect(Cell.tileFor(this.world2.board, 0), Cell.HIDDEN_TILE);
+    WorldImage hidden = Cell.drawTile(this.world2.board, 0);
+    t.checkExpect(Cell.drawTile(this.world2.board, 3) == hidden, true);
+    t.checkExpect(hidden, Cell.makeTile(Cell.HIDDEN_TILE));
+
+    this.world2.board.toggleFlag(2);
+    t.checkExpect(Cell.tileFor(this.world2.board, 2), Cell.FLAG_TILE);
+    this.world2.board.set(2, Board.REVEALED);
+    t.checkExpect(Cell.tileFor(this.world2.board, 2), 1);
+    t.checkExpect(Cell.drawTile(this.world2.board, 2), Cell.makeTile(1));
+    this.cell1.makeMine();
+    this.cell1.board.set(0, Board.REVEALED);
+    t.checkExpect(Cell.tileFor(this.cell1.board, 0), Cell.MINE_TILE);
+
+    Cell.BLOCK_SIZE = 30;
+    t.checkExpect(Cell.drawTile(this.world2.board, 3) == hidden, false);
+    t.checkExpect(Cell.drawTile(this.world2.board, 3).getWidth(), 30.0);
+    Cell.BLOCK_SIZE = 20;
+    t.checkExpect(Cell.drawTile(this.world2.board, 3), hidden);
+    t.checkExpect(Cell.tileImage(Cell.HIDDEN_TILE) == Cell.drawTile(this.world2.board, 3), true);
+    t.checkExpect(Cell.tileImage(Cell.HINT_TILE),
+        new OverlayImage(new CircleImage(4, OutlineMode.SOLID, Color.yellow), hidden));
+    reset();
+  }
+  
+  void testTileAt(Tester t) {
+    reset();
+    this.world2.makeMines(4);
+    for (int i = 0; i < 16; i++) {
+      t.checkExpect(Cell.tileAt(this.world2.board, i / 4, i % 4),
+          Cell.tileFor(this.world2.board, i));
+    }
+    this.world2.board.toggleFlag(2);
+    this.world2.board.set(3, Board.REVEALED);
+    this.world2.board.set(5, Board.REVEALED);
+    t.checkExpect(Cell.tileAt(this.world2.board, 0, 2), Cell.FLAG_TILE);
+    t.checkExpect(Cell.tileAt(this.world2.board, 0, 3), Cell.MINE_TILE);
+    t.checkExpect(Cell.tileAt(this.world2.board, 1, 1), Cell.tileFor(this.world2.board, 5));
+    reset();
+  }
+
   void testHandleLeftClick(Tester t) {
     reset();
-    this.cell1.isFlagged = true;
+    this.cell1.board.set(0, Board.FLAGGED);
     this.cell1.handleLeftClick();
-    t.checkExpect(this.cell1.isRevealed, false);
-    this.cell1.isFlagged = false;
+    t.checkExpect(this.cell1.isRevealed(), false);
+    this.cell1.board.clear(0, Board.FLAGGED);
     
-    this.world2.assignCells();
-    this.world2.cells.get(0).handleLeftClick();
-    t.checkExpect(this.world2.cells.get(0).isRevealed, true);
+    this.world2.cellAt(0).handleLeftClick();
+    t.checkExpect(this.world2.cellAt(0).isRevealed(), true);
     
-    NeighborIterator map1 = new NeighborIterator(this.world2.cells.get(0).neighbors);
+    NeighborIterator map1 = new NeighborIterator(this.world2.cellAt(0).neighbors());
     IGamePiece lookingAt1 = new Wall();
     for (int i = 0; i < 8; i++) {
       lookingAt1 = map1.next();
       if (lookingAt1 instanceof Cell) {
         Cell cell = (Cell)lookingAt1;
-        t.checkExpect(cell.isRevealed, true);
+        t.checkExpect(cell.isRevealed(), true);
       }
     }
     reset();
@@ -337,32 +376,31 @@ class ExamplesGamePiece {
   
   void testHandleRightClick(Tester t) {
     reset();
-    t.checkExpect(this.cell1.isFlagged, false);
+    t.checkExpect(this.cell1.isFlagged(), false);
     this.cell1.handleRightClick();
-    t.checkExpect(this.cell1.isFlagged, true);
+    t.checkExpect(this.cell1.isFlagged(), true);
     this.cell1.handleRightClick();
-    t.checkExpect(this.cell1.isFlagged, false);
+    t.checkExpect(this.cell1.isFlagged(), false);
     reset();
   }
   
   void testFloodFill(Tester t) {
     reset();
-    this.cell1.isRevealed = true;
+    this.cell1.board.set(0, Board.REVEALED);
     this.cell1.floodFill();
-    t.checkExpect(this.cell1.isRevealed, true);
-    this.cell1.isRevealed = false;
+    t.checkExpect(this.cell1.isRevealed(), true);
+    this.cell1.board.clear(0, Board.REVEALED);
     
-    this.world2.assignCells();
-    this.world2.cells.get(0).floodFill();
-    t.checkExpect(this.world2.cells.get(0).isRevealed, true);
+    this.world2.cellAt(0).floodFill();
+    t.checkExpect(this.world2.cellAt(0).isRevealed(), true);
     
-    NeighborIterator map1 = new NeighborIterator(this.world2.cells.get(0).neighbors);
+    NeighborIterator map1 = new NeighborIterator(this.world2.cellAt(0).neighbors());
     IGamePiece lookingAt1 = new Wall();
     for (int i = 0; i < 8; i++) {
       lookingAt1 = map1.next();
       if (lookingAt1 instanceof Cell) {
         Cell cell = (Cell)lookingAt1;
-        t.checkExpect(cell.isRevealed, true);
+        t.checkExpect(cell.isRevealed(), true);
       }
     }
     reset();
@@ -0,0 +1,266 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import tester.*;
+
+//Holds the chunks of a ChunkedBoard. At most capacity chunks are kept in memory, and when
+//another is needed the least recently used one is let go: if any of its tiles were revealed
+//or flagged it is written to a slot of a memory-mapped file and read back the next time it is
+//needed, and otherwise it is dropped, since its mines can be placed again from the seed
+class ChunkStore {
+  //A slot holds the chunk's rows and columns and whether its neighbor counts are present, then
+  //its tile states, then its counts
+  static final int SLOT_SIZE = 3 + (2 * ChunkedBoard.CHUNK * ChunkedBoard.CHUNK);
+  static final int SEGMENT_SLOTS = 256;
+  static final int MIN_CAPACITY = 9;
+
+  int capacity;
+  Path file;
+  FileChannel channel;
+  ArrayList<MappedByteBuffer> segments = new ArrayList<MappedByteBuffer>();
+  HashMap<Long, Integer> slots = new HashMap<Long, Integer>();
+  LinkedHashMap<Long, Chunk> hot = new LinkedHashMap<Long, Chunk>(16, 0.75f, true);
+  long hits = 0;
+  long misses = 0;
+  long evictions = 0;
+  long reloads = 0;
+  long bytesMapped = 0;
+
+  //Creates a store that keeps every chunk in memory
+  ChunkStore() {
+    this.capacity = Integer.MAX_VALUE;
+  }
+
+  //Creates a store that keeps at most capacity chunks in memory, spilling touched chunks to
+  //the given file. It needs room for a chunk and its eight neighbors
+  ChunkStore(int capacity, Path file) {
+    if (capacity < MIN_CAPACITY) {
+      throw new IllegalArgumentException("Chunk cache must hold at least 9 chunks");
+    }
+    this.capacity = capacity;
+    this.file = file;
+  }
+
+  //Returns the number of chunks in memory
+  int size() {
+    return this.hot.size();
+  }
+
+  //Returns the chunk with the given key, reading it back from the file if it was spilled, or
+  //null if it has never been made
+  Chunk get(long key) {
+    Chunk chunk = this.hot.get(key);
+    if (chunk != null) {
+      this.hits += 1;
+      return chunk;
+    }
+    this.misses += 1;
+    Integer slot = this.slots.get(key);
+    if (slot == null) {
+      return null;
+    }
+    chunk = this.read(key, slot);
+    this.reloads += 1;
+    this.put(key, chunk);
+    return chunk;
+  }
+
+  //Adds a chunk with the given key, letting go of the least recently used chunks if there are
+  //now too many
+  void put(long key, Chunk chunk) {
+    this.hot.put(key, chunk);
+    Iterator<Map.Entry<Long, Chunk>> oldest = this.hot.entrySet().iterator();
+    while (this.hot.size() > this.capacity) {
+      Map.Entry<Long, Chunk> entry = oldest.next();
+      if (entry.getValue().touched) {
+        this.write(entry.getKey(), entry.getValue());
+      }
+      oldest.remove();
+      this.evictions += 1;
+    }
+  }
+
+  //Writes the given chunk to its slot, giving it the next free slot if it has none
+  void write(long key, Chunk chunk) {
+    Integer slot = this.slots.get(key);
+    if (slot == null) {
+      slot = this.slots.size();
+      this.slots.put(key, slot);
+    }
+    MappedByteBuffer buffer = this.segment(slot);
+    buffer.position((slot % SEGMENT_SLOTS) * SLOT_SIZE);
+    buffer.put((byte) chunk.rows);
+    buffer.put((byte) chunk.cols);
+    buffer.put((byte) (chunk.neighborMines == null ? 0 : 1));
+    buffer.put(chunk.state);
+    if (chunk.neighborMines != null) {
+      buffer.put(chunk.neighborMines);
+    }
+  }
+
+  //Reads back the chunk with the given key from the given slot
+  Chunk read(long key, int slot) {
+    MappedByteBuffer buffer = this.segment(slot);
+    buffer.position((slot % SEGMENT_SLOTS) * SLOT_SIZE);
+    int rows = buffer.get();
+    int cols = buffer.get();
+    boolean counted = buffer.get() != 0;
+    Chunk chunk = new Chunk((int) (key >> 32), (int) key, rows, cols);
+    buffer.get(chunk.state);
+    if (counted) {
+      chunk.neighborMines = new byte[chunk.state.length];
+      buffer.get(chunk.neighborMines);
+    }
+    chunk.touched = true;
+    return chunk;
+  }
+
+  //Returns the mapped segment of the file holding the given slot, mapping more of the file if
+  //it is not mapped yet
+  MappedByteBuffer segment(int slot) {
+    try {
+      if (this.channel == null) {
+        this.channel = FileChannel.open(this.file, StandardOpenOption.CREATE,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+      }
+      while (this.segments.size() <= slot / SEGMENT_SLOTS) {
+        long size = (long) SEGMENT_SLOTS * SLOT_SIZE;
+        this.segments.add(this.channel.map(FileChannel.MapMode.READ_WRITE,
+            this.segments.size() * size, size));
+        this.bytesMapped += size;
+      }
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return this.segments.get(slot / SEGMENT_SLOTS);
+  }
+
+  //Closes the file chunks are spilled to. The store cannot spill or reload chunks afterwards
+  void close() {
+    try {
+      if (this.channel != null) {
+        this.channel.close();
+      }
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
+
+class ExamplesChunkStore {
+  Path file;
+
+  void reset() {
+    try {
+      this.file = Files.createTempFile("chunks", ".bin");
+      this.file.toFile().deleteOnExit();
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  //Reveals and flags tiles spread over the given board in a fixed order
+  void play(ChunkedBoard board) {
+    for (int i = 0; i < 60; i++) {
+      int row = (i * 97) % board.rowMax;
+      int col = (i * 61) % board.colMax;
+      if (i % 3 == 0) {
+        board.toggleFlagAt(row, col);
+      }
+      else if (!board.isMineAt(row, col)) {
+        board.revealAt(row, col);
+      }
+    }
+  }
+
+  void testConstructor(Tester t) {
+    reset();
+    t.checkExpect(new ChunkStore().capacity, Integer.MAX_VALUE);
+    t.checkConstructorException(
+        new IllegalArgumentException("Chunk cache must hold at least 9 chunks"),
+        "ChunkStore", 8, this.file);
+  }
+
+  void testDropsUntouchedChunks(Tester t) {
+    reset();
+    ChunkStore store = new ChunkStore(9, this.file);
+    ChunkedBoard board = new ChunkedBoard(640, 640, 0.15, 3, store);
+    for (int c = 0; c < 640; c += 64) {
+      board.isMineAt(0, c);
+      board.isMineAt(64, c);
+    }
+    t.checkExpect(store.size(), 9);
+    t.checkExpect(store.misses, 20L);
+    t.checkExpect(store.evictions, 11L);
+    t.checkExpect(store.bytesMapped, 0L);
+    board.isMineAt(0, 639);
+    board.isMineAt(64, 1);
+    t.checkExpect(store.hits, 1L);
+    t.checkExpect(store.reloads, 0L);
+    store.close();
+  }
+
+  void testSpillAndReload(Tester t) {
+    reset();
+    ChunkStore store = new ChunkStore(9, this.file);
+    ChunkedBoard spilled = new ChunkedBoard(640, 640, 0.15, 3, store);
+    ChunkedBoard whole = new ChunkedBoard(640, 640, 0.15, 3);
+    this.play(spilled);
+    this.play(whole);
+    t.checkExpect(store.size() <= 9, true);
+    t.checkExpect(store.evictions > 0, true);
+    t.checkExpect(store.bytesMapped, (long) ChunkStore.SEGMENT_SLOTS * ChunkStore.SLOT_SIZE);
+    t.checkExpect(spilled.safeHidden, whole.safeHidden);
+
+    int different = 0;
+    for (int r = 0; r < 640; r++) {
+      for (int c = 0; c < 640; c++) {
+        if (spilled.isRevealedAt(r, c) != whole.isRevealedAt(r, c)
+            || spilled.isFlaggedAt(r, c) != whole.isFlaggedAt(r, c)
+            || spilled.neighborMinesAt(r, c) != whole.neighborMinesAt(r, c)) {
+          different += 1;
+        }
+      }
+    }
+    t.checkExpect(different, 0);
+    t.checkExpect(store.reloads > 0, true);
+    t.checkExpect(store.hits > store.misses, true);
+    store.close();
+  }
+
+  void testWriteAndRead(Tester t) {
+    reset();
+    ChunkStore store = new ChunkStore(9, this.file);
+    Chunk chunk = new Chunk(2, 5, 3, 4);
+    chunk.state[1] = Board.MINE | Board.FLAGGED;
+    chunk.state[11] = Board.REVEALED;
+    long key = (2L << 32) | 5;
+    store.write(key, chunk);
+    Chunk back = store.read(key, 0);
+    t.checkExpect(back.state, chunk.state);
+    t.checkExpect(back.neighborMines, null);
+    t.checkExpect(back.rows, 3);
+    t.checkExpect(back.cols, 4);
+    t.checkExpect(back.touched, true);
+    chunk.neighborMines = new byte[] {1, 2, 3, 4, 5, 6, 7, 8, 0, 1, 2, 3};
+    store.write(key, chunk);
+    t.checkExpect(store.read(key, 0).neighborMines, chunk.neighborMines);
+    t.checkExpect(store.slots.size(), 1);
+    store.write(7L, chunk);
+    t.checkExpect(store.slots.get(7L), 1);
+    store.close();
+  }
+}
@@ -0,0 +1,587 @@
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.Random;
+
+import tester.*;
+import javalib.impworld.*;
+import javalib.worldimages.BesideImage;
+import javalib.worldimages.Posn;
+import javalib.worldimages.TextImage;
+import javalib.worldimages.WorldImage;
+
+//Represents a square block of tiles of a ChunkedBoard. Its mines are placed when it is made,
+//and the counts of mines around its tiles only once one of them is needed
+class Chunk {
+  int chunkRow;
+  int chunkCol;
+  int rows;
+  int cols;
+  byte[] state;
+  byte[] neighborMines;
+  boolean touched = false;
+
+  Chunk(int chunkRow, int chunkCol, int rows, int cols) {
+    this.chunkRow = chunkRow;
+    this.chunkCol = chunkCol;
+    this.rows = rows;
+    this.cols = cols;
+    this.state = new byte[rows * cols];
+  }
+}
+
+//Represents a Minesweeper board too large to store whole, split into chunks of CHUNK x CHUNK
+//tiles that are only made when one of their tiles is revealed, flagged, or needed to count
+//the mines around a tile. The mines of each chunk come from the board's seed and the chunk's
+//position alone, so chunks can be made in any order and an untouched region takes no memory
+class ChunkedBoard implements IBoard {
+  static final int CHUNK_BITS = 6;
+  static final int CHUNK = 1 << CHUNK_BITS;
+  static final int CHUNK_MASK = CHUNK - 1;
+
+  int rowMax;
+  int colMax;
+  long seed;
+  double density;
+  ChunkStore store;
+  Chunk last;
+  long mineCount;
+  long safeHidden;
+  long minesRevealed = 0;
+  long[] queue = new long[16];
+  int[] shuffle = new int[CHUNK * CHUNK];
+
+  //Creates a board whose every chunk has the given share of its tiles as mines, rounded to
+  //the nearest whole mine
+  ChunkedBoard(int rowMax, int colMax, double density, long seed) {
+    this(rowMax, colMax, density, seed, new ChunkStore());
+  }
+
+  //Creates a board like the one above whose chunks are kept in the given store
+  ChunkedBoard(int rowMax, int colMax, double density, long seed, ChunkStore store) {
+    if (rowMax < 1 || colMax < 1) {
+      throw new IllegalArgumentException("Board must have at least one row and column");
+    }
+    if (density < 0 || density >= 1) {
+      throw new IllegalArgumentException("Mine density must be at least 0 and below 1");
+    }
+    this.rowMax = rowMax;
+    this.colMax = colMax;
+    this.density = density;
+    this.seed = seed;
+    this.store = store;
+
+    long fullRows = rowMax / CHUNK;
+    long fullCols = colMax / CHUNK;
+    int lastRows = rowMax % CHUNK;
+    int lastCols = colMax % CHUNK;
+    this.mineCount = (fullRows * fullCols * this.minesIn(CHUNK, CHUNK))
+        + (fullRows * this.minesIn(CHUNK, lastCols))
+        + (fullCols * this.minesIn(lastRows, CHUNK))
+        + this.minesIn(lastRows, lastCols);
+    this.safeHidden = ((long) rowMax * colMax) - this.mineCount;
+  }
+
+  //Returns the number of mines in a chunk with the given number of rows and columns
+  int minesIn(int rows, int cols) {
+    return (int) Math.round(this.density * rows * cols);
+  }
+
+  public int rows() {
+    return this.rowMax;
+  }
+
+  public int cols() {
+    return this.colMax;
+  }
+
+  //Returns the number of chunks in memory
+  int chunkCount() {
+    return this.store.size();
+  }
+
+  //Returns the chunk holding the tile at the given row and column, making it and placing its
+  //mines if it has not been made yet
+  Chunk chunkAt(int row, int col) {
+    int chunkRow = row >> CHUNK_BITS;
+    int chunkCol = col >> CHUNK_BITS;
+    if (this.last != null && this.last.chunkRow == chunkRow && this.last.chunkCol == chunkCol) {
+      return this.last;
+    }
+
+    long key = ChunkedBoard.keyOf(chunkRow, chunkCol);
+    Chunk chunk = this.store.get(key);
+    if (chunk == null) {
+      chunk = new Chunk(chunkRow, chunkCol,
+          Math.min(CHUNK, this.rowMax - (chunkRow << CHUNK_BITS)),
+          Math.min(CHUNK, this.colMax - (chunkCol << CHUNK_BITS)));
+      this.placeMines(chunk);
+      this.store.put(key, chunk);
+    }
+    this.last = chunk;
+    return chunk;
+  }
+
+  //Returns the key of the chunk at the given chunk row and column, which is different for
+  //every chunk of every board
+  static long keyOf(int chunkRow, int chunkCol) {
+    return ((long) chunkRow << 32) | (chunkCol & 0xFFFFFFFFL);
+  }
+
+  //Places the mines of the given chunk from this board's seed and the chunk's position, by
+  //shuffling the front of a list of its tiles. The seed mixes the chunk's whole key, so no two
+  //chunks of a board share one
+  void placeMines(Chunk chunk) {
+    int size = chunk.state.length;
+    Random rand = new Random(BatchRunner.gameSeed(
+        this.seed ^ ChunkedBoard.keyOf(chunk.chunkRow, chunk.chunkCol), 0));
+    for (int i = 0; i < size; i++) {
+      this.shuffle[i] = i;
+    }
+    int mines = this.minesIn(chunk.rows, chunk.cols);
+    for (int i = 0; i < mines; i++) {
+      int pick = i + rand.nextInt(size - i);
+      int tile = this.shuffle[pick];
+      this.shuffle[pick] = this.shuffle[i];
+      chunk.state[tile] = Board.MINE;
+    }
+  }
+
+  //Returns the index within its chunk of the tile at the given row and column
+  int local(Chunk chunk, int row, int col) {
+    return ((row & CHUNK_MASK) * chunk.cols) + (col & CHUNK_MASK);
+  }
+
+  public boolean isMineAt(int row, int col) {
+    Chunk chunk = this.chunkAt(row, col);
+    return (chunk.state[this.local(chunk, row, col)] & Board.MINE) != 0;
+  }
+
+  public boolean isRevealedAt(int row, int col) {
+    Chunk chunk = this.chunkAt(row, col);
+    return (chunk.state[this.local(chunk, row, col)] & Board.REVEALED) != 0;
+  }
+
+  public boolean isFlaggedAt(int row, int col) {
+    Chunk chunk = this.chunkAt(row, col);
+    return (chunk.state[this.local(chunk, row, col)] & Board.FLAGGED) != 0;
+  }
+
+  //Returns the number of mines around the tile at the given row and column, counting them for
+  //its whole chunk the first time, which makes the neighboring chunks too
+  public int neighborMinesAt(int row, int col) {
+    Chunk chunk = this.chunkAt(row, col);
+    if (chunk.neighborMines == null) {
+      this.countNeighborMines(chunk);
+    }
+    return chunk.neighborMines[this.local(chunk, row, col)];
+  }
+
+  //Counts the mines around every tile of the given chunk
+  void countNeighborMines(Chunk chunk) {
+    byte[] counts = new byte[chunk.state.length];
+    int top = chunk.chunkRow << CHUNK_BITS;
+    int left = chunk.chunkCol << CHUNK_BITS;
+    for (int r = Math.max(0, top - 1); r <= Math.min(this.rowMax - 1, top + chunk.rows); r++) {
+      for (int c = Math.max(0, left - 1); c <= Math.min(this.colMax - 1, left + chunk.cols);
+          c++) {
+        if (!this.isMineAt(r, c)) {
+          continue;
+        }
+        for (int i = 0; i < 8; i++) {
+          int nr = r + Board.DROW[i] - top;
+          int nc = c + Board.DCOL[i] - left;
+          if (nr >= 0 && nr < chunk.rows && nc >= 0 && nc < chunk.cols) {
+            counts[(nr * chunk.cols) + nc] += 1;
+          }
+        }
+      }
+    }
+    chunk.neighborMines = counts;
+  }
+
+  public void toggleFlagAt(int row, int col) {
+    Chunk chunk = this.chunkAt(row, col);
+    chunk.state[this.local(chunk, row, col)] ^= Board.FLAGGED;
+    chunk.touched = true;
+  }
+
+  //Reveals the tile at the given row and column and every tile reachable from it through tiles
+  //with no neighboring mines, across chunk boundaries, doing nothing if it is flagged. Returns
+  //how many tiles were newly revealed. The work grows with the size of the region revealed, so
+  //a board with very few mines can take a long time to open
+  public long revealAt(int row, int col) {
+    if (row < 0 || row >= this.rowMax || col < 0 || col >= this.colMax) {
+      throw new IllegalArgumentException("Tile is not on the board");
+    }
+    if (this.isFlaggedAt(row, col) || !this.revealOne(row, col)) {
+      return 0;
+    }
+
+    this.queue[0] = ((long) row << 32) | col;
+    long count = 1;
+    int head = 0;
+    int tail = 1;
+    while (head != tail) {
+      long next = this.queue[head];
+      head = (head + 1) & (this.queue.length - 1);
+      int r = (int) (next >> 32);
+      int c = (int) next;
+      if (this.neighborMinesAt(r, c) != 0 || this.isMineAt(r, c)) {
+        continue;
+      }
+      for (int i = 0; i < 8; i++) {
+        int nr = r + Board.DROW[i];
+        int nc = c + Board.DCOL[i];
+        if (nr >= 0 && nr < this.rowMax && nc >= 0 && nc < this.colMax
+            && this.revealOne(nr, nc)) {
+          count += 1;
+          this.queue[tail] = ((long) nr << 32) | nc;
+          tail = (tail + 1) & (this.queue.length - 1);
+          if (tail == head) {
+            head = this.growQueue(head);
+            tail = this.queue.length / 2;
+          }
+        }
+      }
+    }
+    return count;
+  }
+
+  //Reveals the single tile at the given row and column, returning false if it already was
+  boolean revealOne(int row, int col) {
+    Chunk chunk = this.chunkAt(row, col);
+    int idx = this.local(chunk, row, col);
+    if ((chunk.state[idx] & Board.REVEALED) != 0) {
+      return false;
+    }
+    chunk.state[idx] |= Board.REVEALED;
+    chunk.touched = true;
+    if ((chunk.state[idx] & Board.MINE) != 0) {
+      this.minesRevealed += 1;
+    }
+    else {
+      this.safeHidden -= 1;
+    }
+    return true;
+  }
+
+  //Doubles the flood fill queue, which is full, moving its items to the front in order and
+  //returning the new position of its head
+  int growQueue(int head) {
+    int length = this.queue.length;
+    long[] grown = new long[length * 2];
+    System.arraycopy(this.queue, head, grown, 0, length - head);
+    System.arraycopy(this.queue, 0, grown, length - head, head);
+    this.queue = grown;
+    return 0;
+  }
+
+  public boolean isLost() {
+    return this.minesRevealed > 0;
+  }
+
+  public boolean isWon() {
+    return this.safeHidden == 0;
+  }
+}
+
+//Represents a game of Minesweeper on a ChunkedBoard, showing a window of it that the arrow
+//keys move around
+class ChunkedWorld extends World {
+  ChunkedBoard board;
+  int viewRows;
+  int viewCols;
+  int top = 0;
+  int left = 0;
+  int moves = 0;
+
+  ChunkedWorld(ChunkedBoard board, int viewRows, int viewCols) {
+    this.board = board;
+    this.viewRows = Math.min(viewRows, board.rowMax);
+    this.viewCols = Math.min(viewCols, board.colMax);
+  }
+
+  //Draws the tiles in view, row by row
+  public WorldScene makeScene() {
+    WorldScene scene = new WorldScene(this.viewCols * Cell.BLOCK_SIZE,
+        this.viewRows * Cell.BLOCK_SIZE);
+    for (int r = 0; r < this.viewRows; r++) {
+      scene.placeImageXY(this.drawTiles(this.top + r, this.left, this.left + this.viewCols),
+          (this.viewCols * Cell.BLOCK_SIZE) / 2, (r * Cell.BLOCK_SIZE) + Cell.BLOCK_SIZE / 2);
+    }
+    return scene;
+  }
+
+  //Draws the tiles of the given board row from column start up to but not including column
+  //end side by side
+  WorldImage drawTiles(int row, int start, int end) {
+    if (end - start == 1) {
+      return Cell.tileImage(Cell.tileAt(this.board, row, start));
+    }
+    int mid = (start + end) / 2;
+    return new BesideImage(this.drawTiles(row, start, mid), this.drawTiles(row, mid, end));
+  }
+
+  //Reveals or flags the tile clicked on, wherever the view is
+  public void onMouseClicked(Posn location, String button) {
+    int row = this.top + Math.floorDiv(location.y, Cell.BLOCK_SIZE);
+    int col = this.left + Math.floorDiv(location.x, Cell.BLOCK_SIZE);
+    if (button.equals("LeftButton")) {
+      this.reveal(row, col);
+    }
+    if (button.equals("RightButton")) {
+      this.flag(row, col);
+    }
+  }
+
+  //Moves the view by half its size in the direction of the arrow key pressed
+  public void onKeyEvent(String key) {
+    if (key.equals("up")) {
+      this.moveView(-this.viewRows / 2, 0);
+    }
+    else if (key.equals("down")) {
+      this.moveView(this.viewRows / 2, 0);
+    }
+    else if (key.equals("left")) {
+      this.moveView(0, -this.viewCols / 2);
+    }
+    else if (key.equals("right")) {
+      this.moveView(0, this.viewCols / 2);
+    }
+  }
+
+  //Moves the view by the given rows and columns, keeping it on the board
+  void moveView(int dRow, int dCol) {
+    this.top = Math.max(0, Math.min(this.board.rowMax - this.viewRows, this.top + dRow));
+    this.left = Math.max(0, Math.min(this.board.colMax - this.viewCols, this.left + dCol));
+  }
+
+  //Reveals the tile at the given board row and column, returning how many tiles were newly
+  //revealed
+  long reveal(int row, int col) {
+    this.moves += 1;
+    return this.board.revealAt(row, col);
+  }
+
+  //Toggles the flag on the tile at the given board row and column
+  void flag(int row, int col) {
+    if (row < 0 || row >= this.board.rowMax || col < 0 || col >= this.board.colMax) {
+      throw new IllegalArgumentException("Tile is not on the board");
+    }
+    this.moves += 1;
+    this.board.toggleFlagAt(row, col);
+  }
+
+  //Returns which of Cell.TILES is shown at the given position in the window
+  int getTileAt(Posn location) {
+    return Cell.tileAt(this.board, this.top + Math.floorDiv(location.y, Cell.BLOCK_SIZE),
+        this.left + Math.floorDiv(location.x, Cell.BLOCK_SIZE));
+  }
+
+  //Returns whether this game is still being played, or whether it was won or lost
+  GameStatus status() {
+    if (this.board.isLost()) {
+      return GameStatus.LOST;
+    }
+    else if (this.board.isWon()) {
+      return GameStatus.WON;
+    }
+    return GameStatus.PLAYING;
+  }
+
+  //Ends the game once it is won or lost
+  public void onTick() {
+    GameStatus status = this.status();
+    if (status == GameStatus.LOST) {
+      this.endOfWorld("You Lose");
+    }
+    else if (status == GameStatus.WON) {
+      this.endOfWorld("You Win");
+    }
+  }
+
+  //Draws the view with the message the game ended with
+  public WorldScene lastScene(String msg) {
+    WorldScene scene = this.makeScene();
+    scene.placeImageXY(new TextImage(msg, 28, Color.red),
+        this.viewCols * (Cell.BLOCK_SIZE / 2), this.viewRows * (Cell.BLOCK_SIZE / 2));
+    return scene;
+  }
+}
+
+class ExamplesChunkedBoard {
+  ChunkedBoard board1;
+
+  //Makes a 150x130 board, which has partial chunks along its bottom and right edges
+  void reset() {
+    this.board1 = new ChunkedBoard(150, 130, 0.15, 7);
+  }
+
+  //Returns a Board with the same mines as the given ChunkedBoard
+  Board copy(ChunkedBoard board) {
+    Board dense = new Board(board.rowMax, board.colMax);
+    for (int r = 0; r < board.rowMax; r++) {
+      for (int c = 0; c < board.colMax; c++) {
+        if (board.isMineAt(r, c)) {
+          dense.makeMine((r * board.colMax) + c);
+        }
+      }
+    }
+    return dense;
+  }
+
+  void testConstructor(Tester t) {
+    reset();
+    t.checkExpect(this.board1.chunkCount(), 0);
+    t.checkExpect(this.board1.rows(), 150);
+    t.checkExpect(this.board1.cols(), 130);
+    Board dense = this.copy(this.board1);
+    t.checkExpect(this.board1.chunkCount(), 9);
+    t.checkExpect(this.board1.mineCount, (long) dense.mineCount);
+    t.checkExpect(this.board1.safeHidden, (long) dense.safeHidden);
+    t.checkConstructorException(
+        new IllegalArgumentException("Board must have at least one row and column"),
+        "ChunkedBoard", 0, 5, 0.1, 1L);
+    t.checkConstructorException(
+        new IllegalArgumentException("Mine density must be at least 0 and below 1"),
+        "ChunkedBoard", 5, 5, 1.0, 1L);
+  }
+
+  void testChunkAt(Tester t) {
+    reset();
+    Chunk chunk = this.board1.chunkAt(140, 5);
+    t.checkExpect(chunk.chunkRow, 2);
+    t.checkExpect(chunk.chunkCol, 0);
+    t.checkExpect(chunk.rows, 22);
+    t.checkExpect(chunk.cols, 64);
+    t.checkExpect(this.board1.chunkAt(130, 63) == chunk, true);
+    t.checkExpect(this.board1.local(chunk, 130, 63), (2 * 64) + 63);
+    t.checkExpect(chunk.neighborMines, null);
+    int mines = 0;
+    for (byte tile : chunk.state) {
+      mines += tile & Board.MINE;
+    }
+    t.checkExpect(mines, (int) Math.round(0.15 * 22 * 64));
+  }
+
+  void testSameMinesInAnyOrder(Tester t) {
+    reset();
+    ChunkedBoard other = new ChunkedBoard(150, 130, 0.15, 7);
+    other.chunkAt(149, 129);
+    other.chunkAt(70, 70);
+    t.checkExpect(this.copy(other).neighborMines, this.copy(this.board1).neighborMines);
+    t.checkExpect(Arrays.equals(this.copy(new ChunkedBoard(150, 130, 0.15, 8)).neighborMines,
+        this.copy(this.board1).neighborMines), false);
+  }
+
+  void testFarChunksDiffer(Tester t) {
+    ChunkedBoard huge = new ChunkedBoard(300000, 3000000, 0.15, 7);
+    t.checkExpect((4295 * 1000003) ^ 0, (0 * 1000003) ^ 45589);
+    t.checkExpect(Arrays.equals(huge.chunkAt(4295 << 6, 0).state,
+        huge.chunkAt(0, 45589 << 6).state), false);
+    t.checkExpect(ChunkedBoard.keyOf(4295, 0) == ChunkedBoard.keyOf(0, 45589), false);
+    t.checkExpect(huge.chunkCount(), 2);
+  }
+
+  void testNeighborMines(Tester t) {
+    reset();
+    Board dense = this.copy(this.board1);
+    ChunkedBoard fresh = new ChunkedBoard(150, 130, 0.15, 7);
+    int wrong = 0;
+    for (int r = 0; r < 150; r++) {
+      for (int c = 0; c < 130; c++) {
+        if (fresh.neighborMinesAt(r, c) != dense.neighborMines[(r * 130) + c]) {
+          wrong += 1;
+        }
+      }
+    }
+    t.checkExpect(wrong, 0);
+  }
+
+  void testRevealAt(Tester t) {
+    reset();
+    Board dense = this.copy(this.board1);
+    int start = 0;
+    while (dense.isMine(start) || dense.neighborMines[start] != 0) {
+      start += 1;
+    }
+    long count = this.board1.revealAt(start / 130, start % 130);
+    t.checkExpect(count, (long) dense.floodFill(start));
+    int different = 0;
+    for (int i = 0; i < dense.size(); i++) {
+      if (dense.isRevealed(i) != this.board1.isRevealedAt(i / 130, i % 130)) {
+        different += 1;
+      }
+    }
+    t.checkExpect(different, 0);
+    t.checkExpect(this.board1.safeHidden, (long) dense.safeHidden);
+    t.checkExpect(this.board1.revealAt(start / 130, start % 130), 0L);
+
+    ChunkedBoard open = new ChunkedBoard(200, 200, 0, 1);
+    open.toggleFlagAt(5, 5);
+    t.checkExpect(open.revealAt(5, 5), 0L);
+    open.toggleFlagAt(5, 5);
+    t.checkExpect(open.revealAt(100, 100), 40000L);
+    t.checkExpect(open.isWon(), true);
+    t.checkExpect(open.isLost(), false);
+    t.checkExpect(open.chunkCount(), 16);
+    t.checkException(new IllegalArgumentException("Tile is not on the board"), open,
+        "revealAt", 200, 0);
+  }
+
+  void testGrowQueue(Tester t) {
+    ChunkedBoard board = new ChunkedBoard(2, 2, 0, 1);
+    board.queue = new long[] {3, 4, 1, 2};
+    t.checkExpect(board.growQueue(2), 0);
+    t.checkExpect(board.queue, new long[] {1, 2, 3, 4, 0, 0, 0, 0});
+  }
+
+  void testHugeBoard(Tester t) {
+    ChunkedBoard huge = new ChunkedBoard(1000000, 1000000, 0.2, 3);
+    t.checkExpect(huge.mineCount, 15625L * 15625 * 819);
+    int col = 500000;
+    while (huge.isMineAt(500000, col)) {
+      col += 1;
+    }
+    t.checkExpect(huge.revealAt(500000, col) >= 1, true);
+    t.checkExpect(huge.isLost(), false);
+    t.checkExpect(huge.chunkCount() <= 16, true);
+    huge.toggleFlagAt(999999, 999999);
+    t.checkExpect(huge.isFlaggedAt(999999, 999999), true);
+    t.checkExpect(huge.chunkCount() <= 17, true);
+  }
+
+  void testChunkedWorld(Tester t) {
+    ChunkedWorld world = new ChunkedWorld(new ChunkedBoard(1000, 1000, 0.15, 5), 20, 30);
+    world.onKeyEvent("down");
+    world.onKeyEvent("right");
+    t.checkExpect(world.top, 10);
+    t.checkExpect(world.left, 15);
+    world.onKeyEvent("up");
+    world.onKeyEvent("up");
+    t.checkExpect(world.top, 0);
+    world.moveView(5000, 5000);
+    t.checkExpect(world.top, 980);
+    t.checkExpect(world.left, 970);
+
+    world.onMouseClicked(new Posn(45, 25), "RightButton");
+    t.checkExpect(world.board.isFlaggedAt(981, 972), true);
+    t.checkExpect(world.getTileAt(new Posn(45, 25)), Cell.FLAG_TILE);
+    t.checkExpect(world.getTileAt(new Posn(65, 25)), Cell.HIDDEN_TILE);
+    world.onMouseClicked(new Posn(45, 25), "LeftButton");
+    t.checkExpect(world.board.isRevealedAt(981, 972), false);
+    t.checkExpect(world.moves, 2);
+    t.checkExpect(world.makeScene().width, 30 * Cell.BLOCK_SIZE);
+    t.checkExpect(world.status(), GameStatus.PLAYING);
+
+    ChunkedWorld small = new ChunkedWorld(new ChunkedBoard(3, 3, 0, 1), 20, 30);
+    t.checkExpect(small.viewRows, 3);
+    small.reveal(0, 0);
+    t.checkExpect(small.status(), GameStatus.WON);
+    t.checkExpect(small.drawTiles(0, 0, 1), Cell.tileImage(0));
+    small.onTick();
+    t.checkExpect(small.lastWorld.worldEnds, true);
+    t.checkException(new IllegalArgumentException("Tile is not on the board"), small, "flag",
+        3, 0);
+  }
+}
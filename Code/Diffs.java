@@ -0,0 +1,423 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import tester.*;
+
+//Writes what a remote client needs to draw a game as a stream of small messages, instead of
+//whole scenes. Each message is its length as a varint followed by its body. The first body is
+//START with the number of rows and columns. Every later one is a FRAME, holding the tiles whose
+//state may have changed as varlongs of (index - previous index) << 5 | code, in index order. A
+//code is the tile's number of neighboring mines, or 9 for a mine, if it is revealed, or 10 if
+//it is hidden, plus 16 if it is flagged. A FRAME ends with the game's status, and the first
+//FRAME after the game is over also lists every mine as varints of index - previous index. If
+//a move is undone after that, the stream starts again with a START and every tile, since the
+//client has been shown the mines. Without coalescing every move is sent as its own FRAME;
+//with it, a FRAME is only sent once a tick, so a tile changed many times in one tick is sent
+//once
+class DiffEncoder {
+  static final byte START = 0;
+  static final byte FRAME = 1;
+  static final int MINE = 9;
+  static final int HIDDEN = 10;
+  static final int FLAGGED = 16;
+
+  MineWorld world;
+  OutputStream out;
+  boolean coalesce;
+  int[] touched = new int[64];
+  int count = 0;
+  GameStatus sentStatus = null;
+  boolean minesSent = false;
+  ByteBuffer body = ByteBuffer.allocate(64);
+  long messages = 0;
+  long bytes = 0;
+
+  //Starts the stream of the given game with its size and every tile already revealed or
+  //flagged
+  DiffEncoder(MineWorld world, OutputStream out, boolean coalesce) {
+    this.world = world;
+    this.out = out;
+    this.coalesce = coalesce;
+    this.start();
+    this.flush();
+  }
+
+  //Sends a START and notes every tile already revealed or flagged, so that the next FRAME
+  //rebuilds the whole game
+  void start() {
+    this.body.put(START);
+    GameFile.putVarint(this.body, this.world.rowMax);
+    GameFile.putVarint(this.body, this.world.colMax);
+    this.send();
+    this.count = 0;
+    this.sentStatus = null;
+    this.minesSent = false;
+    Board board = this.world.board;
+    for (int i = 0; i < board.size(); i++) {
+      if (board.isRevealed(i) || board.isFlagged(i)) {
+        this.touched(i);
+      }
+    }
+  }
+
+  //Takes note that the state of the tile at idx may have changed
+  void touched(int idx) {
+    if (this.count == this.touched.length) {
+      this.touched = Arrays.copyOf(this.touched, this.count * 2);
+    }
+    this.touched[this.count] = idx;
+    this.count += 1;
+  }
+
+  //Takes note that the first n tiles of the given list may have changed
+  void touched(int[] tiles, int n) {
+    for (int i = 0; i < n; i++) {
+      this.touched(tiles[i]);
+    }
+  }
+
+  //Takes note that the tiles of the given move may have changed
+  void touched(Delta delta) {
+    if (delta.tiles != null) {
+      this.touched(delta.tiles, delta.tiles.length);
+    }
+    else {
+      for (int w = 0; w < delta.bits.length; w++) {
+        long word = delta.bits[w];
+        while (word != 0) {
+          this.touched((w << 6) + Long.numberOfTrailingZeros(word));
+          word &= word - 1;
+        }
+      }
+    }
+  }
+
+  //Ends a move, sending its FRAME unless frames are coalesced
+  void moved() {
+    if (!this.coalesce) {
+      this.flush();
+    }
+  }
+
+  //Sends a FRAME with every tile noted since the last one, unless there are none and the
+  //status is the same as last sent. A game played again after its mines were sent starts over
+  void flush() {
+    GameStatus status = this.world.status();
+    if (this.minesSent && status == GameStatus.PLAYING) {
+      this.start();
+    }
+    if (this.count == 0 && status == this.sentStatus) {
+      return;
+    }
+    Arrays.sort(this.touched, 0, this.count);
+    int distinct = 0;
+    for (int i = 0; i < this.count; i++) {
+      if (i == 0 || this.touched[i] != this.touched[i - 1]) {
+        this.touched[distinct] = this.touched[i];
+        distinct += 1;
+      }
+    }
+    boolean sendMines = status != GameStatus.PLAYING && !this.minesSent;
+    Board board = this.world.board;
+    int room = 7 + 6 * distinct + (sendMines ? 5 + 5 * board.mineCount : 0);
+    if (this.body.capacity() < room) {
+      this.body = ByteBuffer.allocate(Math.max(room, this.body.capacity() * 2));
+    }
+
+    this.body.put(FRAME);
+    GameFile.putVarint(this.body, distinct);
+    int last = 0;
+    for (int i = 0; i < distinct; i++) {
+      int idx = this.touched[i];
+      GameFile.putVarlong(this.body,
+          ((long) (idx - last) << 5) | DiffEncoder.codeOf(board, idx));
+      last = idx;
+    }
+    this.body.put((byte) status.ordinal());
+    if (sendMines) {
+      GameFile.putVarint(this.body, board.mineCount);
+      last = 0;
+      for (int i = 0; i < board.size(); i++) {
+        if (board.isMine(i)) {
+          GameFile.putVarint(this.body, i - last);
+          last = i;
+        }
+      }
+      this.minesSent = true;
+    }
+    this.count = 0;
+    this.sentStatus = status;
+    this.send();
+  }
+
+  //Returns the code of the tile at idx of the given Board
+  static int codeOf(Board board, int idx) {
+    int code = HIDDEN;
+    if (board.isRevealed(idx)) {
+      code = board.isMine(idx) ? MINE : board.neighborMines[idx];
+    }
+    return code | (board.isFlagged(idx) ? FLAGGED : 0);
+  }
+
+  //Writes the body gathered so far as one message, and empties it
+  void send() {
+    this.body.flip();
+    ByteBuffer length = ByteBuffer.allocate(5);
+    GameFile.putVarint(length, this.body.remaining());
+    try {
+      this.out.write(length.array(), 0, length.position());
+      this.out.write(this.body.array(), 0, this.body.remaining());
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    this.messages += 1;
+    this.bytes += length.position() + this.body.remaining();
+    this.body.clear();
+  }
+}
+
+//Represents the game a remote client has rebuilt from a DiffEncoder's stream: which tiles are
+//revealed or flagged, the numbers on those revealed, and, once the game is over, every mine,
+//revealed if it was lost as the game's last scene shows them
+class ClientBoard {
+  int rowMax;
+  int colMax;
+  byte[] state;
+  byte[] neighborMines;
+  GameStatus status = GameStatus.PLAYING;
+  long messages = 0;
+
+  //Reads every message in the given stream, returning how many there were
+  int readAll(ByteBuffer stream) {
+    int read = 0;
+    while (stream.hasRemaining()) {
+      int length = GameFile.getVarint(stream);
+      ByteBuffer message = stream.slice();
+      message.limit(length);
+      stream.position(stream.position() + length);
+      this.read(message);
+      read += 1;
+    }
+    return read;
+  }
+
+  //Applies one message body
+  void read(ByteBuffer message) {
+    byte kind = message.get();
+    if (kind == DiffEncoder.START) {
+      this.rowMax = GameFile.getVarint(message);
+      this.colMax = GameFile.getVarint(message);
+      this.state = new byte[this.rowMax * this.colMax];
+      this.neighborMines = new byte[this.rowMax * this.colMax];
+      this.status = GameStatus.PLAYING;
+    }
+    else if (kind == DiffEncoder.FRAME) {
+      if (this.state == null) {
+        throw new IllegalArgumentException("Frame before the start of the stream");
+      }
+      int tiles = GameFile.getVarint(message);
+      int idx = 0;
+      for (int i = 0; i < tiles; i++) {
+        long entry = GameFile.getVarlong(message);
+        idx += (int) (entry >>> 5);
+        this.set(idx, (int) (entry & 31));
+      }
+      this.status = GameStatus.values()[message.get()];
+      if (message.hasRemaining()) {
+        int mines = GameFile.getVarint(message);
+        byte shown = this.status == GameStatus.LOST ? Board.MINE | Board.REVEALED : Board.MINE;
+        idx = 0;
+        for (int i = 0; i < mines; i++) {
+          idx += GameFile.getVarint(message);
+          this.state[idx] |= shown;
+        }
+      }
+    }
+    else {
+      throw new IllegalArgumentException("Unknown diff message " + kind);
+    }
+    this.messages += 1;
+  }
+
+  //Sets the tile at idx from its code
+  void set(int idx, int code) {
+    byte bits = (byte) (this.state[idx] & Board.MINE);
+    if ((code & DiffEncoder.FLAGGED) != 0) {
+      bits |= Board.FLAGGED;
+    }
+    int shown = code & ~DiffEncoder.FLAGGED;
+    if (shown == DiffEncoder.MINE) {
+      bits |= Board.REVEALED | Board.MINE;
+    }
+    else if (shown != DiffEncoder.HIDDEN) {
+      bits |= Board.REVEALED;
+      this.neighborMines[idx] = (byte) shown;
+    }
+    this.state[idx] = bits;
+  }
+
+  //Returns whether this client shows the same game as the given Board: the same tiles
+  //revealed and flagged, the same numbers on revealed tiles that are not mines, and every mine
+  //once it is over
+  boolean matches(Board board) {
+    for (int i = 0; i < board.size(); i++) {
+      byte shown = (byte) (board.state[i] & (Board.REVEALED | Board.FLAGGED));
+      if (board.isRevealed(i) || this.status != GameStatus.PLAYING) {
+        shown |= board.state[i] & Board.MINE;
+      }
+      boolean numbered = board.isRevealed(i) && !board.isMine(i);
+      if (this.state[i] != shown
+          || (numbered && this.neighborMines[i] != board.neighborMines[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
+
+class ExamplesDiffs {
+
+  //Makes a 6x6 game with a wall of mines down its third column
+  MineWorld world() {
+    MineWorld world = new MineWorld(6, 6, new Random(1));
+    for (int row = 0; row < 6; row++) {
+      world.board.makeMine(row * 6 + 2);
+    }
+    return world;
+  }
+
+  void testMessages(Tester t) {
+    MineWorld world = this.world();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    world.startDiffs(out, false);
+    t.checkExpect(out.toByteArray(), new byte[] {3, 0, 6, 6, 3, 1, 0, 0});
+    world.reveal(0, 3);
+    world.flag(0, 4);
+    world.flag(0, 4);
+    t.checkExpect(world.diffs.messages, 5L);
+    ClientBoard client = new ClientBoard();
+    t.checkExpect(client.readAll(ByteBuffer.wrap(out.toByteArray())), 5);
+    t.checkExpect(client.rowMax, 6);
+    t.checkExpect(client.matches(world.board), true);
+    t.checkExpect(client.neighborMines[3], (byte) 2);
+
+    out.reset();
+    world.reveal(3, 5);
+    byte[] frame = out.toByteArray();
+    t.checkExpect(frame[2], (byte) 17);
+    t.checkExpect(frame.length, 27);
+    client.readAll(ByteBuffer.wrap(frame));
+    t.checkExpect(client.matches(world.board), true);
+
+    out.reset();
+    world.reveal(0, 2);
+    client.readAll(ByteBuffer.wrap(out.toByteArray()));
+    t.checkExpect(client.status, GameStatus.LOST);
+    t.checkExpect(client.state[32], (byte) (Board.MINE | Board.REVEALED));
+    t.checkExpect(client.state[2], (byte) (Board.MINE | Board.REVEALED));
+    int mark = out.size();
+    t.checkExpect(world.undo(), true);
+    t.checkExpect(out.toByteArray()[mark + 1], DiffEncoder.START);
+    client.readAll(ByteBuffer.wrap(out.toByteArray(), mark, out.size() - mark));
+    t.checkExpect(client.status, GameStatus.PLAYING);
+    t.checkExpect(client.state[2], (byte) 0);
+    t.checkExpect(client.matches(world.board), true);
+    mark = out.size();
+    world.reveal(5, 0);
+    client.readAll(ByteBuffer.wrap(out.toByteArray(), mark, out.size() - mark));
+    t.checkExpect(client.matches(world.board), true);
+  }
+
+  void testFarTiles(Tester t) {
+    ClientBoard client = new ClientBoard();
+    client.state = new byte[4];
+    client.neighborMines = new byte[4];
+    ByteBuffer frame = ByteBuffer.allocate(16);
+    frame.put(DiffEncoder.FRAME);
+    GameFile.putVarint(frame, 1);
+    GameFile.putVarlong(frame, (3L << 5) | 2);
+    frame.put((byte) GameStatus.PLAYING.ordinal());
+    frame.flip();
+    client.read(frame);
+    t.checkExpect(client.state[3], Board.REVEALED);
+    t.checkExpect(client.neighborMines[3], (byte) 2);
+
+    ByteBuffer entry = ByteBuffer.allocate(8);
+    GameFile.putVarlong(entry, ((long) (1 << 28) << 5) | DiffEncoder.HIDDEN);
+    entry.flip();
+    long read = GameFile.getVarlong(entry);
+    t.checkExpect((int) (read >>> 5), 1 << 28);
+    t.checkExpect((int) (read & 31), DiffEncoder.HIDDEN);
+  }
+
+  void testCoalesce(Tester t) {
+    MineWorld world = this.world();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    world.startDiffs(out, true);
+    world.flag(5, 5);
+    world.flag(5, 5);
+    world.reveal(2, 0);
+    world.undo();
+    world.redo();
+    t.checkExpect(world.diffs.messages, 2L);
+    world.onTick();
+    world.onTick();
+    t.checkExpect(world.diffs.messages, 3L);
+    ClientBoard client = new ClientBoard();
+    t.checkExpect(client.readAll(ByteBuffer.wrap(out.toByteArray())), 3);
+    t.checkExpect(client.matches(world.board), true);
+    t.checkExpect(ByteBuffer.wrap(out.toByteArray()).get(10), (byte) 13);
+  }
+
+  void testRandomPlay(Tester t) {
+    for (int game = 0; game < 20; game++) {
+      long seed = BatchRunner.gameSeed(3, game);
+      MineWorld world = new MineWorld(16, 30, 60, seed);
+      Random rand = new Random(seed);
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      ClientBoard client = new ClientBoard();
+      boolean coalesce = game % 2 == 0;
+      world.reveal(rand.nextInt(16), rand.nextInt(30));
+      world.startDiffs(out, coalesce);
+      while (world.status() == GameStatus.PLAYING) {
+        int move = rand.nextInt(20);
+        if (move == 0) {
+          world.undo();
+        }
+        else if (move == 1) {
+          world.redo();
+        }
+        else if (move < 5) {
+          world.flag(rand.nextInt(16), rand.nextInt(30));
+        }
+        else if (move < 7) {
+          world.apply(new MoveBatch().reveal(rand.nextInt(16), rand.nextInt(30))
+              .flag(rand.nextInt(16), rand.nextInt(30)));
+        }
+        else {
+          new RandomStrategy().move(world, rand);
+        }
+        if (move % 3 == 0) {
+          world.onTick();
+        }
+      }
+      world.onTick();
+      client.readAll(ByteBuffer.wrap(out.toByteArray()));
+      t.checkExpect(client.matches(world.board), true);
+      t.checkExpect(client.status, world.status());
+    }
+  }
+
+  void testBadStreams(Tester t) {
+    t.checkException(new IllegalArgumentException("Frame before the start of the stream"),
+        new ClientBoard(), "read", ByteBuffer.wrap(new byte[] {1, 0, 0}));
+    t.checkException(new IllegalArgumentException("Unknown diff message 7"),
+        new ClientBoard(), "read", ByteBuffer.wrap(new byte[] {7}));
+  }
+}
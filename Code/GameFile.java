@@ -0,0 +1,480 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import tester.*;
+
+//Saves games of Minesweeper to files and loads them back. A file starts with a header holding
+//the format's version, the board's size, the game's seed and move count, and the number of
+//mines its generator places, if it has one, with its attempts and repairs. Then comes one plane of bits for each of mines,
+//revealed tiles and flagged tiles, in tile order. Each plane is stored either as packed 64-bit
+//words or, when that is shorter, as the lengths of its alternating runs of clear and set bits
+//written as varints. Files of version 1 have no attempts or repairs, and load with the defaults
+class GameFile {
+  static final int MAGIC = 0x4D494E45;
+  static final byte VERSION = 2;
+  static final int HEADER_SIZE = 4 + 1 + 4 + 4 + 8 + 4 + 4 + 4 + 4 + 1;
+  static final int V1_HEADER_SIZE = HEADER_SIZE - 8;
+  static final byte PACKED = 0;
+  static final byte RUNS = 1;
+  static final byte[] PLANES = {Board.MINE, Board.REVEALED, Board.FLAGGED};
+
+  //Writes the given game to the given file, replacing anything already there
+  static void save(MineWorld world, Path file) {
+    ByteBuffer buffer = encode(world);
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  //Reads back a game written by save
+  static MineWorld load(Path file) {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IllegalArgumentException("Not a saved game");
+      }
+      ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+      while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+        continue;
+      }
+      buffer.flip();
+      return decode(buffer);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  //Returns a buffer, ready to be read, holding the given game in this format
+  static ByteBuffer encode(MineWorld world) {
+    Board board = world.board;
+    int packedSize = 8 * ((board.size() + 63) / 64);
+    int[] sizes = new int[PLANES.length];
+    int total = HEADER_SIZE;
+    for (int p = 0; p < PLANES.length; p++) {
+      sizes[p] = runsSize(board.state, PLANES[p]);
+      total += 1 + Math.min(sizes[p], packedSize);
+    }
+
+    ByteBuffer buffer = ByteBuffer.allocate(total);
+    buffer.putInt(MAGIC);
+    buffer.put(VERSION);
+    buffer.putInt(world.rowMax);
+    buffer.putInt(world.colMax);
+    buffer.putLong(world.seed);
+    buffer.putInt(world.moves);
+    buffer.putInt(world.generator == null ? -1 : world.generator.numMines);
+    buffer.putInt(world.generator == null ? 0 : world.generator.attempts);
+    buffer.putInt(world.generator == null ? 0 : world.generator.repairs);
+    buffer.put((byte) (world.waiting ? 1 : 0));
+    for (int p = 0; p < PLANES.length; p++) {
+      if (sizes[p] < packedSize) {
+        buffer.put(RUNS);
+        putRuns(buffer, board.state, PLANES[p]);
+      }
+      else {
+        buffer.put(PACKED);
+        putPacked(buffer, board.state, PLANES[p]);
+      }
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  //Reads a game in this format from the given buffer. A buffer cut short or holding anything
+  //else is not a saved game
+  static MineWorld decode(ByteBuffer buffer) {
+    if (buffer.remaining() < V1_HEADER_SIZE || buffer.getInt() != MAGIC) {
+      throw new IllegalArgumentException("Not a saved game");
+    }
+    byte version = buffer.get();
+    if (version != VERSION && version != 1) {
+      throw new IllegalArgumentException("Unsupported save version " + version);
+    }
+    try {
+      return GameFile.decodeBody(buffer, version);
+    }
+    catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+      throw new IllegalArgumentException("Not a saved game");
+    }
+  }
+
+  //Reads the rest of a game of the given version from the given buffer, just past its version
+  static MineWorld decodeBody(ByteBuffer buffer, byte version) {
+    int rowMax = buffer.getInt();
+    int colMax = buffer.getInt();
+    if (rowMax < 1 || colMax < 1 || (long) rowMax * colMax > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Not a saved game");
+    }
+    long seed = buffer.getLong();
+    MineWorld world = new MineWorld(rowMax, colMax, new Random(seed));
+    world.seed = seed;
+    world.moves = buffer.getInt();
+    int generatorMines = buffer.getInt();
+    if (generatorMines >= 0) {
+      world.generator = new NoGuessGenerator(rowMax, colMax, generatorMines);
+    }
+    if (version != 1) {
+      int attempts = buffer.getInt();
+      int repairs = buffer.getInt();
+      if (world.generator != null) {
+        world.generator.attempts = attempts;
+        world.generator.repairs = repairs;
+      }
+    }
+    world.waiting = buffer.get() != 0;
+
+    Board board = world.board;
+    for (int p = 0; p < PLANES.length; p++) {
+      byte encoding = buffer.get();
+      if (encoding == RUNS) {
+        getRuns(buffer, board.state, PLANES[p]);
+      }
+      else if (encoding == PACKED) {
+        getPacked(buffer, board.state, PLANES[p]);
+      }
+      else {
+        throw new IllegalArgumentException("Not a saved game");
+      }
+    }
+    board.recount();
+    return world;
+  }
+
+  //Returns the number of bytes putRuns would write for the given bit of the given tiles
+  static int runsSize(byte[] state, byte bit) {
+    int size = 0;
+    int start = 0;
+    byte want = 0;
+    for (int i = 0; i <= state.length; i++) {
+      if (i == state.length || (state[i] & bit) != want) {
+        size += varintSize(i - start);
+        start = i;
+        want ^= bit;
+      }
+    }
+    return size;
+  }
+
+  //Writes the lengths of the alternating runs of clear and set tiles for the given bit,
+  //starting with a clear run that may be empty
+  static void putRuns(ByteBuffer buffer, byte[] state, byte bit) {
+    int start = 0;
+    byte want = 0;
+    for (int i = 0; i <= state.length; i++) {
+      if (i == state.length || (state[i] & bit) != want) {
+        putVarint(buffer, i - start);
+        start = i;
+        want ^= bit;
+      }
+    }
+  }
+
+  //Sets the given bit on the tiles covered by the set runs written by putRuns
+  static void getRuns(ByteBuffer buffer, byte[] state, byte bit) {
+    int i = 0;
+    boolean set = false;
+    while (i < state.length) {
+      int end = i + getVarint(buffer);
+      if (end > state.length || end < i) {
+        throw new IllegalArgumentException("Not a saved game");
+      }
+      if (set) {
+        for (; i < end; i++) {
+          state[i] |= bit;
+        }
+      }
+      i = end;
+      set = !set;
+    }
+  }
+
+  //Writes the given bit of every tile packed 64 to a word, lowest bit first
+  static void putPacked(ByteBuffer buffer, byte[] state, byte bit) {
+    for (int start = 0; start < state.length; start += 64) {
+      int end = Math.min(state.length, start + 64);
+      long word = 0;
+      for (int i = start; i < end; i++) {
+        if ((state[i] & bit) != 0) {
+          word |= 1L << (i - start);
+        }
+      }
+      buffer.putLong(word);
+    }
+  }
+
+  //Sets the given bit on the tiles whose bits are set in the words written by putPacked
+  static void getPacked(ByteBuffer buffer, byte[] state, byte bit) {
+    for (int start = 0; start < state.length; start += 64) {
+      long word = buffer.getLong();
+      while (word != 0) {
+        state[start + Long.numberOfTrailingZeros(word)] |= bit;
+        word &= word - 1;
+      }
+    }
+  }
+
+  //Returns the number of bytes putVarint would write for the given value
+  static int varintSize(int value) {
+    int size = 1;
+    while ((value >>>= 7) != 0) {
+      size += 1;
+    }
+    return size;
+  }
+
+  //Writes the given non-negative value seven bits at a time, lowest first, setting the top bit
+  //of every byte but the last
+  static void putVarint(ByteBuffer buffer, int value) {
+    while ((value & ~0x7F) != 0) {
+      buffer.put((byte) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    buffer.put((byte) value);
+  }
+
+  //Reads a value written by putVarint
+  static int getVarint(ByteBuffer buffer) {
+    int value = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      byte b = buffer.get();
+      value |= (b & 0x7F) << shift;
+      if (b >= 0) {
+        return value;
+      }
+    }
+    throw new IllegalArgumentException("Not a saved game");
+  }
+
+  //Writes the given non-negative value as putVarint does, for values too large for an int
+  static void putVarlong(ByteBuffer buffer, long value) {
+    while ((value & ~0x7FL) != 0) {
+      buffer.put((byte) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    buffer.put((byte) value);
+  }
+
+  //Reads a value written by putVarlong
+  static long getVarlong(ByteBuffer buffer) {
+    long value = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      byte b = buffer.get();
+      value |= (long) (b & 0x7F) << shift;
+      if (b >= 0) {
+        return value;
+      }
+    }
+    throw new IllegalArgumentException("Not a saved game");
+  }
+}
+
+class ExamplesGameFile {
+  Path file;
+
+  void reset() {
+    try {
+      this.file = Files.createTempFile("game", ".mines");
+      this.file.toFile().deleteOnExit();
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  //Checks that the given games have the same size, seed, moves and tiles
+  void checkSame(Tester t, MineWorld loaded, MineWorld world) {
+    t.checkExpect(loaded.rowMax, world.rowMax);
+    t.checkExpect(loaded.colMax, world.colMax);
+    t.checkExpect(loaded.seed, world.seed);
+    t.checkExpect(loaded.moves, world.moves);
+    t.checkExpect(loaded.waiting, world.waiting);
+    t.checkExpect(loaded.board.state, world.board.state);
+    t.checkExpect(loaded.board.neighborMines, world.board.neighborMines);
+    t.checkExpect(loaded.board.mineCount, world.board.mineCount);
+    t.checkExpect(loaded.board.safeHidden, world.board.safeHidden);
+    t.checkExpect(loaded.board.minesRevealed, world.board.minesRevealed);
+    t.checkExpect(loaded.status(), world.status());
+  }
+
+  void testVarints(Tester t) {
+    ByteBuffer buffer = ByteBuffer.allocate(16);
+    GameFile.putVarint(buffer, 0);
+    GameFile.putVarint(buffer, 127);
+    GameFile.putVarint(buffer, 128);
+    GameFile.putVarint(buffer, Integer.MAX_VALUE);
+    t.checkExpect(buffer.position(), 1 + 1 + 2 + 5);
+    t.checkExpect(GameFile.varintSize(128), 2);
+    t.checkExpect(GameFile.varintSize(Integer.MAX_VALUE), 5);
+    buffer.flip();
+    t.checkExpect(GameFile.getVarint(buffer), 0);
+    t.checkExpect(GameFile.getVarint(buffer), 127);
+    t.checkExpect(GameFile.getVarint(buffer), 128);
+    t.checkExpect(GameFile.getVarint(buffer), Integer.MAX_VALUE);
+
+    buffer.clear();
+    GameFile.putVarlong(buffer, 128);
+    GameFile.putVarlong(buffer, ((long) Integer.MAX_VALUE << 5) | 31);
+    t.checkExpect(buffer.position(), 2 + 6);
+    buffer.flip();
+    t.checkExpect(GameFile.getVarint(buffer), 128);
+    t.checkExpect(GameFile.getVarlong(buffer), ((long) Integer.MAX_VALUE << 5) | 31);
+  }
+
+  void testPlanes(Tester t) {
+    byte[] state = new byte[70];
+    state[0] = Board.MINE;
+    state[3] = Board.MINE | Board.FLAGGED;
+    state[4] = Board.MINE;
+    state[69] = Board.REVEALED;
+    t.checkExpect(GameFile.runsSize(state, Board.MINE), 5);
+    t.checkExpect(GameFile.runsSize(state, Board.REVEALED), 2);
+    t.checkExpect(GameFile.runsSize(new byte[200], Board.FLAGGED), 2);
+
+    ByteBuffer buffer = ByteBuffer.allocate(32);
+    GameFile.putRuns(buffer, state, Board.MINE);
+    GameFile.putPacked(buffer, state, Board.FLAGGED);
+    t.checkExpect(buffer.position(), 5 + 16);
+    buffer.flip();
+    byte[] back = new byte[70];
+    GameFile.getRuns(buffer, back, Board.MINE);
+    GameFile.getPacked(buffer, back, Board.FLAGGED);
+    t.checkExpect(back[0], Board.MINE);
+    t.checkExpect(back[3], (byte) (Board.MINE | Board.FLAGGED));
+    t.checkExpect(back[4], Board.MINE);
+    t.checkExpect(back[69], (byte) 0);
+  }
+
+  void testRoundTrip(Tester t) {
+    reset();
+    MineWorld world = new MineWorld(16, 30, 99, new Random(8));
+    world.seed = 8;
+    for (int i = 0; i < 480; i += 37) {
+      if (!world.board.isMine(i)) {
+        world.reveal(i / 30, i % 30);
+      }
+    }
+    world.flag(15, 29);
+    world.flag(0, 0);
+    GameFile.save(world, this.file);
+    this.checkSame(t, GameFile.load(this.file), world);
+    t.checkExpect(GameFile.load(this.file).generator, null);
+
+    world.board.makeMine(world.board.size() - 1);
+    world.board.set(world.board.size() - 1, Board.REVEALED);
+    GameFile.save(world, this.file);
+    this.checkSame(t, GameFile.load(this.file), world);
+    t.checkExpect(GameFile.load(this.file).status(), GameStatus.LOST);
+  }
+
+  void testRoundTripWaiting(Tester t) {
+    reset();
+    MineWorld world = new MineWorld(new NoGuessGenerator(16, 30, 99), 21);
+    GameFile.save(world, this.file);
+    MineWorld loaded = GameFile.load(this.file);
+    this.checkSame(t, loaded, world);
+    t.checkExpect(loaded.generator.numMines, 99);
+    world.reveal(7, 7);
+    loaded.reveal(7, 7);
+    this.checkSame(t, loaded, world);
+
+    NoGuessGenerator tuned = new NoGuessGenerator(16, 30, 99);
+    tuned.attempts = 0;
+    tuned.repairs = 3;
+    world = new MineWorld(tuned, 21);
+    GameFile.save(world, this.file);
+    loaded = GameFile.load(this.file);
+    t.checkExpect(loaded.generator.attempts, 0);
+    t.checkExpect(loaded.generator.repairs, 3);
+    world.reveal(7, 7);
+    loaded.reveal(7, 7);
+    this.checkSame(t, loaded, world);
+  }
+
+  void testVersion1(Tester t) {
+    MineWorld world = new MineWorld(new NoGuessGenerator(9, 9, 10), 4);
+    ByteBuffer current = GameFile.encode(world);
+    ByteBuffer old = ByteBuffer.allocate(current.remaining() - 8);
+    old.put(current.array(), 0, GameFile.V1_HEADER_SIZE - 1);
+    old.put(4, (byte) 1);
+    old.put(current.array(), GameFile.HEADER_SIZE - 1,
+        current.remaining() - GameFile.HEADER_SIZE + 1);
+    old.flip();
+    MineWorld loaded = GameFile.decode(old);
+    this.checkSame(t, loaded, world);
+    t.checkExpect(loaded.waiting, true);
+    t.checkExpect(loaded.generator.attempts, 1000);
+  }
+
+  void testLargeGame(Tester t) {
+    reset();
+    MineWorld world = new MineWorld(2000, 2000, 600000, new Random(4));
+    for (int i = 0; i < world.board.size(); i += 9973) {
+      world.board.toggleFlag(i);
+    }
+    for (int i = 0; i < world.board.size() && world.board.safeHidden > 3000000; i += 101) {
+      if (!world.board.isMine(i)) {
+        world.board.floodFill(i);
+      }
+    }
+    GameFile.save(world, this.file);
+    long size = 0;
+    try {
+      size = Files.size(this.file);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    t.checkExpect(size < world.board.size() / 5, true);
+    this.checkSame(t, GameFile.load(this.file), world);
+  }
+
+  void testBadFiles(Tester t) {
+    t.checkException(new IllegalArgumentException("Not a saved game"),
+        new GameFile(), "decode", ByteBuffer.allocate(GameFile.HEADER_SIZE));
+    ByteBuffer buffer = GameFile.encode(new MineWorld(2, 2, new Random(1)));
+    buffer.put(4, (byte) 9);
+    t.checkException(new IllegalArgumentException("Unsupported save version 9"),
+        new GameFile(), "decode", buffer);
+  }
+
+  void testCorruptBodies(Tester t) {
+    MineWorld world = new MineWorld(16, 30, 99, new Random(3));
+    world.reveal(5, 5);
+    world.flag(0, 0);
+    byte[] bytes = GameFile.encode(world).array();
+    t.checkException(new IllegalArgumentException("Not a saved game"),
+        new GameFile(), "decode", ByteBuffer.wrap(bytes, 0, GameFile.HEADER_SIZE + 3));
+    int rejected = 0;
+    for (int length = 0; length < bytes.length; length++) {
+      try {
+        GameFile.decode(ByteBuffer.wrap(bytes, 0, length));
+      }
+      catch (IllegalArgumentException e) {
+        rejected += e.getMessage().equals("Not a saved game") ? 1 : 0;
+      }
+    }
+    t.checkExpect(rejected, bytes.length);
+
+    ByteBuffer wrongSize = ByteBuffer.wrap(bytes.clone());
+    wrongSize.putInt(5, -16);
+    t.checkException(new IllegalArgumentException("Not a saved game"),
+        new GameFile(), "decode", wrongSize);
+    ByteBuffer wrongPlane = ByteBuffer.wrap(bytes.clone());
+    wrongPlane.put(GameFile.HEADER_SIZE, (byte) 7);
+    t.checkException(new IllegalArgumentException("Not a saved game"),
+        new GameFile(), "decode", wrongPlane);
+  }
+}
@@ -0,0 +1,396 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import tester.*;
+
+//Makes Minesweeper boards that can be cleared without guessing. Mines are placed only once the
+//first tile is known, keeping it and its neighbors free, and each attempt is played out by the
+//Solver from that tile. When the Solver gets stuck, a mine it could not work out is moved away
+//from the revealed area and the board is played again, a limited number of times before the
+//attempt is given up
+class NoGuessGenerator {
+  int rowMax;
+  int colMax;
+  int numMines;
+  int attempts = 1000;
+  int repairs = 20;
+  int threads = 1;
+  GeneratorWorker worker;
+
+  NoGuessGenerator(int rowMax, int colMax, int numMines) {
+    this.rowMax = rowMax;
+    this.colMax = colMax;
+    this.numMines = numMines;
+  }
+
+  //Returns the tiles of mines that can all be worked out by the Solver starting from the tile
+  //at first, or null if none were found within the attempt budget. Attempt i is made from
+  //BatchRunner.gameSeed(seed, i), and the first attempt in that order to succeed gives the
+  //result, however many threads race through them
+  int[] generate(long seed, int first) {
+    if (first < 0 || first >= this.rowMax * this.colMax) {
+      throw new IllegalArgumentException("Tile is not on the board");
+    }
+    if (this.threads > 1 && this.attempts > 1) {
+      return this.generateParallel(seed, first);
+    }
+
+    if (this.worker == null) {
+      this.worker = new GeneratorWorker(this);
+    }
+    for (int i = 0; i < this.attempts; i++) {
+      if (this.worker.attempt(BatchRunner.gameSeed(seed, i), first)) {
+        return this.worker.mines();
+      }
+    }
+    return null;
+  }
+
+  //Races the attempts across this generator's threads, each with its own worker. A thread
+  //stops once an attempt earlier than any it has left has succeeded
+  int[] generateParallel(long seed, int first) {
+    int shards = Math.min(this.threads, this.attempts);
+    GeneratorRace race = new GeneratorRace(this.attempts);
+    ExecutorService pool = Executors.newFixedThreadPool(shards);
+    try {
+      ArrayList<Future<Integer>> done = new ArrayList<Future<Integer>>();
+      for (int i = 0; i < shards; i++) {
+        done.add(pool.submit(new GeneratorShard(this, race, seed, first, i, shards)));
+      }
+      for (Future<Integer> shard : done) {
+        shard.get();
+      }
+      return race.mines;
+    }
+    catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new RuntimeException(e.getCause());
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    }
+    finally {
+      pool.shutdownNow();
+    }
+  }
+
+  //Returns the tiles of randomly placed mines that keep the tile at first and its neighbors
+  //free, without checking that they can be worked out
+  int[] randomMines(Random rand, int first) {
+    if (this.worker == null) {
+      this.worker = new GeneratorWorker(this);
+    }
+    this.worker.place(rand, first);
+    return this.worker.mines();
+  }
+}
+
+//Represents the buffers one thread of a NoGuessGenerator reuses from attempt to attempt
+class GeneratorWorker {
+  NoGuessGenerator generator;
+  Board board;
+  Solver solver;
+  Random rand = new Random(0);
+  int[] free;
+  int[] around = new int[8];
+
+  GeneratorWorker(NoGuessGenerator generator) {
+    this.generator = generator;
+    this.board = new Board(generator.rowMax, generator.colMax);
+    this.solver = new Solver(this.board);
+    this.free = new int[this.board.size()];
+  }
+
+  //Places mines from the given seed and plays them out from the tile at first, repairing
+  //them when the Solver gets stuck, returning whether the board can be cleared. The mines
+  //are left on this worker's board
+  boolean attempt(long seed, int first) {
+    this.rand.setSeed(seed);
+    this.place(this.rand, first);
+    for (int repair = 0; repair <= this.generator.repairs; repair++) {
+      if (this.solve(first)) {
+        return true;
+      }
+      if (repair == this.generator.repairs || !this.repair(first)) {
+        return false;
+      }
+    }
+    return false;
+  }
+
+  //Clears the board and places the generator's mines at random, away from the tile at first
+  //and its neighbors
+  void place(Random rand, int first) {
+    this.board.clearAll();
+    int size = this.board.size();
+    int count = 0;
+    for (int i = 0; i < size; i++) {
+      if (!this.nearFirst(i, first)) {
+        this.free[count] = i;
+        count += 1;
+      }
+    }
+    if (this.generator.numMines > count) {
+      throw new IllegalArgumentException("Too many mines to keep the first click safe");
+    }
+
+    for (int i = 0; i < this.generator.numMines; i++) {
+      int pick = i + rand.nextInt(count - i);
+      int mine = this.free[pick];
+      this.free[pick] = this.free[i];
+      this.free[i] = mine;
+      this.board.makeMine(mine);
+    }
+  }
+
+  //Plays the board from the tile at first using only moves the Solver is certain of, stopping
+  //as soon as it is stuck, and returns whether every safe tile was revealed
+  boolean solve(int first) {
+    this.board.hideAll();
+    this.solver.reset();
+    this.solver.reveal(first);
+    while (!this.board.isWon()) {
+      int next = this.solver.suggest();
+      if (next < 0 || this.board.isMine(next)) {
+        return false;
+      }
+      this.solver.reveal(next);
+    }
+    return true;
+  }
+
+  //Moves a mine the stuck Solver could not work out to a random hidden tile that touches no
+  //revealed tile, returning false if there is no such mine or no such tile
+  boolean repair(int first) {
+    Frontier parts = this.solver.frontier();
+    int mines = 0;
+    for (int i = 0; i < parts.tileCount; i++) {
+      if (this.board.isMine(parts.tiles[i])) {
+        parts.tiles[mines] = parts.tiles[i];
+        mines += 1;
+      }
+    }
+
+    int count = 0;
+    for (int i = 0; i < this.board.size(); i++) {
+      if (!this.board.isMine(i) && !this.board.isRevealed(i) && !this.nearFirst(i, first)
+          && !this.touchesRevealed(i)) {
+        this.free[count] = i;
+        count += 1;
+      }
+    }
+    if (mines == 0 || count == 0) {
+      return false;
+    }
+    this.board.removeMine(parts.tiles[this.rand.nextInt(mines)]);
+    this.board.makeMine(this.free[this.rand.nextInt(count)]);
+    return true;
+  }
+
+  //Returns whether the tile at idx is the tile at first or one of its neighbors
+  boolean nearFirst(int idx, int first) {
+    int dRow = (idx / this.board.colMax) - (first / this.board.colMax);
+    int dCol = (idx % this.board.colMax) - (first % this.board.colMax);
+    return Math.abs(dRow) <= 1 && Math.abs(dCol) <= 1;
+  }
+
+  //Returns whether any neighbor of the tile at idx is revealed
+  boolean touchesRevealed(int idx) {
+    int count = this.board.neighbors(idx, this.around);
+    for (int i = 0; i < count; i++) {
+      if (this.board.isRevealed(this.around[i])) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  //Returns the tiles of the mines on this worker's board in increasing order
+  int[] mines() {
+    int[] result = new int[this.board.mineCount];
+    int count = 0;
+    for (int i = 0; i < this.board.size(); i++) {
+      if (this.board.isMine(i)) {
+        result[count] = i;
+        count += 1;
+      }
+    }
+    return result;
+  }
+}
+
+//Represents the earliest successful attempt found so far by threads racing through the
+//attempts of a NoGuessGenerator
+class GeneratorRace {
+  int best;
+  int[] mines;
+
+  GeneratorRace(int attempts) {
+    this.best = attempts;
+  }
+
+  //Returns the number of the earliest attempt known to succeed, or the number of attempts if
+  //none has yet
+  synchronized int best() {
+    return this.best;
+  }
+
+  //Records that the given attempt succeeded with the given mines, if it is the earliest so far
+  synchronized void offer(int attempt, int[] mines) {
+    if (attempt < this.best) {
+      this.best = attempt;
+      this.mines = mines;
+    }
+  }
+}
+
+//Represents one thread's share of the attempts of a NoGuessGenerator
+class GeneratorShard implements Callable<Integer> {
+  GeneratorWorker worker;
+  GeneratorRace race;
+  long seed;
+  int first;
+  int start;
+  int step;
+
+  GeneratorShard(NoGuessGenerator generator, GeneratorRace race, long seed, int first, int start,
+      int step) {
+    this.worker = new GeneratorWorker(generator);
+    this.race = race;
+    this.seed = seed;
+    this.first = first;
+    this.start = start;
+    this.step = step;
+  }
+
+  //Makes every step-th attempt from start until one succeeds or an earlier one has, returning
+  //how many attempts were made
+  public Integer call() {
+    int made = 0;
+    for (int i = this.start; i < this.race.best(); i += this.step) {
+      made += 1;
+      if (this.worker.attempt(BatchRunner.gameSeed(this.seed, i), this.first)) {
+        this.race.offer(i, this.worker.mines());
+        break;
+      }
+    }
+    return made;
+  }
+}
+
+class ExamplesGenerator {
+  NoGuessGenerator expert;
+
+  void reset() {
+    this.expert = new NoGuessGenerator(16, 30, 99);
+  }
+
+  void testPlace(Tester t) {
+    reset();
+    GeneratorWorker worker = new GeneratorWorker(this.expert);
+    worker.place(new Random(1), 31);
+    t.checkExpect(worker.board.mineCount, 99);
+    for (int i : new int[] {0, 1, 2, 30, 31, 32, 60, 61, 62}) {
+      t.checkExpect(worker.board.isMine(i), false);
+    }
+    t.checkExpect(worker.mines().length, 99);
+    worker.board.checkCounts();
+    t.checkException(new IllegalArgumentException("Too many mines to keep the first click safe"),
+        new GeneratorWorker(new NoGuessGenerator(3, 3, 1)), "place", new Random(1), 4);
+  }
+
+  void testSolve(Tester t) {
+    //  . 1 *
+    //  . 1 1
+    //  . . .   can be cleared from the top left corner
+    GeneratorWorker worker = new GeneratorWorker(new NoGuessGenerator(3, 3, 1));
+    worker.board.makeMine(2);
+    t.checkExpect(worker.solve(0), true);
+    t.checkExpect(worker.board.isWon(), true);
+
+    //  * 1 .
+    //  . 1 .   started from the top right, the mine could be either of the two left tiles
+    worker = new GeneratorWorker(new NoGuessGenerator(2, 3, 1));
+    worker.board.makeMine(0);
+    t.checkExpect(worker.solve(2), false);
+    t.checkExpect(worker.board.isWon(), false);
+    t.checkExpect(worker.repair(2), false);
+  }
+
+  void testRepair(Tester t) {
+    reset();
+    GeneratorWorker worker = new GeneratorWorker(this.expert);
+    Random rand = new Random(5);
+    worker.place(rand, 100);
+    while (worker.solve(100)) {
+      worker.place(rand, 100);
+    }
+    t.checkExpect(worker.repair(100), true);
+    t.checkExpect(worker.board.mineCount, 99);
+    t.checkExpect(worker.board.isMine(100), false);
+    worker.board.checkCounts();
+  }
+
+  void testAttempt(Tester t) {
+    reset();
+    GeneratorWorker worker = new GeneratorWorker(this.expert);
+    boolean solved = false;
+    for (int i = 0; i < 200 && !solved; i++) {
+      solved = worker.attempt(BatchRunner.gameSeed(3, i), 100);
+    }
+    t.checkExpect(solved, true);
+    t.checkExpect(worker.board.mineCount, 99);
+    t.checkExpect(worker.board.isMine(100), false);
+    worker.board.checkCounts();
+  }
+
+  void testGenerate(Tester t) {
+    reset();
+    int[] mines = this.expert.generate(7, 200);
+    t.checkExpect(mines.length, 99);
+    t.checkExpect(this.expert.generate(7, 200), mines);
+    this.expert.threads = 3;
+    t.checkExpect(this.expert.generate(7, 200), mines);
+    this.expert.threads = 1;
+    this.expert.attempts = 0;
+    t.checkExpect(this.expert.generate(7, 200), null);
+    t.checkException(new IllegalArgumentException("Tile is not on the board"),
+        this.expert, "generate", 7L, 480);
+
+    Board board = new Board(16, 30);
+    for (int mine : mines) {
+      board.makeMine(mine);
+    }
+    Solver solver = new Solver(board);
+    solver.reveal(200);
+    int guesses = 0;
+    while (!board.isWon() && guesses == 0) {
+      int next = solver.suggest();
+      if (next < 0) {
+        guesses += 1;
+      }
+      else {
+        solver.reveal(next);
+      }
+    }
+    t.checkExpect(guesses, 0);
+    t.checkExpect(board.isLost(), false);
+  }
+
+  void testRandomMines(Tester t) {
+    reset();
+    int[] mines = this.expert.randomMines(new Random(2), 0);
+    t.checkExpect(mines.length, 99);
+    t.checkExpect(Arrays.binarySearch(mines, 0) < 0, true);
+    t.checkExpect(Arrays.binarySearch(mines, 31) < 0, true);
+  }
+}
@@ -3,59 +3,40 @@ import java.util.Iterator;
 
 import tester.Tester;
 
-//Allows a Cell's neighbors to be iterated over
+//Allows a Cell's neighbors to be iterated over. Kept for code that works with IGamePieces;
+//Board.neighbors visits the same tiles by index without creating any objects
 class NeighborIterator implements Iterator<IGamePiece> {
-  HashMap<String, IGamePiece> map;
-  String key = "Top";
-  boolean completed = false;
+  static final String[] DIRECTIONS =
+      {"Top", "TopRight", "Right", "BottomRight", "Bottom", "BottomLeft", "Left", "TopLeft"};
+  IGamePiece[] pieces = new IGamePiece[8];
+  int position = 0;
 
   NeighborIterator(HashMap<String, IGamePiece> neighbors) {
-    this.map = neighbors;
+    for (int i = 0; i < 8; i++) {
+      this.pieces[i] = neighbors.get(DIRECTIONS[i]);
+    }
+  }
+
+  //Iterates over the neighbors of the tile at idx of the given Board, with Walls past its edges
+  NeighborIterator(Board board, int idx) {
+    Cell cell = new Cell(board, idx);
+    for (int i = 0; i < 8; i++) {
+      this.pieces[i] = cell.neighborAt(Board.DROW[i], Board.DCOL[i]);
+    }
   }
 
-  //If all keys have not been iterated over, the Iterator has a Next
+  //If all neighbors have not been iterated over, the Iterator has a Next
   public boolean hasNext() {
-    return !completed;
+    return this.position < 8;
   }
 
-  //Cycles through the keys of this Iterator's map
+  //Returns the next neighbor, going clockwise from the Top
   public IGamePiece next() {
-    if (this.key.equals("Top")) {
-      this.key = "TopRight";
-      return this.map.get("Top");
-    }
-    else if (this.key.equals("TopRight")) {
-      this.key = "Right";
-      return this.map.get("TopRight");
-    }
-    else if (this.key.equals("Right")) {
-      this.key = "BottomRight";
-      return this.map.get("Right");
-    }
-    else if (this.key.equals("BottomRight")) {
-      this.key = "Bottom";
-      return this.map.get("BottomRight");
-    }
-    else if (this.key.equals("Bottom")) {
-      this.key = "BottomLeft";
-      return this.map.get("Bottom");
-    }
-    else if (this.key.equals("BottomLeft")) {
-      this.key = "Left";
-      return this.map.get("BottomLeft");
-    }
-    else if (this.key.equals("Left")) {
-      this.key = "TopLeft";
-      return this.map.get("Left");
-    }
-    else if (this.key.equals("TopLeft")) {
-      this.key = "";
-      this.completed = true;
-      return this.map.get("TopLeft");
-    }
-    else {
+    if (!this.hasNext()) {
       throw new RuntimeException("Next not found");
     }
+    this.position += 1;
+    return this.pieces[this.position - 1];
   }
 }
 
@@ -81,7 +62,7 @@ class ExamplesNeighborIterator {
   void testHasNext(Tester t) {
     reset();
     t.checkExpect(this.iterator1.hasNext(), true);
-    this.iterator1.completed = true;
+    this.iterator1.position = 8;
     t.checkExpect(this.iterator1.hasNext(), false);
     reset();
   }
@@ -90,6 +71,28 @@ class ExamplesNeighborIterator {
     reset();
     t.checkExpect(this.iterator1.next(), new Wall());
     t.checkExpect(this.iterator1.next(), new Cell());
+    for (int i = 0; i < 6; i++) {
+      this.iterator1.next();
+    }
+    t.checkException(new RuntimeException("Next not found"), this.iterator1, "next");
     reset();
   }
+
+  void testBoardNeighbors(Tester t) {
+    Board board = new Board(3, 3);
+    NeighborIterator corner = new NeighborIterator(board, 0);
+    t.checkExpect(corner.next(), new Wall());
+    t.checkExpect(corner.next(), new Wall());
+    t.checkExpect(corner.next(), new Cell(board, 1));
+    t.checkExpect(corner.next(), new Cell(board, 4));
+    t.checkExpect(corner.next(), new Cell(board, 3));
+    t.checkExpect(corner.next(), new Wall());
+
+    NeighborIterator center = new NeighborIterator(board, 4);
+    t.checkExpect(center.next(), new Cell(board, 1));
+    t.checkExpect(center.next(), new Cell(board, 2));
+    t.checkExpect(center.pieces[7], new Cell(board, 0));
+    t.checkExpect(new NeighborIterator(board, 4).pieces,
+        new NeighborIterator(new Cell(board, 4).neighbors()).pieces);
+  }
 }
\ No newline at end of file
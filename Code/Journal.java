@@ -0,0 +1,547 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+import tester.*;
+
+//Writes every move of a game to a file as it is played, so that the game can be made again
+//with a Replay. The file starts with a header holding the board's size, its number of mines,
+//the seed it was made from and whether its mines come from a NoGuessGenerator, with that
+//generator's attempts and repairs, which version 1 journals leave out. Then comes one
+//8-byte record per move, holding its kind in the top 2 bits, the tick it was made on in the
+//next 31 and the index of its tile in the lowest 31, or for an undo or redo which of the two it
+//was. After every interval moves a record of kind SNAPSHOT holds the length of the game saved
+//by GameFile that follows it, so a Replay can start from there. Records are gathered in a
+//buffer and written to the file when it fills
+class MoveJournal {
+  static final int MAGIC = 0x4D4F5645;
+  static final byte VERSION = 2;
+  static final int HEADER_SIZE = 4 + 1 + 4 + 4 + 4 + 8 + 1 + 4 + 4;
+  static final int V1_HEADER_SIZE = HEADER_SIZE - 8;
+  static final long REVEAL = 0;
+  static final long FLAG = 1;
+  static final long SNAPSHOT = 2;
+  static final long HISTORY = 3;
+  static final int UNDO = 0;
+  static final int REDO = 1;
+  static final int BUFFER_SIZE = 1 << 16;
+
+  FileChannel channel;
+  ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+  int interval;
+  int snapshots = 0;
+
+  //Starts a journal of the given game, which must not have been played yet, in the given file
+  MoveJournal(MineWorld world, Path file, int interval) {
+    if (world.moves != 0) {
+      throw new IllegalArgumentException("Journal must start before the first move");
+    }
+    if (interval < 0) {
+      throw new IllegalArgumentException("Snapshot interval must not be negative");
+    }
+    this.interval = interval;
+    try {
+      this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+          StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    this.buffer.putInt(MAGIC);
+    this.buffer.put(VERSION);
+    this.buffer.putInt(world.rowMax);
+    this.buffer.putInt(world.colMax);
+    this.buffer.putInt(world.generator == null ? world.board.mineCount
+        : world.generator.numMines);
+    this.buffer.putLong(world.seed);
+    this.buffer.put((byte) (world.generator == null ? 0 : 1));
+    this.buffer.putInt(world.generator == null ? 0 : world.generator.attempts);
+    this.buffer.putInt(world.generator == null ? 0 : world.generator.repairs);
+  }
+
+  //Returns the record of a move of the given kind on the tile at idx, made on the given tick
+  static long encode(long kind, int idx, int tick) {
+    return (kind << 62) | ((long) tick << 31) | idx;
+  }
+
+  //Returns the kind of the given record
+  static long kindOf(long record) {
+    return record >>> 62;
+  }
+
+  //Returns the tick of the given record
+  static int tickOf(long record) {
+    return (int) ((record >>> 31) & Integer.MAX_VALUE);
+  }
+
+  //Returns the tile index, or for a snapshot the length, of the given record
+  static int indexOf(long record) {
+    return (int) (record & Integer.MAX_VALUE);
+  }
+
+  //Adds a move of the given kind on the tile at idx, which the given game has just made,
+  //followed by a snapshot of the game if one is due
+  void record(long kind, int idx, MineWorld world) {
+    this.add(kind, idx, world);
+    if (this.interval > 0 && world.moves % this.interval == 0) {
+      this.snapshot(world);
+    }
+  }
+
+  //Adds a move of the given kind on the tile at idx, which the given game has just made as
+  //part of a batch, without a snapshot
+  void add(long kind, int idx, MineWorld world) {
+    if (this.buffer.remaining() < 8) {
+      this.flush();
+    }
+    this.buffer.putLong(encode(kind, idx, world.ticks));
+  }
+
+  //Adds a snapshot of the given game if one fell due during the batch of moves it has just
+  //made, which started after the given number of moves
+  void batched(int movesBefore, MineWorld world) {
+    if (this.interval > 0 && world.moves / this.interval > movesBefore / this.interval) {
+      this.snapshot(world);
+    }
+  }
+
+  //Adds a snapshot of the given game as it is now
+  void snapshot(MineWorld world) {
+    ByteBuffer snapshot = GameFile.encode(world);
+    if (this.buffer.remaining() < 8 + snapshot.remaining()) {
+      this.flush();
+    }
+    this.buffer.putLong(encode(SNAPSHOT, snapshot.remaining(), world.ticks));
+    if (this.buffer.remaining() < snapshot.remaining()) {
+      this.flush();
+      this.write(snapshot);
+    }
+    else {
+      this.buffer.put(snapshot);
+    }
+    this.snapshots += 1;
+  }
+
+  //Writes everything gathered so far to the file
+  void flush() {
+    this.buffer.flip();
+    this.write(this.buffer);
+    this.buffer.clear();
+  }
+
+  //Writes the rest of the given buffer to the file
+  void write(ByteBuffer data) {
+    try {
+      while (data.hasRemaining()) {
+        this.channel.write(data);
+      }
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  //Writes everything gathered so far and closes the file
+  void close() {
+    this.flush();
+    try {
+      this.channel.close();
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
+
+//Makes a game again from the file written by its MoveJournal, as it was after any number of
+//moves. Going to a move starts from the last snapshot at or before it, so only the moves since
+//then are played again, unless one of them is an undo or redo: snapshots do not hold the moves
+//that could be undone, so then the game is played again from the start. A record cut short at
+//the end of the file, as when the game that wrote it stopped before flushing, is ignored
+class Replay {
+  int rowMax;
+  int colMax;
+  int numMines;
+  long seed;
+  boolean noGuess;
+  int attempts = -1;
+  int repairs = -1;
+  MappedByteBuffer data;
+  long[] moves = new long[1024];
+  int moveCount = 0;
+  int[] snapshotMoves = new int[16];
+  int[] snapshotOffsets = new int[16];
+  int snapshotCount = 0;
+  int[] historyMoves = new int[16];
+  int historyCount = 0;
+
+  //Reads the journal in the given file, noting where each move and snapshot is
+  Replay(Path file) {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      this.data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    if (this.data.remaining() < MoveJournal.V1_HEADER_SIZE
+        || this.data.getInt() != MoveJournal.MAGIC) {
+      throw new IllegalArgumentException("Not a move journal");
+    }
+    byte version = this.data.get();
+    if (version != MoveJournal.VERSION && version != 1) {
+      throw new IllegalArgumentException("Unsupported journal version " + version);
+    }
+    this.rowMax = this.data.getInt();
+    this.colMax = this.data.getInt();
+    this.numMines = this.data.getInt();
+    this.seed = this.data.getLong();
+    this.noGuess = this.data.get() != 0;
+    if (version != 1) {
+      if (this.data.remaining() < 8) {
+        throw new IllegalArgumentException("Not a move journal");
+      }
+      this.attempts = this.data.getInt();
+      this.repairs = this.data.getInt();
+    }
+
+    while (this.data.remaining() >= 8) {
+      long record = this.data.getLong();
+      if (MoveJournal.kindOf(record) != MoveJournal.SNAPSHOT) {
+        if (this.moveCount == this.moves.length) {
+          this.moves = Arrays.copyOf(this.moves, this.moves.length * 2);
+        }
+        if (MoveJournal.kindOf(record) == MoveJournal.HISTORY) {
+          if (this.historyCount == this.historyMoves.length) {
+            this.historyMoves = Arrays.copyOf(this.historyMoves, this.historyCount * 2);
+          }
+          this.historyMoves[this.historyCount] = this.moveCount;
+          this.historyCount += 1;
+        }
+        this.moves[this.moveCount] = record;
+        this.moveCount += 1;
+      }
+      else if (MoveJournal.indexOf(record) <= this.data.remaining()) {
+        if (this.snapshotCount == this.snapshotMoves.length) {
+          this.snapshotMoves = Arrays.copyOf(this.snapshotMoves, this.snapshotCount * 2);
+          this.snapshotOffsets = Arrays.copyOf(this.snapshotOffsets, this.snapshotCount * 2);
+        }
+        this.snapshotMoves[this.snapshotCount] = this.moveCount;
+        this.snapshotOffsets[this.snapshotCount] = this.data.position() - 8;
+        this.snapshotCount += 1;
+        this.data.position(this.data.position() + MoveJournal.indexOf(record));
+      }
+      else {
+        break;
+      }
+    }
+  }
+
+  //Returns the game as it was before its first move, with its generator set up as it was
+  MineWorld start() {
+    if (this.noGuess) {
+      NoGuessGenerator generator = new NoGuessGenerator(this.rowMax, this.colMax,
+          this.numMines);
+      if (this.attempts >= 0) {
+        generator.attempts = this.attempts;
+        generator.repairs = this.repairs;
+      }
+      return new MineWorld(generator, this.seed);
+    }
+    return new MineWorld(this.rowMax, this.colMax, this.numMines, this.seed);
+  }
+
+  //Returns the game as it was after the given number of moves
+  MineWorld at(int move) {
+    if (move < 0 || move > this.moveCount) {
+      throw new IllegalArgumentException("Journal has only " + this.moveCount + " moves");
+    }
+    int snapshot = this.snapshotBefore(move);
+    if (snapshot >= 0 && this.historyBetween(this.snapshotMoves[snapshot], move)) {
+      snapshot = -1;
+    }
+    MineWorld world;
+    int from = 0;
+    if (snapshot < 0) {
+      world = this.start();
+    }
+    else {
+      world = this.snapshot(snapshot);
+      from = this.snapshotMoves[snapshot];
+    }
+    for (int i = from; i < move; i++) {
+      apply(world, this.moves[i]);
+    }
+    return world;
+  }
+
+  //Returns the game as it was after its last move
+  MineWorld end() {
+    return this.at(this.moveCount);
+  }
+
+  //Returns the last snapshot taken at or before the given move, or -1 if there is none
+  int snapshotBefore(int move) {
+    int low = 0;
+    int high = this.snapshotCount - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (this.snapshotMoves[mid] <= move) {
+        low = mid + 1;
+      }
+      else {
+        high = mid - 1;
+      }
+    }
+    return high;
+  }
+
+  //Returns whether any move from start up to but not including end is an undo or redo
+  boolean historyBetween(int start, int end) {
+    int low = 0;
+    int high = this.historyCount;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (this.historyMoves[mid] < start) {
+        low = mid + 1;
+      }
+      else {
+        high = mid;
+      }
+    }
+    return low < this.historyCount && this.historyMoves[low] < end;
+  }
+
+  //Returns the game saved in the given snapshot
+  MineWorld snapshot(int snapshot) {
+    ByteBuffer view = this.data.duplicate();
+    view.position(this.snapshotOffsets[snapshot]);
+    long record = view.getLong();
+    view.limit(view.position() + MoveJournal.indexOf(record));
+    MineWorld world = GameFile.decode(view.slice());
+    world.ticks = MoveJournal.tickOf(record);
+    return world;
+  }
+
+  //Makes the move in the given record on the given game
+  static void apply(MineWorld world, long record) {
+    int idx = MoveJournal.indexOf(record);
+    world.ticks = MoveJournal.tickOf(record);
+    if (MoveJournal.kindOf(record) == MoveJournal.FLAG) {
+      world.flag(idx / world.colMax, idx % world.colMax);
+    }
+    else if (MoveJournal.kindOf(record) == MoveJournal.HISTORY) {
+      if (idx == MoveJournal.UNDO) {
+        world.undo();
+      }
+      else {
+        world.redo();
+      }
+    }
+    else {
+      world.reveal(idx / world.colMax, idx % world.colMax);
+    }
+  }
+}
+
+class ExamplesJournal {
+  Path file;
+
+  void reset() {
+    try {
+      this.file = Files.createTempFile("moves", ".journal");
+      this.file.toFile().deleteOnExit();
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  //Plays the given number of moves on the given game, choosing tiles and ticks from the given
+  //Random and flagging on every fifth move of the game
+  void play(MineWorld world, int count, Random rand) {
+    for (int i = 0; i < count; i++) {
+      world.ticks += rand.nextInt(3);
+      int idx = rand.nextInt(world.board.size());
+      if (world.moves % 5 == 4) {
+        world.flag(idx / world.colMax, idx % world.colMax);
+      }
+      else {
+        world.reveal(idx / world.colMax, idx % world.colMax);
+      }
+    }
+  }
+
+  //Checks that the given games have the same tiles, moves and ticks
+  void checkSame(Tester t, MineWorld replayed, MineWorld world) {
+    t.checkExpect(replayed.board.state, world.board.state);
+    t.checkExpect(replayed.board.neighborMines, world.board.neighborMines);
+    t.checkExpect(replayed.board.safeHidden, world.board.safeHidden);
+    t.checkExpect(replayed.moves, world.moves);
+    t.checkExpect(replayed.ticks, world.ticks);
+    t.checkExpect(replayed.status(), world.status());
+  }
+
+  void testRecords(Tester t) {
+    long record = MoveJournal.encode(MoveJournal.FLAG, 123456, 789);
+    t.checkExpect(MoveJournal.kindOf(record), MoveJournal.FLAG);
+    t.checkExpect(MoveJournal.indexOf(record), 123456);
+    t.checkExpect(MoveJournal.tickOf(record), 789);
+    record = MoveJournal.encode(MoveJournal.SNAPSHOT, Integer.MAX_VALUE, Integer.MAX_VALUE);
+    t.checkExpect(MoveJournal.kindOf(record), MoveJournal.SNAPSHOT);
+    t.checkExpect(MoveJournal.indexOf(record), Integer.MAX_VALUE);
+    t.checkExpect(MoveJournal.tickOf(record), Integer.MAX_VALUE);
+    t.checkExpect(MoveJournal.kindOf(MoveJournal.encode(MoveJournal.REVEAL, 0, 0)),
+        MoveJournal.REVEAL);
+  }
+
+  void testStart(Tester t) {
+    reset();
+    MineWorld world = new MineWorld(16, 30, 99, 6L);
+    t.checkExpect(world.seed, 6L);
+    t.checkExpect(world.board, new MineWorld(16, 30, 99, new Random(6)).board);
+    world.reveal(0, 0);
+    t.checkConstructorException(
+        new IllegalArgumentException("Journal must start before the first move"),
+        "MoveJournal", world, this.file, 10);
+    t.checkConstructorException(
+        new IllegalArgumentException("Snapshot interval must not be negative"),
+        "MoveJournal", new MineWorld(16, 30, 99, 6L), this.file, -1);
+    t.checkExpect(new MineWorld(16, 30, 99, 6L).seeded, true);
+    t.checkExpect(new MineWorld(new NoGuessGenerator(16, 30, 99), 6).seeded, true);
+    t.checkException(new IllegalArgumentException("Journal needs a game made from a seed"),
+        new MineWorld(16, 30, 99), "startJournal", this.file, 10);
+    t.checkException(new IllegalArgumentException("Journal needs a game made from a seed"),
+        new MineWorld(16, 30, 99, new Random(6)), "startJournal", this.file, 10);
+  }
+
+  void testReplay(Tester t) {
+    reset();
+    MineWorld world = new MineWorld(16, 30, 99, 14L);
+    world.startJournal(this.file, 7);
+    this.play(world, 40, new Random(3));
+    world.journal.close();
+    t.checkExpect(world.journal.snapshots, 5);
+
+    Replay replay = new Replay(this.file);
+    t.checkExpect(replay.moveCount, 40);
+    t.checkExpect(replay.snapshotCount, 5);
+    t.checkExpect(replay.snapshotBefore(6), -1);
+    t.checkExpect(replay.snapshotBefore(7), 0);
+    t.checkExpect(replay.snapshotBefore(40), 4);
+    this.checkSame(t, replay.end(), world);
+    this.checkSame(t, replay.start(), new MineWorld(16, 30, 99, 14L));
+
+    MineWorld live = new MineWorld(16, 30, 99, 14L);
+    Random rand = new Random(3);
+    for (int move = 0; move <= 40; move += 1) {
+      this.checkSame(t, replay.at(move), live);
+      this.play(live, 1, rand);
+    }
+    t.checkException(new IllegalArgumentException("Journal has only 40 moves"),
+        replay, "at", 41);
+  }
+
+  void testReplayNoGuess(Tester t) {
+    reset();
+    MineWorld world = new MineWorld(new NoGuessGenerator(16, 30, 99), 9);
+    world.startJournal(this.file, 0);
+    world.flag(0, 0);
+    world.reveal(8, 15);
+    this.play(world, 20, new Random(4));
+    world.journal.flush();
+    Replay replay = new Replay(this.file);
+    t.checkExpect(replay.noGuess, true);
+    t.checkExpect(replay.snapshotCount, 0);
+    this.checkSame(t, replay.end(), world);
+    t.checkExpect(replay.at(1).waiting, true);
+    t.checkExpect(replay.at(1).board.isFlagged(0), true);
+    t.checkExpect(replay.at(2).board.mineCount, 99);
+
+    NoGuessGenerator tuned = new NoGuessGenerator(16, 30, 99);
+    tuned.attempts = 0;
+    tuned.repairs = 5;
+    world = new MineWorld(tuned, 9);
+    world.startJournal(this.file, 0);
+    world.reveal(8, 15);
+    world.journal.flush();
+    replay = new Replay(this.file);
+    t.checkExpect(replay.attempts, 0);
+    t.checkExpect(replay.start().generator.repairs, 5);
+    t.checkExpect(replay.end().board.state, world.board.state);
+  }
+
+  void testLongJournal(Tester t) {
+    reset();
+    MineWorld world = new MineWorld(40, 40, 1, 2L);
+    world.startJournal(this.file, 5000);
+    this.play(world, 20000, new Random(5));
+    world.journal.flush();
+    t.checkExpect(world.journal.snapshots, 4);
+    Replay replay = new Replay(this.file);
+    t.checkExpect(replay.moveCount, 20000);
+    this.checkSame(t, replay.end(), world);
+    MineWorld live = new MineWorld(40, 40, 1, 2L);
+    this.play(live, 12345, new Random(5));
+    this.checkSame(t, replay.at(12345), live);
+    t.checkExpect(replay.at(15000).moves, 15000);
+  }
+
+  void testReplayUndo(Tester t) {
+    reset();
+    MineWorld world = new MineWorld(16, 30, 99, 12L);
+    world.startJournal(this.file, 4);
+    Random rand = new Random(7);
+    this.play(world, 10, rand);
+    world.undo();
+    world.undo();
+    world.redo();
+    this.play(world, 10, rand);
+    world.undo();
+    world.journal.flush();
+
+    Replay replay = new Replay(this.file);
+    t.checkExpect(replay.historyCount, 4);
+    t.checkExpect(replay.historyBetween(0, 10), false);
+    t.checkExpect(replay.historyBetween(8, 11), true);
+    t.checkExpect(replay.historyBetween(13, 23), false);
+    t.checkExpect(replay.historyBetween(13, 24), true);
+    t.checkExpect(replay.historyBetween(24, 24), false);
+    this.checkSame(t, replay.end(), world);
+    t.checkExpect(replay.at(9).moves, 9);
+  }
+
+  void testCutShort(Tester t) {
+    reset();
+    MineWorld world = new MineWorld(9, 9, 10, 1L);
+    world.startJournal(this.file, 2);
+    this.play(world, 4, new Random(6));
+    world.journal.flush();
+    try {
+      FileChannel channel = FileChannel.open(this.file, StandardOpenOption.WRITE);
+      channel.truncate(channel.size() - 5);
+      channel.close();
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    Replay replay = new Replay(this.file);
+    t.checkExpect(replay.moveCount, 4);
+    t.checkExpect(replay.snapshotCount, 1);
+
+    try {
+      Files.write(this.file, new byte[] {1, 2, 3});
+    }
+    catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    t.checkConstructorException(new IllegalArgumentException("Not a move journal"),
+        "Replay", this.file);
+  }
+}
@@ -0,0 +1,362 @@
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+import tester.*;
+
+//Represents a distribution of non-negative values, counted in buckets by the position of their
+//highest bit, so recording one costs a few instructions and no allocation
+class Histogram {
+  long[] buckets = new long[64];
+  long count = 0;
+  long sum = 0;
+  long max = 0;
+
+  //Adds the given value
+  void record(long value) {
+    this.buckets[64 - Long.numberOfLeadingZeros(Math.max(0, value)) & 63] += 1;
+    this.count += 1;
+    this.sum += value;
+    this.max = Math.max(this.max, value);
+  }
+
+  //Returns the average value, or 0 if there are none
+  long mean() {
+    return this.count == 0 ? 0 : this.sum / this.count;
+  }
+
+  //Returns a value at least as large as the given fraction of the values: the top of the
+  //bucket holding that fraction, but no more than the largest value
+  long percentile(double fraction) {
+    long wanted = (long) Math.ceil(fraction * this.count);
+    long seen = 0;
+    for (int i = 0; i < 64; i++) {
+      seen += this.buckets[i];
+      if (seen >= wanted && seen > 0) {
+        return Math.min(this.max, i == 0 ? 0 : (1L << i) - 1);
+      }
+    }
+    return this.max;
+  }
+
+  //Returns a line with the count, mean, median, 99th percentile and largest value
+  String summary() {
+    return String.format("n=%d mean=%d p50=%d p99=%d max=%d", this.count, this.mean(),
+        this.percentile(0.5), this.percentile(0.99), this.max);
+  }
+}
+
+//Measures where the time goes in a running game: how long each tick and each scene takes and
+//roughly how many bytes they allocate, how many tiles each scene draws again, and how many
+//tiles and how deep a flood each reveal opens. A MineWorld only has one when metrics are turned
+//on, with -Dminesweeper.metrics=true or startMetrics, so otherwise the game pays for a null
+//check. It can be read through JMX from the game loop's first tick, so games played without a
+//window are never registered, and prints a report and is unregistered when the game ends
+class GameMetrics implements DynamicMBean {
+  static final boolean ENABLED = Boolean.getBoolean("minesweeper.metrics");
+  static final AtomicLong IDS = new AtomicLong(0);
+  static final String[] ATTRIBUTES = {"Ticks", "MeanTickNanos", "P99TickNanos",
+    "Scenes", "MeanSceneNanos", "P99SceneNanos", "TilesDrawn", "Clicks",
+    "MeanRevealedPerClick", "MaxRevealedPerClick", "MaxFloodDepth", "BytesAllocated"};
+
+  Histogram tickNanos = new Histogram();
+  Histogram sceneNanos = new Histogram();
+  Histogram revealedPerClick = new Histogram();
+  Histogram floodDepth = new Histogram();
+  long tilesDrawn = 0;
+  long bytesAllocated = 0;
+  long allocatedAtStart = 0;
+  boolean reported = false;
+  ObjectName name;
+
+  //Notes the time and the bytes allocated so far at the start of a tick or scene, returning
+  //the time
+  long start() {
+    this.allocatedAtStart = Benchmarks.allocatedBytes();
+    return System.nanoTime();
+  }
+
+  //Adds the bytes allocated since start was called
+  void addAllocated() {
+    long allocated = Benchmarks.allocatedBytes();
+    if (allocated >= 0 && this.allocatedAtStart >= 0) {
+      this.bytesAllocated += allocated - this.allocatedAtStart;
+    }
+  }
+
+  //Takes note of a tick that started at the given time, making these metrics readable through
+  //JMX on the first one
+  void ticked(long start) {
+    if (this.name == null && !this.reported) {
+      this.register(Long.toString(IDS.incrementAndGet()));
+    }
+    this.tickNanos.record(System.nanoTime() - start);
+    this.addAllocated();
+  }
+
+  //Takes note of a scene that started at the given time and drew the given number of tiles
+  void drew(long start, int tiles) {
+    this.sceneNanos.record(System.nanoTime() - start);
+    this.tilesDrawn += tiles;
+    this.addAllocated();
+  }
+
+  //Takes note of a click that revealed the given number of tiles with a flood of the given
+  //depth
+  void revealed(int count, int depth) {
+    this.revealedPerClick.record(count);
+    this.floodDepth.record(depth);
+  }
+
+  //Returns a text report of everything measured
+  String report() {
+    StringBuilder report = new StringBuilder();
+    report.append("tick ns:           ").append(this.tickNanos.summary()).append('\n');
+    report.append("scene ns:          ").append(this.sceneNanos.summary()).append('\n');
+    report.append("tiles drawn:       ").append(this.tilesDrawn).append('\n');
+    report.append("revealed per click: ").append(this.revealedPerClick.summary()).append('\n');
+    report.append("flood depth:       ").append(this.floodDepth.summary()).append('\n');
+    report.append("bytes allocated:   ").append(this.bytesAllocated).append('\n');
+    return report.toString();
+  }
+
+  //Prints the report once, when the game has ended, and stops these metrics being readable
+  //through JMX
+  void finish() {
+    if (!this.reported) {
+      this.reported = true;
+      System.out.print(this.report());
+      this.unregister();
+    }
+  }
+
+  //Makes these metrics readable through JMX under the given id
+  void register(String id) {
+    try {
+      this.name = new ObjectName("minesweeper:type=GameMetrics,name=" + id);
+      ManagementFactory.getPlatformMBeanServer().registerMBean(this, this.name);
+    }
+    catch (JMException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  //Stops these metrics being readable through JMX
+  void unregister() {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      if (this.name != null && server.isRegistered(this.name)) {
+        server.unregisterMBean(this.name);
+      }
+    }
+    catch (JMException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  //Returns the value of the attribute with the given name
+  public Object getAttribute(String attribute) throws AttributeNotFoundException {
+    switch (attribute) {
+      case "Ticks":
+        return this.tickNanos.count;
+      case "MeanTickNanos":
+        return this.tickNanos.mean();
+      case "P99TickNanos":
+        return this.tickNanos.percentile(0.99);
+      case "Scenes":
+        return this.sceneNanos.count;
+      case "MeanSceneNanos":
+        return this.sceneNanos.mean();
+      case "P99SceneNanos":
+        return this.sceneNanos.percentile(0.99);
+      case "TilesDrawn":
+        return this.tilesDrawn;
+      case "Clicks":
+        return this.revealedPerClick.count;
+      case "MeanRevealedPerClick":
+        return this.revealedPerClick.mean();
+      case "MaxRevealedPerClick":
+        return this.revealedPerClick.max;
+      case "MaxFloodDepth":
+        return this.floodDepth.max;
+      case "BytesAllocated":
+        return this.bytesAllocated;
+      default:
+        throw new AttributeNotFoundException(attribute);
+    }
+  }
+
+  //Returns the values of the attributes with the given names that exist
+  public AttributeList getAttributes(String[] attributes) {
+    AttributeList list = new AttributeList();
+    for (String attribute : attributes) {
+      try {
+        list.add(new Attribute(attribute, this.getAttribute(attribute)));
+      }
+      catch (AttributeNotFoundException e) {
+        continue;
+      }
+    }
+    return list;
+  }
+
+  //Every attribute is read-only
+  public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+    throw new AttributeNotFoundException(attribute.getName() + " is read-only");
+  }
+
+  //Every attribute is read-only, so none are set
+  public AttributeList setAttributes(AttributeList attributes) {
+    return new AttributeList();
+  }
+
+  //Runs the operation with the given name, of which there is only "report"
+  public Object invoke(String action, Object[] params, String[] signature)
+      throws ReflectionException {
+    if (action.equals("report")) {
+      return this.report();
+    }
+    throw new ReflectionException(new NoSuchMethodException(action));
+  }
+
+  //Describes the attributes and the report operation
+  public MBeanInfo getMBeanInfo() {
+    MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[ATTRIBUTES.length];
+    for (int i = 0; i < ATTRIBUTES.length; i++) {
+      attributes[i] = new MBeanAttributeInfo(ATTRIBUTES[i], "long", ATTRIBUTES[i],
+          true, false, false);
+    }
+    MBeanOperationInfo[] operations = {new MBeanOperationInfo("report",
+        "Returns a text report of everything measured", null, "java.lang.String",
+        MBeanOperationInfo.INFO)};
+    return new MBeanInfo(GameMetrics.class.getName(), "Minesweeper game metrics",
+        attributes, null, operations, null);
+  }
+}
+
+class ExamplesMetrics {
+
+  void testHistogram(Tester t) {
+    Histogram histogram = new Histogram();
+    t.checkExpect(histogram.mean(), 0L);
+    t.checkExpect(histogram.percentile(0.5), 0L);
+    histogram.record(0);
+    histogram.record(1);
+    histogram.record(5);
+    histogram.record(100);
+    t.checkExpect(histogram.count, 4L);
+    t.checkExpect(histogram.mean(), 26L);
+    t.checkExpect(histogram.buckets[0], 1L);
+    t.checkExpect(histogram.buckets[1], 1L);
+    t.checkExpect(histogram.buckets[3], 1L);
+    t.checkExpect(histogram.buckets[7], 1L);
+    t.checkExpect(histogram.percentile(0.5), 1L);
+    t.checkExpect(histogram.percentile(0.75), 7L);
+    t.checkExpect(histogram.percentile(0.99), 100L);
+    t.checkExpect(histogram.summary(), "n=4 mean=26 p50=1 p99=100 max=100");
+  }
+
+  void testGame(Tester t) {
+    MineWorld world = new MineWorld(3, 4, new Random(1));
+    world.board.makeMine(11);
+    t.checkExpect(world.metrics == null, !GameMetrics.ENABLED);
+    world.reveal(2, 2);
+    world.startMetrics();
+    t.checkExpect(world.metrics.name, null);
+    world.makeScene();
+    world.makeScene();
+    world.onTick();
+    t.checkExpect(ManagementFactory.getPlatformMBeanServer()
+        .isRegistered(world.metrics.name), true);
+    world.reveal(0, 0);
+    world.flag(2, 3);
+    world.makeScene();
+    GameMetrics metrics = world.metrics;
+    t.checkExpect(metrics.sceneNanos.count, 3L);
+    t.checkExpect(metrics.tilesDrawn, 12L + 0 + 12);
+    t.checkExpect(metrics.tickNanos.count, 1L);
+    t.checkExpect(metrics.revealedPerClick.count, 1L);
+    t.checkExpect(metrics.revealedPerClick.max, 10L);
+    t.checkExpect(metrics.floodDepth.max, 3L);
+    t.checkExpect(metrics.bytesAllocated > 0, true);
+    t.checkExpect(metrics.reported, false);
+    world.onTick();
+    t.checkExpect(world.status(), GameStatus.WON);
+    t.checkExpect(metrics.reported, true);
+    t.checkExpect(ManagementFactory.getPlatformMBeanServer().isRegistered(metrics.name), false);
+    t.checkExpect(metrics.report().split("\n").length, 6);
+    t.checkExpect(metrics.report().contains("tiles drawn:       24\n"), true);
+  }
+
+  //Returns how many GameMetrics are readable through JMX
+  int registered() {
+    try {
+      return ManagementFactory.getPlatformMBeanServer()
+          .queryNames(new ObjectName("minesweeper:type=GameMetrics,*"), null).size();
+    }
+    catch (JMException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  void testManyWorlds(Tester t) {
+    int before = this.registered();
+    for (int i = 0; i < 20000; i++) {
+      MineWorld world = new MineWorld(4, 4, 2, (long) i);
+      world.startMetrics();
+      world.reveal(0, 0);
+    }
+    t.checkExpect(this.registered(), before);
+
+    MineWorld first = new MineWorld(4, 4, 2, 1L);
+    MineWorld second = new MineWorld(4, 4, 2, 1L);
+    first.startMetrics();
+    second.startMetrics();
+    first.onTick();
+    second.onTick();
+    t.checkExpect(this.registered(), before + 2);
+    t.checkExpect(first.metrics.name.equals(second.metrics.name), false);
+    first.metrics.finish();
+    second.metrics.finish();
+    t.checkExpect(this.registered(), before);
+    second.onTick();
+    t.checkExpect(this.registered(), before);
+  }
+
+  void testJmx(Tester t) {
+    GameMetrics metrics = new GameMetrics();
+    metrics.revealed(7, 2);
+    metrics.register("test");
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      t.checkExpect(server.getAttribute(metrics.name, "Clicks"), 1L);
+      t.checkExpect(server.getAttribute(metrics.name, "MaxRevealedPerClick"), 7L);
+      t.checkExpect(server.invoke(metrics.name, "report", null, null), metrics.report());
+      t.checkExpect(server.getMBeanInfo(metrics.name).getAttributes().length,
+          GameMetrics.ATTRIBUTES.length);
+      t.checkExpect(server.getAttributes(metrics.name,
+          new String[] {"Ticks", "Missing"}).size(), 1);
+    }
+    catch (JMException e) {
+      throw new IllegalStateException(e);
+    }
+    metrics.unregister();
+    t.checkExpect(server.isRegistered(metrics.name), false);
+    t.checkException(new AttributeNotFoundException("Missing"), metrics, "getAttribute",
+        "Missing");
+    t.checkExpect(Arrays.asList(GameMetrics.ATTRIBUTES).contains("MaxFloodDepth"), true);
+  }
+}
@@ -1,99 +1,469 @@
 import java.awt.Color;
+import java.io.OutputStream;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Random;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Random;
 
 import tester.*;
 import javalib.impworld.*;
+import javalib.worldimages.BesideImage;
 import javalib.worldimages.Posn;
 import javalib.worldimages.TextImage;
+import javalib.worldimages.WorldImage;
+
+//Represents whether a game of Minesweeper is still being played, or how it ended
+enum GameStatus {
+  PLAYING, WON, LOST
+}
 
 //Represents the World State of the game Minesweeper
 class MineWorld extends World {
   int rowMax;
   int colMax;
   Random rand;
-  ArrayList<Cell> cells;
+  Board board;
+  WorldImage[] rowImages;
+  int drawnBlockSize;
+  int moves = 0;
+  Solver solver;
+  ProbabilityEngine probabilities;
+  int hint = -1;
+  NoGuessGenerator generator;
+  long seed;
+  boolean seeded = false;
+  boolean waiting = false;
+  int ticks = 0;
+  MoveJournal journal;
+  UndoHistory history;
+  GameMetrics metrics;
+  DiffEncoder diffs;
 
   MineWorld(int rowMax, int colMax, int numMines) {
+    this(rowMax, colMax, numMines, new Random());
+  }
+
+  //Creates a game whose mines are placed using the given Random, so that the same seed always
+  //gives the same board
+  MineWorld(int rowMax, int colMax, int numMines, Random rand) {
     this.rowMax = rowMax;
     this.colMax = colMax;
-    this.rand = new Random();
-    this.cells = this.makeCells();
-    this.assignCells();
-    this.makeMines(numMines);
-    
-    for (Cell c : this.cells) {
-      c.neighborMines = c.countNeighborMines();
+    this.rand = rand;
+    this.board = new Board(rowMax, colMax);
+    this.history = new UndoHistory(this.board, UndoHistory.DEFAULT_BYTES);
+    this.rowImages = new WorldImage[rowMax];
+    if (GameMetrics.ENABLED) {
+      this.startMetrics();
     }
+    this.makeMines(numMines);
+  }
+
+  //Creates a game whose mines are placed using a Random with the given seed, which is kept so
+  //that the game can be made again from its journal
+  MineWorld(int rowMax, int colMax, int numMines, long seed) {
+    this(rowMax, colMax, numMines, new Random(seed));
+    this.seed = seed;
+    this.seeded = true;
+  }
+
+  //Creates a game whose mines are placed by the given generator when the first tile is
+  //revealed, so that it can be cleared from there without guessing
+  MineWorld(NoGuessGenerator generator, long seed) {
+    this(generator.rowMax, generator.colMax, new Random(seed));
+    this.generator = generator;
+    this.seed = seed;
+    this.seeded = true;
+    this.waiting = true;
   }
 
-  //THIS CONSTRUCTOR IS FOR TESTING PURPOSES ONLY
+  //Creates a game with no mines yet. Tests place its mines by hand, and a NoGuessGenerator
+  //places them when the first tile is revealed
   MineWorld(int rowMax, int colMax, Random rand) {
     this.rowMax = rowMax;
     this.colMax = colMax;
     this.rand = rand;
-    this.cells = this.makeCells(); 
+    this.board = new Board(rowMax, colMax);
+    this.history = new UndoHistory(this.board, UndoHistory.DEFAULT_BYTES);
+    this.rowImages = new WorldImage[rowMax];
+    if (GameMetrics.ENABLED) {
+      this.startMetrics();
+    }
   }
 
-  //Turns the given number of cells in this MineWorld into Mines based on their index in
-  //this MineWorld's ArrayList of Cells
+  //Turns the given number of randomly chosen cells in this MineWorld into Mines, which also
+  //counts them towards their neighbors. Sparse boards draw random cells until enough distinct
+  //ones are found, while dense boards shuffle only the front of a list of every cell, so either
+  //way the work grows with the number of mines rather than mines times cells
   void makeMines(int numMines) {
-    if (numMines > this.rowMax * this.colMax) {
+    int size = this.board.size();
+    if (numMines > size) {
       throw new IllegalArgumentException("Number of mines must be less than number of cells");
     }
 
-    ArrayList<Integer> cellNums = new ArrayList<Integer>();
-    for (int i = 0; i < this.rowMax * this.colMax; i++) {
-      cellNums.add(i);
+    if (numMines <= size / 2) {
+      for (int i = 0; i < numMines; i++) {
+        int newMine = this.rand.nextInt(size);
+        while (this.board.isMine(newMine)) {
+          newMine = this.rand.nextInt(size);
+        }
+        this.board.makeMine(newMine);
+      }
     }
-    
-    for (int i = 0; i < numMines; i++) {
-      int newMine = cellNums.remove(this.rand.nextInt(cellNums.size()));
-      this.cells.get(newMine).makeMine();
+    else {
+      int[] cellNums = new int[size];
+      for (int i = 0; i < size; i++) {
+        cellNums[i] = i;
+      }
+      for (int i = 0; i < numMines; i++) {
+        int pick = i + this.rand.nextInt(size - i);
+        int newMine = cellNums[pick];
+        cellNums[pick] = cellNums[i];
+        this.board.makeMine(newMine);
+      }
     }
   }
 
-  //Creates a list of cells based on how many rows and columns this MineWorld is to have
-  ArrayList<Cell> makeCells() {
-    ArrayList<Cell> cells = new ArrayList<Cell>();
-    for (int i = 0; i < this.rowMax * this.colMax; i++) {
-      cells.add(new Cell());
-    } 
-    return cells;
-  }
-
-  //Assigns all the cells in this MineWorld to their correct neighbors
-  void assignCells() {
-    for (int i = 0; i < this.rowMax * this.colMax; i++) {
-      this.cells.get(i).assignToCell(i, this.cells, rowMax, colMax);
-    }
+  //Returns the Cell at the given index of this MineWorld's Board
+  Cell cellAt(int idx) {
+    return new Cell(this.board, idx);
   }
 
 
-  //Draws a WorldScene representation of this MineWorld by placing each cell on a canvas
+  //Draws a WorldScene representation of this MineWorld by placing each row of cells on a
+  //canvas, redrawing only the rows that have changed since the last scene
   public WorldScene makeScene() {
+    long start = this.metrics == null ? 0 : this.metrics.start();
+    int drawn = 0;
     WorldScene scene = new WorldScene(this.colMax * 20, this.rowMax * 20);
-    
-    for (int i = 0; i < this.cells.size(); i++) {
+
+    if (this.drawnBlockSize != Cell.BLOCK_SIZE) {
+      this.rowImages = new WorldImage[this.rowMax];
+      this.drawnBlockSize = Cell.BLOCK_SIZE;
+    }
+
+    for (int r = 0; r < this.rowMax; r++) {
+      if (this.rowImages[r] == null || this.board.dirtyRows[r]) {
+        this.board.dirtyRows[r] = false;
+        this.rowImages[r] = this.drawTiles(r, 0, this.colMax);
+        drawn += this.colMax;
+      }
       scene.placeImageXY(
-          cells.get(i).drawCell(),
-          ((i % colMax) * Cell.BLOCK_SIZE) + Cell.BLOCK_SIZE / 2,
-          (Math.floorDiv(i, this.colMax) * Cell.BLOCK_SIZE) + Cell.BLOCK_SIZE / 2);
+          this.rowImages[r],
+          (this.colMax * Cell.BLOCK_SIZE) / 2,
+          (r * Cell.BLOCK_SIZE) + Cell.BLOCK_SIZE / 2);
+    }
+
+    if (this.metrics != null) {
+      this.metrics.drew(start, drawn);
     }
-    
     return scene;
   }
+
+  //Draws the cells of the given row from column start up to but not including column end
+  //side by side, splitting the range in half so that wide rows do not nest too deeply
+  WorldImage drawTiles(int row, int start, int end) {
+    if (end - start == 1) {
+      int idx = (row * this.colMax) + start;
+      if (idx == this.hint && !this.board.isRevealed(idx)) {
+        return Cell.tileImage(Cell.HINT_TILE);
+      }
+      return Cell.drawTile(this.board, idx);
+    }
+    int mid = (start + end) / 2;
+    return new BesideImage(this.drawTiles(row, start, mid), this.drawTiles(row, mid, end));
+  }
   
   //Handles everything to do with clicking, including revealing and flagging tiles
   public void onMouseClicked(Posn location, String button) {
+    int row = Math.floorDiv(location.y, Cell.BLOCK_SIZE);
+    int col = Math.floorDiv(location.x, Cell.BLOCK_SIZE);
     if (button.equals("LeftButton")) {
-      this.getTileAt(location).handleLeftClick();
+      this.reveal(row, col);
     }
     if (button.equals("RightButton")) {
-      this.getTileAt(location).handleRightClick();
+      this.flag(row, col);
+    }
+  }
+
+  //Reveals the tile at the given row and column as a left click would, returning how many
+  //tiles were newly revealed. A flagged tile is not revealed, so it does not place the mines
+  //of a game that is waiting for its first click
+  int reveal(int row, int col) {
+    int idx = this.indexOf(row, col);
+    if (this.waiting && !this.board.isFlagged(idx)) {
+      this.placeMines(idx);
     }
+    this.moves += 1;
+    int count = this.board.reveal(idx);
+    if (this.solver != null) {
+      this.solver.revealed(this.board.revealed, count);
+    }
+    this.history.revealed(this.board.revealed, count);
+    if (this.journal != null) {
+      this.journal.record(MoveJournal.REVEAL, idx, this);
+    }
+    if (this.metrics != null) {
+      this.metrics.revealed(count, this.board.floodDepth);
+    }
+    if (this.diffs != null) {
+      this.diffs.touched(this.board.revealed, count);
+      this.diffs.moved();
+    }
+    return count;
+  }
+
+  //Places this game's mines from its generator now that the first tile to reveal is known,
+  //falling back to mines that only keep that tile safe if the generator runs out of attempts
+  void placeMines(int first) {
+    int[] mines = this.generator.generate(this.seed, first);
+    if (mines == null) {
+      mines = this.generator.randomMines(this.rand, first);
+    }
+    for (int mine : mines) {
+      this.board.makeMine(mine);
+    }
+    this.waiting = false;
+    if (this.probabilities != null) {
+      this.probabilities.totalMines = this.board.mineCount;
+    }
+  }
+
+  //Toggles the flag on the tile at the given row and column as a right click would. Taking a
+  //flag away also drops a hint that may have rested on it
+  void flag(int row, int col) {
+    int idx = this.indexOf(row, col);
+    this.moves += 1;
+    this.board.toggleFlag(idx);
+    if (!this.board.isFlagged(idx)) {
+      this.forget();
+    }
+    else if (this.solver != null) {
+      this.solver.flagged(idx);
+    }
+    this.history.flagged(idx);
+    if (this.journal != null) {
+      this.journal.record(MoveJournal.FLAG, idx, this);
+    }
+    if (this.diffs != null) {
+      this.diffs.touched(idx);
+      this.diffs.moved();
+    }
+  }
+
+  //Makes every move of the given batch at once: first its flags, toggling each tile once however
+  //often it is listed, then its reveals as one flood fill shared by all of them. A reveal of a
+  //tile that is flagged, already revealed or revealed earlier in the batch is dropped. Every
+  //move that is kept counts, is journaled and is undone as if it had been made on its own. A
+  //batch that takes a flag away drops the Solver, as flag does
+  BatchOutcome apply(MoveBatch batch) {
+    int[] flags = new int[batch.size];
+    int[] reveals = new int[batch.size];
+    int flagCount = 0;
+    int revealCount = 0;
+    for (int i = 0; i < batch.size; i++) {
+      int idx = this.indexOf(batch.rows[i], batch.cols[i]);
+      if (batch.flags[i]) {
+        flags[flagCount] = idx;
+        flagCount += 1;
+      }
+      else {
+        reveals[revealCount] = idx;
+        revealCount += 1;
+      }
+    }
+
+    int movesBefore = this.moves;
+    Arrays.sort(flags, 0, flagCount);
+    int distinct = 0;
+    boolean unflagged = false;
+    for (int i = 0; i < flagCount; i++) {
+      if (i == 0 || flags[i] != flags[i - 1]) {
+        flags[distinct] = flags[i];
+        distinct += 1;
+        this.moves += 1;
+        this.board.toggleFlag(flags[i]);
+        unflagged |= !this.board.isFlagged(flags[i]);
+        this.history.flagged(flags[i]);
+        if (this.journal != null) {
+          this.journal.add(MoveJournal.FLAG, flags[i], this);
+        }
+      }
+    }
+    if (unflagged) {
+      this.forget();
+    }
+    else if (this.solver != null) {
+      for (int i = 0; i < distinct; i++) {
+        this.solver.flagged(flags[i]);
+      }
+    }
+
+    for (int i = 0; i < revealCount && this.waiting; i++) {
+      if (!this.board.isFlagged(reveals[i])) {
+        this.placeMines(reveals[i]);
+      }
+    }
+    int[] ends = new int[revealCount];
+    int count = this.board.revealAll(reveals, revealCount, ends);
+    for (int i = 0; i < revealCount; i++) {
+      int from = i == 0 ? 0 : ends[i - 1];
+      if (ends[i] > from) {
+        this.moves += 1;
+        this.history.revealed(this.board.revealed, from, ends[i]);
+        if (this.journal != null) {
+          this.journal.add(MoveJournal.REVEAL, reveals[i], this);
+        }
+      }
+    }
+    if (this.solver != null) {
+      this.solver.revealed(this.board.revealed, count);
+    }
+    if (this.journal != null) {
+      this.journal.batched(movesBefore, this);
+    }
+    if (this.metrics != null && count > 0) {
+      this.metrics.revealed(count, this.board.floodDepth);
+    }
+    if (this.diffs != null) {
+      this.diffs.touched(flags, distinct);
+      this.diffs.touched(this.board.revealed, count);
+      this.diffs.moved();
+    }
+    return new BatchOutcome(Arrays.copyOf(this.board.revealed, count),
+        Arrays.copyOf(flags, distinct), this.moves - movesBefore, this.status());
+  }
+
+  //Returns the Solver following this game, starting one if there is none yet
+  Solver solver() {
+    if (this.solver == null) {
+      this.solver = new Solver(this.board);
+    }
+    return this.solver;
+  }
+
+  //Takes back the latest reveal or flag, returning false if there is none to take back. What
+  //the Solver learned from that move is forgotten with it
+  boolean undo() {
+    this.moves += 1;
+    boolean undone = this.history.undo();
+    if (undone) {
+      this.forget();
+      if (this.diffs != null) {
+        this.diffs.touched(this.history.redos.peekLast());
+      }
+    }
+    if (this.journal != null) {
+      this.journal.record(MoveJournal.HISTORY, MoveJournal.UNDO, this);
+    }
+    if (this.diffs != null) {
+      this.diffs.moved();
+    }
+    return undone;
+  }
+
+  //Makes the latest undone move again, returning false if there is none
+  boolean redo() {
+    this.moves += 1;
+    boolean redone = this.history.redo();
+    if (redone) {
+      this.forget();
+      if (this.diffs != null) {
+        this.diffs.touched(this.history.undos.peekLast());
+      }
+    }
+    if (this.journal != null) {
+      this.journal.record(MoveJournal.HISTORY, MoveJournal.REDO, this);
+    }
+    if (this.diffs != null) {
+      this.diffs.moved();
+    }
+    return redone;
+  }
+
+  //Drops the Solver, ProbabilityEngine and hint, which are made again from the Board when next
+  //needed
+  void forget() {
+    if (this.hint >= 0) {
+      this.board.dirtyRows[this.hint / this.colMax] = true;
+    }
+    this.hint = -1;
+    this.solver = null;
+    this.probabilities = null;
+  }
+
+  //Starts streaming this game's changes to the given output for a remote client, beginning with
+  //every tile already revealed or flagged. If coalesce is true, the changes are only sent once
+  //a tick instead of after every move
+  void startDiffs(OutputStream out, boolean coalesce) {
+    this.diffs = new DiffEncoder(this, out, coalesce);
+  }
+
+  //Starts measuring this game's ticks, scenes and reveals, readable through JMX from its first
+  //tick until it ends
+  void startMetrics() {
+    this.metrics = new GameMetrics();
+  }
+
+  //Starts writing every move of this game to a journal in the given file, with a snapshot of
+  //the whole game after every interval moves, or none if interval is 0. The game must have been
+  //made from a seed and not yet played, or else a Replay could not make it again
+  void startJournal(Path file, int interval) {
+    if (!this.seeded) {
+      throw new IllegalArgumentException("Journal needs a game made from a seed");
+    }
+    this.journal = new MoveJournal(this, file, interval);
+  }
+
+  //Returns the ProbabilityEngine following this game, starting one if there is none yet
+  ProbabilityEngine probabilities() {
+    if (this.probabilities == null) {
+      this.probabilities = new ProbabilityEngine(this.solver(), this.board.mineCount);
+    }
+    return this.probabilities;
+  }
+
+  //Handles key presses: "h" marks a hidden tile that is certainly safe to reveal, if there is
+  //one, "u" undoes the latest move and "r" redoes the latest undone move
+  public void onKeyEvent(String key) {
+    if (key.equals("h")) {
+      this.showHint();
+    }
+    else if (key.equals("u")) {
+      this.undo();
+    }
+    else if (key.equals("r")) {
+      this.redo();
+    }
+  }
+
+  //Marks a tile that is certainly safe to reveal, replacing any earlier hint
+  void showHint() {
+    if (this.hint >= 0) {
+      this.board.dirtyRows[this.hint / this.colMax] = true;
+    }
+    this.hint = this.solver().suggest();
+    if (this.hint >= 0) {
+      this.board.dirtyRows[this.hint / this.colMax] = true;
+    }
+  }
+
+  //Returns whether this game is still being played, or whether it was won or lost
+  GameStatus status() {
+    if (this.board.isLost()) {
+      return GameStatus.LOST;
+    }
+    else if (this.board.isWon()) {
+      return GameStatus.WON;
+    }
+    return GameStatus.PLAYING;
+  }
+
+  //Returns the index in this MineWorld's Board of the tile at the given row and column
+  int indexOf(int row, int col) {
+    if (row < 0 || row >= this.rowMax || col < 0 || col >= this.colMax) {
+      throw new IllegalArgumentException("Tile is not on the board");
+    }
+    return (row * this.colMax) + col;
   }
   
   //Returns the tile at a given row and column position on the board
@@ -102,22 +472,34 @@ class MineWorld extends World {
         new Posn(
             Math.floorDiv(location.x, Cell.BLOCK_SIZE),
             Math.floorDiv(location.y, Cell.BLOCK_SIZE));
-    return this.cells.get((tileLoc.y * colMax) + tileLoc.x);
+    return this.cellAt((tileLoc.y * colMax) + tileLoc.x);
   }
   
   //Checks if the user has won or lost the game at any moment
   public void onTick() {
-    boolean youWin = true;
-    for (Cell c : this.cells) {
-      if (c.isMine && c.isRevealed) {
-        this.endOfWorld("You Lose");
-      }
-      else if (!c.isMine && !c.isRevealed) {
-        youWin = false;
+    long start = this.metrics == null ? 0 : this.metrics.start();
+    this.ticks += 1;
+    if (Board.DEBUG) {
+      this.board.checkCounts();
+    }
+
+    GameStatus status = this.status();
+    if (status != GameStatus.PLAYING && this.journal != null) {
+      this.journal.flush();
+    }
+    if (this.diffs != null) {
+      this.diffs.flush();
+    }
+    if (this.metrics != null) {
+      this.metrics.ticked(start);
+      if (status != GameStatus.PLAYING) {
+        this.metrics.finish();
       }
     }
-    
-    if (youWin) {
+    if (status == GameStatus.LOST) {
+      this.endOfWorld("You Lose");
+    }
+    else if (status == GameStatus.WON) {
       this.endOfWorld("You Win");
     }
   }
@@ -133,9 +515,9 @@ class MineWorld extends World {
       return win;
     }
     else {
-      for (Cell c : this.cells) {
-        if (c.isMine) {
-          c.isRevealed = true;
+      for (int i = 0; i < this.board.size(); i++) {
+        if (this.board.isMine(i)) {
+          this.board.set(i, Board.REVEALED);
         }
       }
       WorldScene lose = this.makeScene();
@@ -152,31 +534,32 @@ class MineWorld extends World {
 
 class ExamplesMineWorld {
   MineWorld world1;
-  ArrayList<Cell> emptyCells;
-  ArrayList<Cell> fullCells;
 
   void reset() {
     this.world1 = new MineWorld(5, 5, new Random(5));
-    this.emptyCells = new ArrayList<Cell>(
-        Arrays.asList(new Cell(), new Cell(), new Cell(), new Cell(), new Cell(),
-            new Cell(), new Cell(), new Cell(), new Cell(), new Cell(),
-            new Cell(), new Cell(), new Cell(), new Cell(), new Cell(),
-            new Cell(), new Cell(), new Cell(), new Cell(), new Cell(),
-            new Cell(), new Cell(), new Cell(), new Cell(), new Cell()));
   }
 
-  void testMakeCells(Tester t) {
+  void testConstructor(Tester t) {
     reset();
-    t.checkExpect(this.world1.makeCells(), this.emptyCells);
+    t.checkExpect(this.world1.board.size(), 25);
+    t.checkExpect(this.world1.board.state, new byte[25]);
+    MineWorld mw = new MineWorld(16, 30, 99);
+    int mines = 0;
+    for (int i = 0; i < mw.board.size(); i++) {
+      if (mw.board.isMine(i)) {
+        mines += 1;
+      }
+      t.checkExpect(mw.board.neighborMines[i], (byte) mw.board.countNeighborMines(i));
+    }
+    t.checkExpect(mines, 99);
     reset();
   }
   
-  void testAssignCells(Tester t) {
+  void testCellAt(Tester t) {
     reset();
-    t.checkExpect(this.world1.cells, this.emptyCells);
-    t.checkExpect(this.world1.cells.get(0).neighbors, new HashMap<String, IGamePiece>());
-    this.world1.assignCells();
-    t.checkExpect(this.world1.cells.get(0).neighbors.get("TopLeft"), new Wall());
+    t.checkExpect(this.world1.cellAt(7), new Cell(this.world1.board, 7));
+    t.checkExpect(this.world1.cellAt(0).neighbors().get("TopLeft"), new Wall());
+    t.checkExpect(this.world1.cellAt(0).neighbors().get("Right"), this.world1.cellAt(1));
     reset();
   }
 
@@ -185,38 +568,225 @@ class ExamplesMineWorld {
     t.checkException(
         new IllegalArgumentException("Number of mines must be less than number of cells"),
         this.world1, "makeMines", 27);
-    this.world1.assignCells();
     this.world1.makeMines(5);
-    t.checkExpect(this.world1.cells.get(1).isMine, false);
-    t.checkExpect(this.world1.cells.get(4).isMine, true);
-    t.checkExpect(this.world1.cells.get(21).isMine, true);
-    t.checkExpect(this.world1.cells.get(22).isMine, true);
-    t.checkExpect(this.world1.cells.get(11).isMine, true);
-    t.checkExpect(this.world1.cells.get(12).isMine, true);
-    t.checkExpect(this.world1.cells.get(2).isMine, false);
-    t.checkExpect(this.world1.cells.get(17).isMine, false);
+    t.checkExpect(this.world1.board.isMine(1), false);
+    t.checkExpect(this.world1.board.isMine(5), true);
+    t.checkExpect(this.world1.board.isMine(6), true);
+    t.checkExpect(this.world1.board.isMine(12), true);
+    t.checkExpect(this.world1.board.isMine(17), true);
+    t.checkExpect(this.world1.board.isMine(24), true);
+    t.checkExpect(this.world1.board.isMine(2), false);
+    t.checkExpect(this.world1.board.isMine(11), false);
+    t.checkExpect(this.world1.board.mineCount, 5);
+    t.checkExpect(this.world1.board.neighborMines,
+        new byte[] {2, 2, 1, 0, 0, 1, 2, 2, 1, 0, 2, 4, 2, 2, 0,
+            0, 2, 1, 3, 1, 0, 1, 1, 2, 0});
+    reset();
+    this.world1.makeMines(20);
+    t.checkExpect(this.world1.board.mineCount, 20);
+    for (int i = 0; i < 25; i++) {
+      t.checkExpect(this.world1.board.neighborMines[i],
+          (byte) this.world1.board.countNeighborMines(i));
+    }
     reset();
   }
   
   void testOnMouseClicked(Tester t) {
     reset();
-    this.world1.assignCells();
     this.world1.makeMines(5);
     this.world1.onMouseClicked(new Posn(1, 1), "LeftButton");
-    t.checkExpect(this.world1.cells.get(0).isRevealed, true);
+    t.checkExpect(this.world1.board.isRevealed(0), true);
   }
   
+  void testHeadlessMoves(Tester t) {
+    reset();
+    this.world1.makeMines(5);
+    t.checkExpect(this.world1.status(), GameStatus.PLAYING);
+    this.world1.flag(0, 2);
+    t.checkExpect(this.world1.board.isFlagged(2), true);
+    t.checkExpect(this.world1.reveal(0, 2), 0);
+    this.world1.flag(0, 2);
+    t.checkExpect(this.world1.reveal(0, 2), 1);
+    t.checkExpect(this.world1.moves, 4);
+    t.checkExpect(this.world1.status(), GameStatus.PLAYING);
+    t.checkException(new IllegalArgumentException("Tile is not on the board"),
+        this.world1, "reveal", 0, 5);
+    t.checkExpect(this.world1.indexOf(2, 3), 13);
+    this.world1.reveal(1, 0);
+    t.checkExpect(this.world1.status(), GameStatus.LOST);
+
+    MineWorld won = new MineWorld(3, 3, 0, new Random(1));
+    t.checkExpect(won.reveal(1, 1), 9);
+    t.checkExpect(won.status(), GameStatus.WON);
+    t.checkExpect(new MineWorld(4, 4, 3, new Random(9)).board,
+        new MineWorld(4, 4, 3, new Random(9)).board);
+  }
+
+  void testHint(Tester t) {
+    MineWorld world = new MineWorld(2, 3, new Random(1));
+    world.board.makeMine(0);
+    world.board.makeMine(2);
+    world.onKeyEvent("h");
+    t.checkExpect(world.hint, -1);
+    world.reveal(1, 0);
+    world.reveal(1, 1);
+    world.reveal(1, 2);
+    world.makeScene();
+    world.onKeyEvent("x");
+    t.checkExpect(world.hint, -1);
+    world.onKeyEvent("h");
+    t.checkExpect(world.hint, 1);
+    t.checkExpect(world.board.dirtyRows, new boolean[] {true, false});
+    t.checkExpect(world.drawTiles(0, 1, 2), Cell.tileImage(Cell.HINT_TILE));
+    world.reveal(0, 1);
+    t.checkExpect(world.drawTiles(0, 1, 2), Cell.drawTile(world.board, 1));
+    t.checkExpect(world.solver().isMine(0), true);
+    world.flag(0, 0);
+    t.checkExpect(world.solver.pendingCount, 4);
+    world.flag(0, 0);
+    t.checkExpect(world.solver, null);
+    t.checkExpect(world.solver().isMine(0), false);
+  }
+
+  void testNoGuess(Tester t) {
+    NoGuessGenerator expert = new NoGuessGenerator(16, 30, 99);
+    MineWorld world = new MineWorld(expert, 11);
+    t.checkExpect(world.board.mineCount, 0);
+    t.checkExpect(world.probabilities().totalMines, 0);
+    world.flag(0, 0);
+    t.checkExpect(world.waiting, true);
+    t.checkExpect(world.reveal(0, 0), 0);
+    t.checkExpect(world.waiting, true);
+    t.checkExpect(world.board.mineCount, 0);
+    t.checkExpect(world.reveal(8, 15) > 1, true);
+    t.checkExpect(world.waiting, false);
+    t.checkExpect(world.board.mineCount, 99);
+    t.checkExpect(world.probabilities().totalMines, 99);
+    t.checkExpect(world.board.isFlagged(0), true);
+    t.checkExpect(world.status(), GameStatus.PLAYING);
+
+    MineWorld again = new MineWorld(expert, 11);
+    again.reveal(8, 15);
+    t.checkExpect(again.board.neighborMines, world.board.neighborMines);
+    while (again.status() == GameStatus.PLAYING) {
+      int next = again.solver().suggest();
+      if (next < 0) {
+        t.checkExpect(next, 0);
+        break;
+      }
+      again.reveal(next / again.colMax, next % again.colMax);
+    }
+    t.checkExpect(again.status(), GameStatus.WON);
+
+    NoGuessGenerator none = new NoGuessGenerator(16, 30, 99);
+    none.attempts = 0;
+    MineWorld fallback = new MineWorld(none, 11);
+    fallback.reveal(0, 0);
+    t.checkExpect(fallback.board.mineCount, 99);
+    t.checkExpect(fallback.board.isLost(), false);
+    t.checkException(new IllegalArgumentException("Too many mines to keep the first click safe"),
+        new MineWorld(new NoGuessGenerator(3, 3, 1), 1), "reveal", 1, 1);
+  }
+
+  void testUndo(Tester t) {
+    MineWorld world = new MineWorld(3, 4, new Random(1));
+    world.board.makeMine(0);
+    world.board.makeMine(11);
+    world.reveal(0, 3);
+    world.flag(2, 3);
+    world.onKeyEvent("h");
+    t.checkExpect(world.hint >= 0, true);
+    world.reveal(2, 0);
+    t.checkExpect(world.status(), GameStatus.WON);
+    world.onKeyEvent("u");
+    t.checkExpect(world.status(), GameStatus.PLAYING);
+    t.checkExpect(world.hint, -1);
+    t.checkExpect(world.solver, null);
+    world.onKeyEvent("u");
+    t.checkExpect(world.board.isFlagged(11), false);
+    world.onKeyEvent("r");
+    world.onKeyEvent("r");
+    t.checkExpect(world.status(), GameStatus.WON);
+    t.checkExpect(world.redo(), false);
+    t.checkExpect(world.moves, 8);
+    world.undo();
+    world.undo();
+    world.undo();
+    t.checkExpect(world.undo(), false);
+    t.checkExpect(world.board.state, new byte[] {1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1});
+    t.checkExpect(world.solver().suggest(), -1);
+  }
+
   void testGetTileAt(Tester t) {
     reset();
-    this.world1.assignCells();
     this.world1.makeMines(5);
-    t.checkExpect(this.world1.getTileAt(new Posn(1, 1)), this.world1.cells.get(0));
-    t.checkExpect(this.world1.getTileAt(new Posn(50, 1)), this.world1.cells.get(2));
+    t.checkExpect(this.world1.getTileAt(new Posn(1, 1)), this.world1.cellAt(0));
+    t.checkExpect(this.world1.getTileAt(new Posn(50, 1)), this.world1.cellAt(2));
   }
   
+  void testOnTick(Tester t) {
+    reset();
+    this.world1.makeMines(5);
+    this.world1.onTick();
+    t.checkExpect(this.world1.lastWorld.worldEnds, false);
+    this.world1.onMouseClicked(new Posn(1, 21), "LeftButton");
+    this.world1.onTick();
+    t.checkExpect(this.world1.lastWorld.worldEnds, true);
+    t.checkExpect(this.world1.board.isMine(24), true);
+    t.checkExpect(this.world1.board.isRevealed(24), true);
+
+    reset();
+    this.world1.makeMines(1);
+    for (int i = 0; i < this.world1.board.size(); i++) {
+      if (!this.world1.board.isMine(i)) {
+        this.world1.cellAt(i).handleLeftClick();
+      }
+    }
+    Board.DEBUG = true;
+    this.world1.onTick();
+    Board.DEBUG = false;
+    t.checkExpect(this.world1.lastWorld.worldEnds, true);
+    t.checkExpect(this.world1.board.minesRevealed, 0);
+  }
+
+  void testMakeScene(Tester t) {
+    MineWorld world = new MineWorld(2, 2, new Random(2));
+    world.makeMines(1);
+    WorldScene scene = new WorldScene(40, 40);
+    scene.placeImageXY(
+        new BesideImage(world.cellAt(0).drawCell(), world.cellAt(1).drawCell()), 20, 10);
+    scene.placeImageXY(
+        new BesideImage(world.cellAt(2).drawCell(), world.cellAt(3).drawCell()), 20, 30);
+    t.checkExpect(world.makeScene(), scene);
+    t.checkExpect(world.board.dirtyRows, new boolean[] {false, false});
+
+    WorldImage top = world.rowImages[0];
+    WorldImage bottom = world.rowImages[1];
+    world.onMouseClicked(new Posn(25, 25), "RightButton");
+    t.checkExpect(world.board.dirtyRows, new boolean[] {false, true});
+    world.makeScene();
+    t.checkExpect(world.rowImages[0] == top, true);
+    t.checkExpect(world.rowImages[1] == bottom, false);
+    t.checkExpect(world.rowImages[1],
+        new BesideImage(world.cellAt(2).drawCell(), world.cellAt(3).drawCell()));
+
+    Cell.BLOCK_SIZE = 30;
+    world.makeScene();
+    t.checkExpect(world.rowImages[0] == top, false);
+    t.checkExpect(world.rowImages[0].getWidth(), 60.0);
+    Cell.BLOCK_SIZE = 20;
+  }
+
+  void testDrawTiles(Tester t) {
+    reset();
+    t.checkExpect(this.world1.drawTiles(0, 3, 4), this.world1.cellAt(3).drawCell());
+    t.checkExpect(this.world1.drawTiles(1, 0, 3),
+        new BesideImage(this.world1.cellAt(5).drawCell(),
+            new BesideImage(this.world1.cellAt(6).drawCell(), this.world1.cellAt(7).drawCell())));
+  }
+
   void testLastScene(Tester t) {
     reset();
-    this.world1.assignCells();
     this.world1.makeMines(5);
     WorldScene img = this.world1.makeScene();
     img.placeImageXY(
@@ -0,0 +1,305 @@
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import tester.*;
+
+//Reveals giant empty regions of a Board on many threads. The Board is split into square blocks,
+//each with an inbox of tiles to reveal. A block is drained by one thread at a time, which
+//floods from those tiles without leaving the block and sends the tiles it would have crossed
+//into to the inboxes of the blocks beside it. Only the thread draining a block ever writes its
+//tiles, so revealing needs no locks, and the fill is over once no block has anything left in
+//its inbox. This reveals exactly the tiles Board.floodFill would, though not in the same order
+class ParallelFill {
+  static final int BLOCK_SHIFT = 8;
+  static final int MIN_SIZE = 1 << 20;
+
+  Board board;
+  int threads;
+  int blockShift = BLOCK_SHIFT;
+  int minSize = MIN_SIZE;
+  int blockRows;
+  int blockCols;
+  FillBlock[] blocks;
+  ExecutorService pool;
+  AtomicInteger pending;
+  CountDownLatch done;
+  AtomicReference<RuntimeException> failure;
+
+  ParallelFill(Board board, int threads) {
+    this.board = board;
+    this.threads = threads;
+  }
+
+  //Reveals the tile at idx and every tile reachable from it through tiles that have no mines
+  //as neighbors, returning how many tiles were newly revealed and leaving them in
+  //board.revealed[0 .. count). Fills that cannot be large, and small boards, are left to
+  //Board.floodFill
+  int fill(int idx) {
+    Board board = this.board;
+    if (this.threads <= 1 || board.size() < this.minSize || board.isRevealed(idx)
+        || board.isMine(idx) || board.neighborMines[idx] != 0) {
+      return board.floodFill(idx);
+    }
+
+    int block = 1 << this.blockShift;
+    this.blockRows = (board.rowMax + block - 1) >> this.blockShift;
+    this.blockCols = (board.colMax + block - 1) >> this.blockShift;
+    this.blocks = new FillBlock[this.blockRows * this.blockCols];
+    for (int i = 0; i < this.blocks.length; i++) {
+      this.blocks[i] = new FillBlock(this, i);
+    }
+    this.pending = new AtomicInteger(0);
+    this.done = new CountDownLatch(1);
+    this.failure = new AtomicReference<RuntimeException>();
+    this.pool = Executors.newFixedThreadPool(this.threads);
+    try {
+      this.blocks[this.blockOf(idx / board.colMax, idx % board.colMax)].send(new int[] {idx});
+      this.done.await();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    }
+    finally {
+      this.pool.shutdownNow();
+    }
+    if (this.failure.get() != null) {
+      throw this.failure.get();
+    }
+
+    int count = 0;
+    for (FillBlock filled : this.blocks) {
+      count += filled.count;
+    }
+    if (board.revealed.length < count) {
+      board.revealed = new int[count];
+    }
+    int at = 0;
+    for (FillBlock filled : this.blocks) {
+      System.arraycopy(filled.revealed, 0, board.revealed, at, filled.count);
+      at += filled.count;
+    }
+    board.safeHidden -= count;
+    board.floodDepth = 0;
+    this.blocks = null;
+    return count;
+  }
+
+  //Returns the index of the block holding the tile at the given row and column
+  int blockOf(int row, int col) {
+    return ((row >> this.blockShift) * this.blockCols) + (col >> this.blockShift);
+  }
+
+  //Takes note that a block has been drained and has nothing left to do, ending the fill if
+  //it was the last
+  void drained() {
+    if (this.pending.decrementAndGet() == 0) {
+      this.done.countDown();
+    }
+  }
+}
+
+//Represents one block of a ParallelFill: its inbox of tiles to reveal and the tiles it has
+//revealed so far, which also serve as its work queue
+class FillBlock implements Runnable {
+  ParallelFill fill;
+  int rowStart;
+  int rowEnd;
+  int colStart;
+  int colEnd;
+  ConcurrentLinkedQueue<int[]> inbox = new ConcurrentLinkedQueue<int[]>();
+  AtomicBoolean scheduled = new AtomicBoolean(false);
+  int[] revealed = new int[0];
+  int count = 0;
+  //The tiles to send to each of the blocks around this one, indexed by
+  //(row offset + 1) * 3 + (column offset + 1)
+  int[][] out = new int[9][];
+  int[] outCount = new int[9];
+
+  FillBlock(ParallelFill fill, int index) {
+    this.fill = fill;
+    int size = 1 << fill.blockShift;
+    this.rowStart = (index / fill.blockCols) * size;
+    this.rowEnd = Math.min(fill.board.rowMax, this.rowStart + size);
+    this.colStart = (index % fill.blockCols) * size;
+    this.colEnd = Math.min(fill.board.colMax, this.colStart + size);
+  }
+
+  //Adds the given tiles of this block to its inbox, making sure a thread will drain it
+  void send(int[] tiles) {
+    this.inbox.add(tiles);
+    if (this.scheduled.compareAndSet(false, true)) {
+      this.fill.pending.incrementAndGet();
+      this.fill.pool.execute(this);
+    }
+  }
+
+  //Floods from every tile in the inbox, sends on what crossed out of this block, then lets go
+  //of it, taking it back if more tiles arrived in the meantime
+  public void run() {
+    try {
+      int[] tiles = this.inbox.poll();
+      while (tiles != null) {
+        this.flood(tiles);
+        tiles = this.inbox.poll();
+      }
+      this.sendOut();
+    }
+    catch (RuntimeException e) {
+      this.fill.failure.compareAndSet(null, e);
+      this.inbox.clear();
+    }
+    this.scheduled.set(false);
+    if (!this.inbox.isEmpty() && this.scheduled.compareAndSet(false, true)) {
+      this.fill.pool.execute(this);
+    }
+    else {
+      this.fill.drained();
+    }
+  }
+
+  //Reveals the given tiles of this block and everything reachable from them within it
+  void flood(int[] tiles) {
+    Board board = this.fill.board;
+    int head = this.count;
+    for (int tile : tiles) {
+      this.reveal(tile);
+    }
+    for (; head < this.count; head++) {
+      int next = this.revealed[head];
+      if (board.neighborMines[next] != 0) {
+        continue;
+      }
+      int row = next / board.colMax;
+      int col = next % board.colMax;
+      for (int r = Math.max(0, row - 1); r <= Math.min(board.rowMax - 1, row + 1); r++) {
+        board.dirtyRows[r] = true;
+        for (int c = Math.max(0, col - 1); c <= Math.min(board.colMax - 1, col + 1); c++) {
+          int n = (r * board.colMax) + c;
+          if (r >= this.rowStart && r < this.rowEnd && c >= this.colStart && c < this.colEnd) {
+            this.reveal(n);
+          }
+          else {
+            int side = r < this.rowStart ? 0 : r < this.rowEnd ? 1 : 2;
+            this.outward((side * 3) + (c < this.colStart ? 0 : c < this.colEnd ? 1 : 2), n);
+          }
+        }
+      }
+    }
+  }
+
+  //Reveals the tile at idx of this block unless it already is
+  void reveal(int idx) {
+    Board board = this.fill.board;
+    if ((board.state[idx] & Board.REVEALED) != 0) {
+      return;
+    }
+    board.state[idx] |= Board.REVEALED;
+    if (this.count == this.revealed.length) {
+      this.revealed = Arrays.copyOf(this.revealed, Math.max(64, this.count * 2));
+    }
+    this.revealed[this.count] = idx;
+    this.count += 1;
+  }
+
+  //Holds the tile at idx to be sent to the block on the given side of this one
+  void outward(int side, int idx) {
+    if (this.out[side] == null) {
+      this.out[side] = new int[64];
+    }
+    else if (this.outCount[side] == this.out[side].length) {
+      this.out[side] = Arrays.copyOf(this.out[side], this.outCount[side] * 2);
+    }
+    this.out[side][this.outCount[side]] = idx;
+    this.outCount[side] += 1;
+  }
+
+  //Sends every tile held for the blocks around this one to their inboxes
+  void sendOut() {
+    for (int side = 0; side < 9; side++) {
+      if (this.outCount[side] > 0) {
+        int[] tiles = Arrays.copyOf(this.out[side], this.outCount[side]);
+        this.outCount[side] = 0;
+        this.fill.blocks[this.fill.blockOf(tiles[0] / this.fill.board.colMax,
+            tiles[0] % this.fill.board.colMax)].send(tiles);
+      }
+    }
+  }
+}
+
+class ExamplesParallelFill {
+
+  //Returns a sorted copy of the first count tiles of the given list
+  int[] sorted(int[] tiles, int count) {
+    int[] copy = Arrays.copyOf(tiles, count);
+    Arrays.sort(copy);
+    return copy;
+  }
+
+  //Checks that a ParallelFill on one copy of the given board and floodFill on another reveal
+  //the same tiles from idx, with every 97th tile flagged and, unless before is -1, the tile at
+  //before revealed first
+  void checkSame(Tester t, BandBuilder builder, int before, int idx, int threads,
+      int blockShift) {
+    Board board = builder.build();
+    Board same = builder.build();
+    for (int i = 0; i < board.size(); i += 97) {
+      board.toggleFlag(i);
+      same.toggleFlag(i);
+    }
+    if (before >= 0) {
+      board.floodFill(before);
+      same.floodFill(before);
+    }
+    ParallelFill fill = new ParallelFill(board, threads);
+    fill.minSize = 0;
+    fill.blockShift = blockShift;
+    int count = fill.fill(idx);
+    t.checkExpect(count, same.floodFill(idx));
+    t.checkExpect(this.sorted(board.revealed, count), this.sorted(same.revealed, count));
+    t.checkExpect(board.state, same.state);
+    t.checkExpect(board.safeHidden, same.safeHidden);
+    t.checkExpect(board.dirtyRows, same.dirtyRows);
+  }
+
+  //Returns the first tile from idx on with no neighboring mines on a board from the given
+  //builder
+  int zeroTile(BandBuilder builder, int idx) {
+    Board board = builder.build();
+    while (board.isMine(idx) || board.neighborMines[idx] != 0) {
+      idx += 1;
+    }
+    return idx;
+  }
+
+  void testSameAsFloodFill(Tester t) {
+    BandBuilder sparse = new BandBuilder(100, 120, 300, 7);
+    int start = this.zeroTile(sparse, 6000);
+    this.checkSame(t, sparse, -1, start, 4, 3);
+    this.checkSame(t, sparse, this.zeroTile(sparse, 0), start, 2, 4);
+    this.checkSame(t, sparse, -1, this.zeroTile(sparse, 11000), 3, 2);
+    BandBuilder open = new BandBuilder(300, 270, 0, 1);
+    this.checkSame(t, open, -1, 40000, 4, 6);
+    BandBuilder dense = new BandBuilder(80, 80, 1000, 3);
+    this.checkSame(t, dense, -1, this.zeroTile(dense, 3000), 3, 3);
+  }
+
+  void testSequentialCases(Tester t) {
+    BandBuilder builder = new BandBuilder(50, 50, 100, 2);
+    int start = this.zeroTile(builder, 1200);
+    Board board = builder.build();
+    ParallelFill fill = new ParallelFill(board, 4);
+    int count = fill.fill(start);
+    t.checkExpect(fill.blocks, null);
+    t.checkExpect(count, builder.build().floodFill(start));
+    fill.minSize = 0;
+    t.checkExpect(fill.fill(start), 0);
+    t.checkExpect(new ParallelFill(new Board(30, 30), 1).fill(0), 900);
+  }
+}
@@ -0,0 +1,576 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import tester.*;
+
+//Works out the chance that each hidden tile of a Board is a mine, from the numbers on the
+//revealed tiles, the flags, and the total number of mines. The frontier is split into
+//components that share no constraints, each component is counted on its own, and the counts
+//are combined with the number of ways of placing the remaining mines on the tiles that touch
+//no revealed tile. Component counts are kept until something next to them changes
+class ProbabilityEngine {
+  static final double[] LOG_FACTORIALS = ProbabilityEngine.logFactorials(256);
+
+  Solver solver;
+  int totalMines;
+  int threads = 1;
+  double[] chances;
+  HashMap<ComponentKey, ComponentCounts> cache = new HashMap<ComponentKey, ComponentCounts>();
+  int hits = 0;
+  int misses = 0;
+
+  ProbabilityEngine(Solver solver, int totalMines) {
+    this.solver = solver;
+    this.totalMines = totalMines;
+    this.chances = new double[solver.board.size()];
+  }
+
+  //Returns the chance that each tile is a mine: -1 for revealed tiles, 1 for flagged tiles
+  //and known mines, and 0 for known safe tiles. If the flags and numbers cannot all be right,
+  //the chances of the tiles they involve are NaN. The array is reused by the next call
+  double[] compute() {
+    Board board = this.solver.board;
+    this.solver.propagate();
+    Frontier parts = this.solver.frontier();
+
+    int known = 0;
+    int unknown = 0;
+    for (int i = 0; i < board.size(); i++) {
+      if (board.isRevealed(i)) {
+        this.chances[i] = -1;
+      }
+      else if (board.isFlagged(i) || this.solver.isMine(i)) {
+        this.chances[i] = 1;
+        known += 1;
+      }
+      else if (this.solver.isSafe(i)) {
+        this.chances[i] = 0;
+      }
+      else {
+        this.chances[i] = Double.POSITIVE_INFINITY;
+        unknown += 1;
+      }
+    }
+    int remaining = this.totalMines - known;
+    int interior = unknown - parts.tileCount;
+
+    int comps = parts.componentCount();
+    ComponentCounts[] counts = this.countAll(parts);
+    double[][] ways = new double[comps][];
+    int[] before = new int[comps + 1];
+    for (int c = 0; c < comps; c++) {
+      ways[c] = ProbabilityEngine.normalize(counts[c].ways.clone());
+      before[c + 1] = before[c] + counts[c].tiles.length;
+    }
+
+    //rest[k] is proportional to the number of ways of placing the mines left over when the
+    //frontier holds k of them on the interior tiles
+    double[] rest = new double[parts.tileCount + 1];
+    double most = Double.NEGATIVE_INFINITY;
+    for (int k = 0; k < rest.length; k++) {
+      rest[k] = ProbabilityEngine.logChoose(interior, remaining - k);
+      most = Math.max(most, rest[k]);
+    }
+    for (int k = 0; k < rest.length; k++) {
+      rest[k] = most == Double.NEGATIVE_INFINITY ? 0 : Math.exp(rest[k] - most);
+    }
+
+    //after(c) is proportional to the weight of the components from c onwards and the
+    //interior, given the number of mines before c. Only every step-th one is kept on the way
+    //back, and the ones between are worked out again a block at a time on the way forward
+    int step = Math.max(1, (int) Math.ceil(Math.sqrt(comps)));
+    double[][] saved = new double[(comps / step) + 1][];
+    double[] after = rest;
+    for (int c = comps - 1; c > 0; c--) {
+      after = ProbabilityEngine.combineBack(after, ways[c], before[c] + 1);
+      if (c % step == 0) {
+        saved[c / step] = after;
+      }
+    }
+
+    double[] prefix = {1};
+    for (int start = 0; start < comps; start += step) {
+      int end = Math.min(start + step, comps);
+      double[][] block = new double[end - start + 1][];
+      block[end - start] = end == comps ? rest : saved[end / step];
+      for (int c = end - 1; c > start; c--) {
+        block[c - start] = ProbabilityEngine.combineBack(block[c - start + 1], ways[c],
+            before[c] + 1);
+      }
+      for (int c = start; c < end; c++) {
+        this.assign(counts[c], prefix, block[c - start + 1]);
+        prefix = ProbabilityEngine.convolve(prefix, ways[c]);
+      }
+    }
+
+    double total = 0;
+    double expected = 0;
+    for (int k = 0; k < prefix.length; k++) {
+      total += prefix[k] * rest[k];
+      expected += prefix[k] * rest[k] * (remaining - k);
+    }
+    double inside = expected / (total * interior);
+    for (int i = 0; i < board.size(); i++) {
+      if (this.chances[i] == Double.POSITIVE_INFINITY) {
+        this.chances[i] = inside;
+      }
+    }
+    return this.chances;
+  }
+
+  //Sets the chances of the tiles of one component, given the weight of each number of mines
+  //in the components before it and the weight of the rest of the board after it
+  void assign(ComponentCounts counts, double[] prefix, double[] after) {
+    double[] weight = new double[counts.ways.length];
+    for (int k = 0; k < weight.length; k++) {
+      for (int j = 0; j < prefix.length; j++) {
+        weight[k] += prefix[j] * after[j + k];
+      }
+    }
+    double total = 0;
+    for (int k = 0; k < weight.length; k++) {
+      total += counts.ways[k] * weight[k];
+    }
+    for (int i = 0; i < counts.tiles.length; i++) {
+      double mines = 0;
+      for (int k = 0; k < weight.length; k++) {
+        mines += counts.mineWays[i][k] * weight[k];
+      }
+      this.chances[counts.tiles[i]] = mines / total;
+    }
+  }
+
+  //Returns the hidden, unflagged tile least likely to be a mine, or -1 if there is none
+  int safest() {
+    double[] chances = this.compute();
+    int best = -1;
+    for (int i = 0; i < chances.length; i++) {
+      if (chances[i] >= 0 && chances[i] < 1 && !this.solver.board.isFlagged(i)
+          && (best < 0 || chances[i] < chances[best])) {
+        best = i;
+      }
+    }
+    return best;
+  }
+
+  //Returns the counts of every component of the given frontier, reusing the counts of
+  //components that have not changed since the last call and counting the rest, split
+  //across threads if there is more than one
+  ComponentCounts[] countAll(Frontier parts) {
+    int comps = parts.componentCount();
+    ComponentCounts[] counts = new ComponentCounts[comps];
+    ComponentKey[] keys = new ComponentKey[comps];
+    int[] missing = new int[comps];
+    int missingCount = 0;
+    for (int c = 0; c < comps; c++) {
+      keys[c] = new ComponentKey(parts, c);
+      counts[c] = this.cache.get(keys[c]);
+      if (counts[c] == null) {
+        missing[missingCount] = c;
+        missingCount += 1;
+      }
+    }
+    this.hits += comps - missingCount;
+    this.misses += missingCount;
+
+    if (this.threads > 1 && missingCount > 1) {
+      this.countParallel(parts, counts, missing, missingCount);
+    }
+    else {
+      for (int i = 0; i < missingCount; i++) {
+        counts[missing[i]] = parts.count(missing[i]);
+      }
+    }
+
+    HashMap<ComponentKey, ComponentCounts> kept = new HashMap<ComponentKey, ComponentCounts>();
+    for (int c = 0; c < comps; c++) {
+      kept.put(keys[c], counts[c]);
+    }
+    this.cache = kept;
+    return counts;
+  }
+
+  //Counts the given missing components across this engine's threads
+  void countParallel(Frontier parts, ComponentCounts[] counts, int[] missing,
+      int missingCount) {
+    int shards = Math.min(this.threads, missingCount);
+    ExecutorService pool = Executors.newFixedThreadPool(shards);
+    try {
+      ArrayList<Future<Integer>> done = new ArrayList<Future<Integer>>();
+      for (int i = 0; i < shards; i++) {
+        done.add(pool.submit(new ComponentShard(parts, counts, missing, missingCount, i,
+            shards)));
+      }
+      for (Future<Integer> shard : done) {
+        shard.get();
+      }
+    }
+    catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new RuntimeException(e.getCause());
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    }
+    finally {
+      pool.shutdownNow();
+    }
+  }
+
+  //Returns the weights of each number of mines before a component, given the weights after
+  //it and its own weights by number of mines, keeping the given number of them
+  static double[] combineBack(double[] after, double[] ways, int length) {
+    double[] result = new double[length];
+    for (int j = 0; j < length; j++) {
+      for (int k = 0; k < ways.length; k++) {
+        result[j] += ways[k] * after[j + k];
+      }
+    }
+    return ProbabilityEngine.normalize(result);
+  }
+
+  //Returns the weights of each number of mines in two independent groups of tiles together
+  static double[] convolve(double[] a, double[] b) {
+    double[] result = new double[a.length + b.length - 1];
+    for (int i = 0; i < a.length; i++) {
+      for (int j = 0; j < b.length; j++) {
+        result[i + j] += a[i] * b[j];
+      }
+    }
+    return ProbabilityEngine.normalize(result);
+  }
+
+  //Divides the given weights by the largest of them, if it is not 0, and returns them
+  static double[] normalize(double[] values) {
+    double most = 0;
+    for (double value : values) {
+      most = Math.max(most, value);
+    }
+    if (most > 0) {
+      for (int i = 0; i < values.length; i++) {
+        values[i] /= most;
+      }
+    }
+    return values;
+  }
+
+  //Returns the natural log of the number of ways of choosing k of n things, which is
+  //negative infinity if there are none
+  static double logChoose(int n, int k) {
+    if (k < 0 || k > n) {
+      return Double.NEGATIVE_INFINITY;
+    }
+    return ProbabilityEngine.logFactorial(n) - ProbabilityEngine.logFactorial(k)
+        - ProbabilityEngine.logFactorial(n - k);
+  }
+
+  //Returns the natural log of n factorial, from a table for small n and from Stirling's
+  //series otherwise
+  static double logFactorial(int n) {
+    if (n < LOG_FACTORIALS.length) {
+      return LOG_FACTORIALS[n];
+    }
+    double x = n;
+    return (x * Math.log(x)) - x + (0.5 * Math.log(2 * Math.PI * x)) + (1 / (12 * x))
+        - (1 / (360 * x * x * x));
+  }
+
+  //Returns the natural logs of the factorials below the given number
+  static double[] logFactorials(int count) {
+    double[] result = new double[count];
+    for (int i = 1; i < count; i++) {
+      result[i] = result[i - 1] + Math.log(i);
+    }
+    return result;
+  }
+}
+
+//Represents the counts of the arrangements of mines on one component of the frontier: its
+//tiles in increasing order, the number of arrangements with each number of mines, and for
+//each tile the number of those in which it is a mine. All the counts may share a scale
+class ComponentCounts {
+  int[] tiles;
+  double[] ways;
+  double[][] mineWays;
+
+  ComponentCounts(int size) {
+    this.tiles = new int[size];
+    this.ways = new double[size + 1];
+    this.mineWays = new double[size][size + 1];
+  }
+}
+
+//Represents the partial arrangements of a component, while it is being counted, that leave
+//each constraint needing the same number of mines and have the same number of mines so far
+class CountState {
+  byte[] need;
+  int mines;
+  int hash;
+  double ways = 0;
+  double[] mineWays;
+
+  //Creates a state with room to count mines on the given number of tiles
+  CountState(byte[] need, int mines, int size) {
+    this.need = need;
+    this.mines = mines;
+    this.hash = (Arrays.hashCode(need) * 31) + mines;
+    this.mineWays = new double[size];
+  }
+
+  //Adds the arrangements of an earlier state to this one, where the tile at position mine,
+  //if it is not -1, was made a mine on the way
+  void add(CountState earlier, int mine) {
+    this.ways += earlier.ways;
+    for (int i = 0; i < this.mineWays.length; i++) {
+      this.mineWays[i] += earlier.mineWays[i];
+    }
+    if (mine >= 0) {
+      this.mineWays[mine] += earlier.ways;
+    }
+  }
+
+  //Multiplies every count of this state by the given factor
+  void scale(double factor) {
+    this.ways *= factor;
+    for (int i = 0; i < this.mineWays.length; i++) {
+      this.mineWays[i] *= factor;
+    }
+  }
+
+  public boolean equals(Object other) {
+    if (!(other instanceof CountState)) {
+      return false;
+    }
+    CountState that = (CountState) other;
+    return this.mines == that.mines && Arrays.equals(this.need, that.need);
+  }
+
+  public int hashCode() {
+    return this.hash;
+  }
+}
+
+//Identifies a component of the frontier by its tiles and by the revealed tiles constraining
+//them with the number of mines each still needs, which together decide its counts
+class ComponentKey {
+  long[] data;
+  int hash;
+
+  ComponentKey(Frontier parts, int comp) {
+    int[] vars = parts.componentVars(comp);
+    int[] cons = parts.compCons[comp];
+    this.data = new long[vars.length + cons.length];
+    for (int i = 0; i < vars.length; i++) {
+      this.data[i] = parts.tiles[vars[i]];
+    }
+    for (int i = 0; i < cons.length; i++) {
+      this.data[vars.length + i] = ((long) parts.consTiles[cons[i]] << 8)
+          | (parts.consMines[cons[i]] + 128);
+    }
+    Arrays.sort(this.data, 0, vars.length);
+    Arrays.sort(this.data, vars.length, this.data.length);
+    this.hash = (Arrays.hashCode(this.data) * 31) + vars.length;
+  }
+
+  public boolean equals(Object other) {
+    if (!(other instanceof ComponentKey)) {
+      return false;
+    }
+    ComponentKey that = (ComponentKey) other;
+    return this.hash == that.hash && Arrays.equals(this.data, that.data);
+  }
+
+  public int hashCode() {
+    return this.hash;
+  }
+}
+
+//Represents one thread's share of the components counted by a ProbabilityEngine
+class ComponentShard implements Callable<Integer> {
+  Frontier parts;
+  ComponentCounts[] counts;
+  int[] missing;
+  int missingCount;
+  int first;
+  int step;
+
+  ComponentShard(Frontier parts, ComponentCounts[] counts, int[] missing, int missingCount,
+      int first, int step) {
+    this.parts = parts;
+    this.counts = counts;
+    this.missing = missing;
+    this.missingCount = missingCount;
+    this.first = first;
+    this.step = step;
+  }
+
+  //Counts every step-th missing component starting from first, returning how many it counted
+  public Integer call() {
+    int counted = 0;
+    for (int i = this.first; i < this.missingCount; i += this.step) {
+      this.counts[this.missing[i]] = this.parts.count(this.missing[i]);
+      counted += 1;
+    }
+    return counted;
+  }
+}
+
+class ExamplesProbability {
+  Board board1;
+  ProbabilityEngine engine1;
+
+  //Makes a 1x7 board with mines at 2 and 6 and tiles 1 and 3 revealed:
+  //  . 1 * 1 . . *
+  //Either 2 is a mine and one of 5 and 6 is, which can happen 2 ways, or 0 and 4 are mines
+  //and 5 and 6 are not, which can happen 1 way
+  void reset() {
+    this.board1 = new Board(1, 7);
+    this.board1.makeMine(2);
+    this.board1.makeMine(6);
+    this.board1.floodFill(1);
+    this.board1.floodFill(3);
+    this.engine1 = new ProbabilityEngine(new Solver(this.board1), 2);
+  }
+
+  void testLogChoose(Tester t) {
+    t.checkInexact(ProbabilityEngine.logChoose(5, 2), Math.log(10), 0.000001);
+    t.checkExpect(ProbabilityEngine.logChoose(5, 6) == Double.NEGATIVE_INFINITY, true);
+    t.checkExpect(ProbabilityEngine.logChoose(5, -1) == Double.NEGATIVE_INFINITY, true);
+    t.checkExpect(ProbabilityEngine.logChoose(3, 0), 0.0);
+    double sum = 0;
+    for (int i = 1; i <= 1000; i++) {
+      sum += Math.log(i);
+    }
+    t.checkInexact(ProbabilityEngine.logFactorial(1000), sum, 0.000001);
+    t.checkInexact(ProbabilityEngine.logFactorial(255), ProbabilityEngine.logFactorials(256)[255],
+        0.000001);
+  }
+
+  void testConvolve(Tester t) {
+    t.checkExpect(ProbabilityEngine.convolve(new double[] {1, 1}, new double[] {1, 1}),
+        new double[] {0.5, 1, 0.5});
+    t.checkExpect(ProbabilityEngine.normalize(new double[] {0, 0}), new double[] {0, 0});
+    t.checkExpect(ProbabilityEngine.combineBack(new double[] {1, 2, 4}, new double[] {1, 1}, 2),
+        new double[] {0.5, 1});
+  }
+
+  void testCount(Tester t) {
+    reset();
+    Frontier parts = this.engine1.solver.frontier();
+    t.checkExpect(parts.componentCount(), 1);
+    ComponentCounts counts = parts.count(0);
+    t.checkExpect(counts.tiles, new int[] {0, 2, 4});
+    t.checkExpect(counts.ways, new double[] {0, 1, 1, 0});
+    t.checkExpect(counts.mineWays[0], new double[] {0, 0, 1, 0});
+    t.checkExpect(counts.mineWays[1], new double[] {0, 1, 0, 0});
+    t.checkExpect(counts.mineWays[2], new double[] {0, 0, 1, 0});
+
+    //Sixty unknown tiles under a row of 1s have a single arrangement, which is found without
+    //trying the others one at a time
+    Board wide = new Board(2, 60);
+    for (int i = 0; i < 60; i += 3) {
+      wide.makeMine(i + 1);
+    }
+    for (int i = 60; i < 120; i++) {
+      wide.floodFill(i);
+    }
+    ComponentCounts row = new Solver(wide).frontier().count(0);
+    t.checkExpect(row.tiles.length, 60);
+    t.checkExpect(row.ways[20], 1.0);
+  }
+
+  void testCompute(Tester t) {
+    reset();
+    double third = 1.0 / 3;
+    double[] chances = this.engine1.compute();
+    t.checkInexact(chances[0], third, 0.000001);
+    t.checkExpect(chances[1], -1.0);
+    t.checkInexact(chances[2], 2 * third, 0.000001);
+    t.checkInexact(chances[4], third, 0.000001);
+    t.checkInexact(chances[5], third, 0.000001);
+    t.checkInexact(chances[6], third, 0.000001);
+    t.checkExpect(this.engine1.safest(), 0);
+
+    this.board1.toggleFlag(2);
+    this.engine1.solver.flagged(2);
+    chances = this.engine1.compute();
+    t.checkExpect(chances[2], 1.0);
+    t.checkExpect(chances[0], 0.0);
+    t.checkExpect(chances[5], 0.5);
+    t.checkExpect(this.engine1.safest(), 0);
+
+    reset();
+    ProbabilityEngine none = new ProbabilityEngine(this.engine1.solver, 0);
+    chances = none.compute();
+    t.checkExpect(Double.isNaN(chances[0]), true);
+    t.checkExpect(Double.isNaN(chances[5]), true);
+    t.checkExpect(none.safest(), -1);
+  }
+
+  void testCache(Tester t) {
+    Board board = new Board(2, 7);
+    board.makeMine(0);
+    board.makeMine(6);
+    board.floodFill(7);
+    board.floodFill(13);
+    ProbabilityEngine engine = new ProbabilityEngine(new Solver(board), 3);
+    engine.compute();
+    t.checkExpect(engine.misses, 2);
+    t.checkExpect(engine.hits, 0);
+    engine.compute();
+    t.checkExpect(engine.misses, 2);
+    t.checkExpect(engine.hits, 2);
+    engine.solver.reveal(8);
+    engine.compute();
+    t.checkExpect(engine.misses, 3);
+    t.checkExpect(engine.hits, 3);
+    t.checkExpect(engine.cache.size(), 2);
+  }
+
+  void testExpectedMines(Tester t) {
+    MineWorld world = new MineWorld(30, 30, 150, new Random(3));
+    for (int i = 0; i < world.board.size(); i += 7) {
+      if (!world.board.isMine(i)) {
+        world.reveal(i / world.colMax, i % world.colMax);
+      }
+    }
+    ProbabilityEngine serial = new ProbabilityEngine(new Solver(world.board), 150);
+    ProbabilityEngine parallel = new ProbabilityEngine(new Solver(world.board), 150);
+    parallel.threads = 3;
+    double[] chances = serial.compute();
+    t.checkExpect(parallel.compute(), chances);
+    t.checkExpect(serial.misses > 1, true);
+
+    double mines = 0;
+    double most = 0;
+    for (double chance : chances) {
+      most = Math.max(most, chance);
+      if (chance >= 0) {
+        mines += chance;
+      }
+    }
+    t.checkExpect(most <= 1, true);
+    t.checkInexact(mines, 150.0, 0.000001);
+  }
+
+  void testProbabilities(Tester t) {
+    MineWorld world = new MineWorld(2, 7, new Random(1));
+    world.board.makeMine(2);
+    world.board.makeMine(6);
+    world.reveal(0, 1);
+    world.reveal(0, 3);
+    t.checkExpect(world.probabilities() == world.probabilities(), true);
+    t.checkExpect(world.probabilities().totalMines, 2);
+    t.checkExpect(world.probabilities().solver, world.solver());
+  }
+}
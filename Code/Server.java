@@ -0,0 +1,431 @@
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import tester.*;
+
+//Represents one request to a Session, completed with the game's status once the session has
+//carried it out
+class Command {
+  static final int REVEAL = 0;
+  static final int FLAG = 1;
+  static final int EVICT = 2;
+  static final int BATCH = 3;
+
+  int kind;
+  int row;
+  int col;
+  long submitted;
+  long finished;
+  MoveBatch batch;
+  CompletableFuture<GameStatus> done = new CompletableFuture<GameStatus>();
+
+  Command(int kind, int row, int col) {
+    this.kind = kind;
+    this.row = row;
+    this.col = col;
+    this.submitted = System.nanoTime();
+  }
+
+  //Returns how long this command took from being sent to being done
+  long latency() {
+    return this.finished - this.submitted;
+  }
+}
+
+//Represents one game hosted by a GameServer. Commands for it are queued in its mailbox and
+//carried out one at a time by whichever of the server's threads is draining it, so the game
+//needs no lock and only one thread touches it at once. While it is evicted, the game is only
+//kept as the bytes of its saved game, and is loaded again by the next command that needs it
+class Session implements Runnable {
+  //How many commands one drain carries out before giving other sessions a turn
+  static final int BATCH = 64;
+
+  int id;
+  GameServer server;
+  MineWorld world;
+  byte[] snapshot;
+  ConcurrentLinkedQueue<Command> mailbox = new ConcurrentLinkedQueue<Command>();
+  AtomicBoolean scheduled = new AtomicBoolean(false);
+  volatile long lastUsed;
+
+  Session(int id, GameServer server, MineWorld world) {
+    this.id = id;
+    this.server = server;
+    this.world = world;
+    this.lastUsed = System.nanoTime();
+  }
+
+  //Queues the given command, making sure a thread will drain this session
+  void send(Command command) {
+    this.mailbox.add(command);
+    this.schedule();
+  }
+
+  //Hands this session to the server's threads unless one of them has it already
+  void schedule() {
+    if (this.scheduled.compareAndSet(false, true)) {
+      this.server.pool.execute(this);
+    }
+  }
+
+  //Carries out up to BATCH queued commands, then lets go of this session, taking it back if
+  //more commands arrived in the meantime
+  public void run() {
+    for (int i = 0; i < BATCH; i++) {
+      Command command = this.mailbox.poll();
+      if (command == null) {
+        break;
+      }
+      this.carryOut(command);
+    }
+    this.scheduled.set(false);
+    if (!this.mailbox.isEmpty()) {
+      this.schedule();
+    }
+  }
+
+  //Carries out the given command and completes it
+  void carryOut(Command command) {
+    try {
+      if (command.kind == Command.EVICT) {
+        this.evict(command.submitted);
+        command.finished = System.nanoTime();
+        command.done.complete(this.world == null ? null : this.world.status());
+        return;
+      }
+      this.load();
+      if (command.kind == Command.REVEAL) {
+        this.world.reveal(command.row, command.col);
+      }
+      else if (command.kind == Command.BATCH) {
+        this.world.apply(command.batch);
+      }
+      else {
+        this.world.flag(command.row, command.col);
+      }
+      this.lastUsed = System.nanoTime();
+      command.finished = this.lastUsed;
+      command.done.complete(this.world.status());
+    }
+    catch (RuntimeException e) {
+      command.finished = System.nanoTime();
+      command.done.completeExceptionally(e);
+    }
+  }
+
+  //Keeps only the saved bytes of this session's game if it has not been used since the given
+  //time
+  void evict(long idleSince) {
+    if (this.world != null && this.lastUsed <= idleSince) {
+      this.snapshot = GameFile.encode(this.world).array();
+      this.world = null;
+      this.server.evictions.incrementAndGet();
+    }
+  }
+
+  //Loads this session's game from its saved bytes if it was evicted
+  void load() {
+    if (this.world == null) {
+      this.world = GameFile.decode(ByteBuffer.wrap(this.snapshot));
+      this.snapshot = null;
+      this.server.reloads.incrementAndGet();
+    }
+  }
+}
+
+//Hosts many independent games in one JVM. Each game is a Session with its own mailbox, and the
+//server's threads take turns draining whichever mailboxes have commands, so games never wait
+//on each other and no lock is shared between them. Game i is played from
+//BatchRunner.gameSeed(seed, i), so the same seed always deals the same games
+class GameServer {
+  long seed;
+  ExecutorService pool;
+  ConcurrentHashMap<Integer, Session> sessions = new ConcurrentHashMap<Integer, Session>();
+  AtomicInteger nextId = new AtomicInteger(0);
+  AtomicLong evictions = new AtomicLong(0);
+  AtomicLong reloads = new AtomicLong(0);
+
+  GameServer(long seed, int threads) {
+    this.seed = seed;
+    this.pool = Executors.newFixedThreadPool(threads);
+  }
+
+  //Starts a new game of the given size and returns its session id
+  int open(int rowMax, int colMax, int numMines) {
+    int id = this.nextId.getAndIncrement();
+    MineWorld world = new MineWorld(rowMax, colMax, numMines,
+        BatchRunner.gameSeed(this.seed, id));
+    this.sessions.put(id, new Session(id, this, world));
+    return id;
+  }
+
+  //Ends the game with the given session id
+  void close(int id) {
+    this.session(id);
+    this.sessions.remove(id);
+  }
+
+  //Returns the session with the given id
+  Session session(int id) {
+    Session session = this.sessions.get(id);
+    if (session == null) {
+      throw new IllegalArgumentException("No session " + id);
+    }
+    return session;
+  }
+
+  //Reveals the given tile in the game with the given session id
+  Command reveal(int id, int row, int col) {
+    return this.send(id, new Command(Command.REVEAL, row, col));
+  }
+
+  //Toggles the flag on the given tile in the game with the given session id
+  Command flag(int id, int row, int col) {
+    return this.send(id, new Command(Command.FLAG, row, col));
+  }
+
+  //Makes every move of the given batch at once in the game with the given session id
+  Command apply(int id, MoveBatch batch) {
+    Command command = new Command(Command.BATCH, 0, 0);
+    command.batch = batch;
+    return this.send(id, command);
+  }
+
+  //Sends the given command to the session with the given id and returns it
+  Command send(int id, Command command) {
+    this.session(id).send(command);
+    return command;
+  }
+
+  //Evicts every game that has not been used for the given number of nanoseconds, returning
+  //how many evictions were asked for. Each eviction waits its turn in the game's mailbox, and
+  //does nothing if a command before it used the game
+  int evictIdle(long idleNanos) {
+    long idleSince = System.nanoTime() - idleNanos;
+    int asked = 0;
+    for (Session session : this.sessions.values()) {
+      if (session.world != null && session.lastUsed <= idleSince) {
+        Command evict = new Command(Command.EVICT, 0, 0);
+        evict.submitted = idleSince;
+        session.send(evict);
+        asked += 1;
+      }
+    }
+    return asked;
+  }
+
+  //Stops the server's threads once the commands already queued are done
+  void shutdown() {
+    this.pool.shutdown();
+  }
+
+  //Waits for the given command and returns the game's status after it
+  static GameStatus await(Command command) {
+    try {
+      return command.done.get();
+    }
+    catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new RuntimeException(e.getCause());
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    }
+  }
+}
+
+//Represents the totals from a LoadGenerator run
+class LoadReport {
+  long commands = 0;
+  long nanos = 0;
+  Histogram latency = new Histogram();
+
+  //Returns how many commands were carried out per second
+  long perSecond() {
+    return this.nanos == 0 ? 0 : this.commands * 1000000000L / this.nanos;
+  }
+
+  //Returns a one line summary of these totals
+  String report() {
+    return "commands: " + this.commands + ", per second: " + this.perSecond()
+        + ", p50: " + (this.latency.percentile(0.5) / 1000) + " us"
+        + ", p99: " + (this.latency.percentile(0.99) / 1000) + " us"
+        + ", time: " + (this.nanos / 1000000) + " ms";
+  }
+}
+
+//Plays many games on a GameServer at once: every round sends one random reveal or flag to each
+//of its sessions and waits for them all, so there are as many commands in flight as sessions
+class LoadGenerator {
+  GameServer server;
+  int[] ids;
+  Random[] rands;
+  int rowMax;
+  int colMax;
+
+  //Opens the given number of games of the given size on the given server
+  LoadGenerator(GameServer server, int sessions, int rowMax, int colMax, int numMines) {
+    this.server = server;
+    this.ids = new int[sessions];
+    this.rands = new Random[sessions];
+    this.rowMax = rowMax;
+    this.colMax = colMax;
+    for (int i = 0; i < sessions; i++) {
+      this.ids[i] = server.open(rowMax, colMax, numMines);
+      this.rands[i] = new Random(BatchRunner.gameSeed(server.seed + 1, this.ids[i]));
+    }
+  }
+
+  //Plays the given number of rounds, a fifth of whose commands are flags
+  LoadReport run(int rounds) {
+    LoadReport report = new LoadReport();
+    Command[] inFlight = new Command[this.ids.length];
+    long start = System.nanoTime();
+    for (int round = 0; round < rounds; round++) {
+      for (int i = 0; i < this.ids.length; i++) {
+        Random rand = this.rands[i];
+        int row = rand.nextInt(this.rowMax);
+        int col = rand.nextInt(this.colMax);
+        if (rand.nextInt(5) == 0) {
+          inFlight[i] = this.server.flag(this.ids[i], row, col);
+        }
+        else {
+          inFlight[i] = this.server.reveal(this.ids[i], row, col);
+        }
+      }
+      for (Command command : inFlight) {
+        GameServer.await(command);
+        report.latency.record(command.latency());
+      }
+      report.commands += inFlight.length;
+    }
+    report.nanos = System.nanoTime() - start;
+    return report;
+  }
+
+  //Plays the given number of rounds on the given number of sessions of beginner games, then
+  //evicts them all and plays one more round to load them again:
+  //sessions rounds threads seed
+  public static void main(String[] args) {
+    int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+    int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+    int threads = args.length > 2 ? Integer.parseInt(args[2])
+        : Runtime.getRuntime().availableProcessors();
+    long seed = args.length > 3 ? Long.parseLong(args[3]) : 0;
+    GameServer server = new GameServer(seed, threads);
+    try {
+      LoadGenerator load = new LoadGenerator(server, sessions, 9, 9, 10);
+      System.out.println(load.run(rounds).report());
+      server.evictIdle(0);
+      System.out.println(load.run(1).report() + ", evictions: " + server.evictions
+          + ", reloads: " + server.reloads);
+    }
+    finally {
+      server.shutdown();
+    }
+  }
+}
+
+class ExamplesServer {
+  GameServer server;
+
+  void reset() {
+    this.server = new GameServer(7, 4);
+  }
+
+  void testCommands(Tester t) {
+    reset();
+    int a = this.server.open(9, 9, 10);
+    int b = this.server.open(9, 9, 10);
+    t.checkExpect(a, 0);
+    t.checkExpect(b, 1);
+    MineWorld same = new MineWorld(9, 9, 10, BatchRunner.gameSeed(7, 1));
+    t.checkExpect(this.server.session(b).world.board, same.board);
+
+    int safe = 0;
+    while (same.board.isMine(safe)) {
+      safe += 1;
+    }
+    Command reveal = this.server.reveal(b, safe / 9, safe % 9);
+    Command flag = this.server.flag(b, 8, 8);
+    t.checkExpect(GameServer.await(flag), GameStatus.PLAYING);
+    t.checkExpect(reveal.done.isDone(), true);
+    t.checkExpect(reveal.latency() >= 0, true);
+    same.reveal(safe / 9, safe % 9);
+    same.flag(8, 8);
+    t.checkExpect(this.server.session(b).world.board.state, same.board.state);
+    t.checkExpect(this.server.session(a).world.moves, 0);
+
+    Command off = this.server.reveal(b, 9, 0);
+    t.checkException(new IllegalArgumentException("Tile is not on the board"),
+        this.server, "await", off);
+    t.checkExpect(this.server.session(b).world.moves, 2);
+    this.server.close(a);
+    t.checkException(new IllegalArgumentException("No session 0"), this.server, "reveal",
+        a, 0, 0);
+    t.checkException(new IllegalArgumentException("No session 5"), this.server, "close", 5);
+
+    Command batch = this.server.apply(b, new MoveBatch().flag(8, 8).flag(0, 8));
+    t.checkExpect(GameServer.await(batch), GameStatus.PLAYING);
+    same.flag(8, 8);
+    same.flag(0, 8);
+    t.checkExpect(this.server.session(b).world.board.state, same.board.state);
+    t.checkExpect(this.server.session(b).world.moves, 4);
+    this.server.shutdown();
+  }
+
+  void testEviction(Tester t) {
+    reset();
+    int id = this.server.open(16, 30, 99);
+    GameServer.await(this.server.reveal(id, 0, 0));
+    GameServer.await(this.server.flag(id, 5, 5));
+    Session session = this.server.session(id);
+    byte[] state = session.world.board.state.clone();
+
+    t.checkExpect(this.server.evictIdle(60000000000L), 0);
+    t.checkExpect(this.server.evictIdle(0), 1);
+    Command again = new Command(Command.EVICT, 0, 0);
+    this.server.send(id, again);
+    t.checkExpect(GameServer.await(again), null);
+    t.checkExpect(session.world, null);
+    t.checkExpect(session.snapshot.length < state.length, true);
+    t.checkExpect(this.server.evictions.get(), 1L);
+
+    t.checkExpect(this.server.evictIdle(0), 0);
+    GameServer.await(this.server.flag(id, 5, 5));
+    t.checkExpect(this.server.reloads.get(), 1L);
+    t.checkExpect(session.snapshot, null);
+    t.checkExpect(session.world.board.isFlagged(5 * 30 + 5), false);
+    session.world.board.toggleFlag(5 * 30 + 5);
+    t.checkExpect(session.world.board.state, state);
+    t.checkExpect(session.world.moves, 3);
+    this.server.shutdown();
+  }
+
+  void testLoad(Tester t) {
+    reset();
+    LoadGenerator load = new LoadGenerator(this.server, 200, 9, 9, 10);
+    LoadReport report = load.run(20);
+    t.checkExpect(report.commands, 4000L);
+    t.checkExpect(report.latency.count, 4000L);
+    t.checkExpect(report.perSecond() > 0, true);
+    int moves = 0;
+    for (Session session : this.server.sessions.values()) {
+      moves += session.world.moves;
+    }
+    t.checkExpect(moves, 4000);
+    this.server.shutdown();
+  }
+}
@@ -0,0 +1,300 @@
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import tester.*;
+
+//Represents a way of playing Minesweeper without a window
+interface IStrategy {
+
+  //Makes exactly one move in the given world, using rand for any random choices
+  void move(MineWorld world, Random rand);
+
+}
+
+//Plays by revealing a random tile that is neither revealed nor flagged
+class RandomStrategy implements IStrategy {
+
+  //Reveals a random hidden, unflagged tile of the given world
+  public void move(MineWorld world, Random rand) {
+    int idx = rand.nextInt(world.board.size());
+    while (world.board.isRevealed(idx) || world.board.isFlagged(idx)) {
+      idx = rand.nextInt(world.board.size());
+    }
+    world.reveal(idx / world.colMax, idx % world.colMax);
+  }
+
+}
+
+//Represents the totals from playing a number of games of Minesweeper
+class BatchResult {
+  int games = 0;
+  int wins = 0;
+  int losses = 0;
+  long moves = 0;
+  long nanos = 0;
+
+  //Adds the outcome of one finished game to these totals
+  void record(MineWorld world) {
+    this.games += 1;
+    this.moves += world.moves;
+    if (world.status() == GameStatus.WON) {
+      this.wins += 1;
+    }
+    else {
+      this.losses += 1;
+    }
+  }
+
+  //Adds the totals of another batch of games to these totals
+  void add(BatchResult other) {
+    this.games += other.games;
+    this.wins += other.wins;
+    this.losses += other.losses;
+    this.moves += other.moves;
+  }
+
+  //Returns a one line summary of these totals
+  String report() {
+    return "games: " + this.games + ", wins: " + this.wins + ", losses: " + this.losses
+        + ", moves: " + this.moves + ", time: " + (this.nanos / 1000000) + " ms";
+  }
+}
+
+//Plays many seeded games of one size of Minesweeper with a strategy, without a window
+class BatchRunner {
+  int rowMax;
+  int colMax;
+  int numMines;
+  IStrategy strategy;
+
+  BatchRunner(int rowMax, int colMax, int numMines, IStrategy strategy) {
+    this.rowMax = rowMax;
+    this.colMax = colMax;
+    this.numMines = numMines;
+    this.strategy = strategy;
+  }
+
+  //Plays the given number of games, where game i is played from gameSeed(seed, i)
+  BatchResult run(long seed, int games) {
+    long start = System.nanoTime();
+    BatchResult result = this.runShard(seed, games, 0, 1);
+    result.nanos = System.nanoTime() - start;
+    return result;
+  }
+
+  //Plays the same games as run, split across the given number of threads. Every game is
+  //played from the same seed whatever the number of threads, and each thread keeps its own
+  //totals until they are added together at the end, so the totals only differ in time taken
+  BatchResult runParallel(long seed, int games, int threads) {
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    long start = System.nanoTime();
+    try {
+      ArrayList<Future<BatchResult>> shards = new ArrayList<Future<BatchResult>>();
+      for (int i = 0; i < threads; i++) {
+        shards.add(pool.submit(new BatchShard(this, seed, games, i, threads)));
+      }
+
+      BatchResult result = new BatchResult();
+      for (Future<BatchResult> shard : shards) {
+        result.add(shard.get());
+      }
+      result.nanos = System.nanoTime() - start;
+      return result;
+    }
+    catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new RuntimeException(e.getCause());
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    }
+    finally {
+      pool.shutdownNow();
+    }
+  }
+
+  //Plays every step-th game of a batch of the given size, starting from game first
+  BatchResult runShard(long seed, int games, int first, int step) {
+    BatchResult result = new BatchResult();
+    for (int i = first; i < games; i += step) {
+      result.record(this.play(BatchRunner.gameSeed(seed, i)));
+    }
+    return result;
+  }
+
+  //Plays one game to the end from the given seed and returns the finished world
+  MineWorld play(long seed) {
+    Random rand = new Random(seed);
+    MineWorld world = new MineWorld(this.rowMax, this.colMax, this.numMines, rand);
+    while (world.status() == GameStatus.PLAYING) {
+      int moves = world.moves;
+      this.strategy.move(world, rand);
+      if (world.moves == moves) {
+        throw new IllegalStateException("Strategy did not make a move");
+      }
+    }
+    return world;
+  }
+
+  //Returns the seed of the given game in a batch started from seed, mixing the bits so that
+  //neighboring games do not get similar seeds
+  static long gameSeed(long seed, int game) {
+    long z = seed + ((game + 1) * 0x9E3779B97F4A7C15L);
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
+  //Plays a batch of games with random moves and prints the totals. Takes the rows, columns,
+  //mines, number of games and seed, in that order, and optionally a number of threads
+  public static void main(String[] args) {
+    BatchRunner runner = new BatchRunner(Integer.parseInt(args[0]), Integer.parseInt(args[1]),
+        Integer.parseInt(args[2]), new RandomStrategy());
+    long seed = Long.parseLong(args[4]);
+    int games = Integer.parseInt(args[3]);
+    if (args.length > 5) {
+      System.out.println(runner.runParallel(seed, games, Integer.parseInt(args[5])).report());
+    }
+    else {
+      System.out.println(runner.run(seed, games).report());
+    }
+  }
+}
+
+//Represents one thread's share of a parallel batch of games
+class BatchShard implements Callable<BatchResult> {
+  BatchRunner runner;
+  long seed;
+  int games;
+  int first;
+  int step;
+
+  BatchShard(BatchRunner runner, long seed, int games, int first, int step) {
+    this.runner = runner;
+    this.seed = seed;
+    this.games = games;
+    this.first = first;
+    this.step = step;
+  }
+
+  //Plays this share of the games
+  public BatchResult call() {
+    return this.runner.runShard(this.seed, this.games, this.first, this.step);
+  }
+}
+
+//Reveals tiles in order, for testing
+class InOrderStrategy implements IStrategy {
+
+  //Reveals the first tile that is not revealed yet
+  public void move(MineWorld world, Random rand) {
+    int idx = 0;
+    while (world.board.isRevealed(idx)) {
+      idx += 1;
+    }
+    world.reveal(idx / world.colMax, idx % world.colMax);
+  }
+}
+
+//Makes no moves, for testing
+class IdleStrategy implements IStrategy {
+
+  //Does nothing
+  public void move(MineWorld world, Random rand) {
+    //Does not move so that the runner's check for stuck strategies can be tested
+  }
+}
+
+class ExamplesSimulation {
+  BatchRunner runner1;
+
+  void reset() {
+    this.runner1 = new BatchRunner(9, 9, 10, new RandomStrategy());
+  }
+
+  void testRandomStrategy(Tester t) {
+    MineWorld world = new MineWorld(3, 3, 8, new Random(3));
+    new RandomStrategy().move(world, new Random(3));
+    t.checkExpect(world.moves, 1);
+    t.checkExpect(world.status() != GameStatus.PLAYING, true);
+  }
+
+  void testRecord(Tester t) {
+    BatchResult result = new BatchResult();
+    MineWorld won = new MineWorld(2, 2, 0, new Random(1));
+    won.reveal(0, 0);
+    MineWorld lost = new MineWorld(2, 2, 4, new Random(1));
+    lost.flag(0, 0);
+    lost.reveal(1, 1);
+    result.record(won);
+    result.record(lost);
+    t.checkExpect(result.games, 2);
+    t.checkExpect(result.wins, 1);
+    t.checkExpect(result.losses, 1);
+    t.checkExpect(result.moves, 3L);
+    t.checkExpect(result.report(), "games: 2, wins: 1, losses: 1, moves: 3, time: 0 ms");
+  }
+
+  void testPlay(Tester t) {
+    reset();
+    MineWorld world = this.runner1.play(7);
+    t.checkExpect(world.status() != GameStatus.PLAYING, true);
+    t.checkExpect(world.board, this.runner1.play(7).board);
+    t.checkExpect(new BatchRunner(4, 4, 0, new InOrderStrategy()).play(1).status(),
+        GameStatus.WON);
+    t.checkException(new IllegalStateException("Strategy did not make a move"),
+        new BatchRunner(4, 4, 1, new IdleStrategy()), "play", 1L);
+  }
+
+  void testRun(Tester t) {
+    reset();
+    BatchResult result = this.runner1.run(42, 200);
+    BatchResult again = this.runner1.run(42, 200);
+    t.checkExpect(result.games, 200);
+    t.checkExpect(result.wins + result.losses, 200);
+    t.checkExpect(result.wins, again.wins);
+    t.checkExpect(result.moves, again.moves);
+    t.checkExpect(result.moves >= 200, true);
+  }
+
+  void testRunParallel(Tester t) {
+    reset();
+    BatchResult serial = this.runner1.run(42, 300);
+    BatchResult two = this.runner1.runParallel(42, 300, 2);
+    BatchResult seven = this.runner1.runParallel(42, 300, 7);
+    t.checkExpect(two.games, 300);
+    t.checkExpect(two.wins, serial.wins);
+    t.checkExpect(two.moves, serial.moves);
+    t.checkExpect(seven.wins, serial.wins);
+    t.checkExpect(seven.losses, serial.losses);
+    t.checkExpect(seven.moves, serial.moves);
+    t.checkException(new IllegalStateException("Strategy did not make a move"),
+        new BatchRunner(4, 4, 1, new IdleStrategy()), "runParallel", 1L, 4, 2);
+  }
+
+  void testRunShard(Tester t) {
+    reset();
+    BatchResult evens = this.runner1.runShard(42, 10, 0, 2);
+    BatchResult odds = this.runner1.runShard(42, 10, 1, 2);
+    t.checkExpect(evens.games, 5);
+    evens.add(odds);
+    BatchResult all = this.runner1.run(42, 10);
+    t.checkExpect(evens.games, 10);
+    t.checkExpect(evens.wins, all.wins);
+    t.checkExpect(evens.moves, all.moves);
+  }
+
+  void testGameSeed(Tester t) {
+    t.checkExpect(BatchRunner.gameSeed(42, 3), BatchRunner.gameSeed(42, 3));
+    t.checkExpect(BatchRunner.gameSeed(42, 3) != BatchRunner.gameSeed(42, 4), true);
+    t.checkExpect(BatchRunner.gameSeed(42, 3) != BatchRunner.gameSeed(43, 3), true);
+  }
+}
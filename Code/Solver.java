@@ -0,0 +1,843 @@
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Random;
+
+import tester.*;
+
+//Works out which hidden tiles of a Board are certainly safe or certainly mines, using only what
+//a player can see: the numbers on revealed tiles and the flags, which are taken to be mines.
+//Only the revealed tiles around something that changed are looked at again, so the work for
+//each move grows with what that move revealed rather than with the size of the Board
+class Solver {
+  static final byte SAFE = 1;
+  static final byte MINE = 2;
+  static final byte PENDING = 4;
+  static final byte FRONTIER = 8;
+
+  //Components of the frontier with more tiles than this are not enumerated
+  static final int MAX_ENUMERATION = 24;
+
+  Board board;
+  byte[] marks;
+  int[] pending = new int[16];
+  int pendingCount = 0;
+  int[] safe = new int[16];
+  int safeCount = 0;
+  int[] frontier = new int[16];
+  int frontierCount = 0;
+  int[] around = new int[8];
+  int[] unknownA = new int[8];
+  int[] unknownB = new int[8];
+  int[] varOf;
+
+  //Creates a Solver for the given Board, starting from every tile already revealed on it
+  Solver(Board board) {
+    this.board = board;
+    this.marks = new byte[board.size()];
+    this.queueRevealed();
+  }
+
+  //Queues every tile revealed on this Solver's Board
+  void queueRevealed() {
+    for (int i = 0; i < this.board.size(); i++) {
+      if (this.board.isRevealed(i)) {
+        this.queue(i);
+      }
+    }
+  }
+
+  //Forgets everything learned, for a Board on which nothing has been revealed yet
+  void reset() {
+    Arrays.fill(this.marks, (byte) 0);
+    this.pendingCount = 0;
+    this.safeCount = 0;
+    this.frontierCount = 0;
+  }
+
+  //Returns whether the tile at idx is known to be safe
+  boolean isSafe(int idx) {
+    return (this.marks[idx] & SAFE) != 0;
+  }
+
+  //Returns whether the tile at idx is known to be a mine
+  boolean isMine(int idx) {
+    return (this.marks[idx] & MINE) != 0;
+  }
+
+  //Takes note of the given number of newly revealed tiles, which changes what the revealed
+  //tiles around them can tell
+  void revealed(int[] tiles, int count) {
+    for (int i = 0; i < count; i++) {
+      this.queue(tiles[i]);
+      this.queueAround(tiles[i]);
+    }
+  }
+
+  //Reveals the tile at idx of this Solver's Board the way a flood fill does and takes note of
+  //what it revealed, returning how many tiles that was
+  int reveal(int idx) {
+    int count = this.board.floodFill(idx);
+    this.revealed(this.board.revealed, count);
+    return count;
+  }
+
+  //Takes note of the flag on the tile at idx having been toggled. Marks worked out while the
+  //flag was set may rest on it being a mine, so taking a flag away starts over from the
+  //revealed tiles
+  void flagged(int idx) {
+    if (this.board.isFlagged(idx)) {
+      this.queueAround(idx);
+    }
+    else {
+      this.reset();
+      this.queueRevealed();
+    }
+  }
+
+  //Returns a hidden tile that is certainly safe to reveal, working one out if none is known
+  //yet, or -1 if there is no such tile
+  int suggest() {
+    this.propagate();
+    int next = this.nextSafe();
+    if (next < 0 && this.enumerate()) {
+      this.propagate();
+      next = this.nextSafe();
+    }
+    return next;
+  }
+
+  //Returns a known safe tile that has not been revealed yet, or -1 if there is none
+  int nextSafe() {
+    while (this.safeCount > 0) {
+      int next = this.safe[this.safeCount - 1];
+      if (!this.board.isRevealed(next)) {
+        return next;
+      }
+      this.safeCount -= 1;
+    }
+    return -1;
+  }
+
+  //Adds the revealed tile at idx to the tiles waiting to be looked at
+  void queue(int idx) {
+    if ((this.marks[idx] & PENDING) != 0 || !this.board.isRevealed(idx)
+        || this.board.isMine(idx)) {
+      return;
+    }
+    this.marks[idx] |= PENDING;
+    this.pending = Solver.push(this.pending, this.pendingCount, idx);
+    this.pendingCount += 1;
+    if ((this.marks[idx] & FRONTIER) == 0) {
+      this.marks[idx] |= FRONTIER;
+      this.frontier = Solver.push(this.frontier, this.frontierCount, idx);
+      this.frontierCount += 1;
+    }
+  }
+
+  //Queues the revealed tiles around idx
+  void queueAround(int idx) {
+    int count = this.board.neighbors(idx, this.around);
+    for (int i = 0; i < count; i++) {
+      this.queue(this.around[i]);
+    }
+  }
+
+  //Looks at every waiting tile until nothing more can be learned, returning whether anything
+  //was learned
+  boolean propagate() {
+    boolean learned = false;
+    while (this.pendingCount > 0) {
+      this.pendingCount -= 1;
+      int next = this.pending[this.pendingCount];
+      this.marks[next] &= ~PENDING;
+      learned |= this.examine(next);
+    }
+    return learned;
+  }
+
+  //Applies the single tile rule to the revealed tile at idx, and the subset rule to it and
+  //each revealed tile near it, returning whether anything was learned
+  boolean examine(int idx) {
+    int count = this.unknowns(idx, this.unknownA);
+    if (count == 0) {
+      return false;
+    }
+    int remaining = this.remaining(idx);
+    if (remaining == 0) {
+      return this.learnAll(this.unknownA, count, SAFE);
+    }
+    if (remaining == count) {
+      return this.learnAll(this.unknownA, count, MINE);
+    }
+
+    int row = idx / this.board.colMax;
+    int col = idx % this.board.colMax;
+    for (int r = Math.max(0, row - 2); r <= Math.min(this.board.rowMax - 1, row + 2); r++) {
+      for (int c = Math.max(0, col - 2); c <= Math.min(this.board.colMax - 1, col + 2); c++) {
+        int other = (r * this.board.colMax) + c;
+        if (other == idx || !this.board.isRevealed(other) || this.board.isMine(other)) {
+          continue;
+        }
+        int otherCount = this.unknowns(other, this.unknownB);
+        if (otherCount == 0 || otherCount == count) {
+          continue;
+        }
+        if (otherCount < count
+            && Solver.contains(this.unknownA, count, this.unknownB, otherCount)) {
+          if (this.learnDifference(this.unknownA, count, this.unknownB, otherCount,
+              remaining - this.remaining(other))) {
+            return true;
+          }
+        }
+        else if (otherCount > count
+            && Solver.contains(this.unknownB, otherCount, this.unknownA, count)) {
+          if (this.learnDifference(this.unknownB, otherCount, this.unknownA, count,
+              this.remaining(other) - remaining)) {
+            return true;
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  //Given that the tiles in small are a subset of the tiles in big, and that the tiles of big
+  //not in small hold the given number of mines, learns about them if that number is 0 or all
+  //of them, returning whether anything was learned
+  boolean learnDifference(int[] big, int bigCount, int[] small, int smallCount, int mines) {
+    int extra = bigCount - smallCount;
+    if (mines != 0 && mines != extra) {
+      return false;
+    }
+    boolean learned = false;
+    for (int i = 0; i < bigCount; i++) {
+      if (!Solver.contains(small, smallCount, big[i])) {
+        learned |= this.learn(big[i], mines == 0 ? SAFE : MINE);
+      }
+    }
+    return learned;
+  }
+
+  //Learns the same thing about the given number of tiles, returning whether anything was new
+  boolean learnAll(int[] tiles, int count, byte what) {
+    boolean learned = false;
+    for (int i = 0; i < count; i++) {
+      learned |= this.learn(tiles[i], what);
+    }
+    return learned;
+  }
+
+  //Records that the tile at idx is safe or a mine, and queues the revealed tiles around it,
+  //returning whether this was new
+  boolean learn(int idx, byte what) {
+    if ((this.marks[idx] & (SAFE | MINE)) != 0) {
+      return false;
+    }
+    this.marks[idx] |= what;
+    if (what == SAFE) {
+      this.safe = Solver.push(this.safe, this.safeCount, idx);
+      this.safeCount += 1;
+    }
+    this.queueAround(idx);
+    return true;
+  }
+
+  //Writes the hidden tiles around idx that are not flagged or known into out, returning how
+  //many there are
+  int unknowns(int idx, int[] out) {
+    int count = this.board.neighbors(idx, this.around);
+    int unknown = 0;
+    for (int i = 0; i < count; i++) {
+      int n = this.around[i];
+      if (!this.board.isRevealed(n) && !this.board.isFlagged(n)
+          && (this.marks[n] & (SAFE | MINE)) == 0) {
+        out[unknown] = n;
+        unknown += 1;
+      }
+    }
+    return unknown;
+  }
+
+  //Returns how many of the mines around the revealed tile at idx are not flagged or known
+  int remaining(int idx) {
+    int count = this.board.neighbors(idx, this.around);
+    int mines = this.board.neighborMines[idx];
+    for (int i = 0; i < count; i++) {
+      int n = this.around[i];
+      if (!this.board.isRevealed(n)
+          && (this.board.isFlagged(n) || (this.marks[n] & MINE) != 0)) {
+        mines -= 1;
+      }
+    }
+    return mines;
+  }
+
+  //Tries every arrangement of mines on each small group of frontier tiles that share revealed
+  //neighbors, learning about tiles that are safe or mines in all of them. Returns whether
+  //anything was learned
+  boolean enumerate() {
+    Frontier parts = this.frontier();
+    boolean learned = false;
+    for (int i = 0; i < parts.componentCount(); i++) {
+      if (parts.componentSize(i) > MAX_ENUMERATION) {
+        continue;
+      }
+      long[] mineCounts = new long[parts.componentSize(i)];
+      long solutions = parts.enumerate(i, mineCounts, null);
+      if (solutions == 0) {
+        continue;
+      }
+      for (int v = 0; v < mineCounts.length; v++) {
+        int tile = parts.tiles[parts.componentVars(i)[v]];
+        if (mineCounts[v] == 0) {
+          learned |= this.learn(tile, SAFE);
+        }
+        else if (mineCounts[v] == solutions) {
+          learned |= this.learn(tile, MINE);
+        }
+      }
+    }
+    return learned;
+  }
+
+  //Returns the current frontier: every unknown tile next to a revealed tile, with the revealed
+  //tiles as constraints on them. Revealed tiles with nothing unknown around them are dropped
+  //from the list of frontier tiles for good
+  Frontier frontier() {
+    if (this.varOf == null) {
+      this.varOf = new int[this.board.size()];
+      Arrays.fill(this.varOf, -1);
+    }
+
+    Frontier parts = new Frontier();
+    int kept = 0;
+    for (int i = 0; i < this.frontierCount; i++) {
+      int idx = this.frontier[i];
+      int count = this.unknowns(idx, this.unknownA);
+      if (count == 0) {
+        this.marks[idx] &= ~FRONTIER;
+        continue;
+      }
+      this.frontier[kept] = idx;
+      kept += 1;
+
+      for (int j = 0; j < count; j++) {
+        if (this.varOf[this.unknownA[j]] < 0) {
+          this.varOf[this.unknownA[j]] = parts.addTile(this.unknownA[j]);
+        }
+        this.unknownA[j] = this.varOf[this.unknownA[j]];
+      }
+      parts.addConstraint(idx, this.unknownA, count, this.remaining(idx));
+    }
+    this.frontierCount = kept;
+
+    for (int i = 0; i < parts.tileCount; i++) {
+      this.varOf[parts.tiles[i]] = -1;
+    }
+    parts.group();
+    return parts;
+  }
+
+  //Adds value to the end of the first count items of list, returning the list, which is
+  //replaced by a larger copy if it is full
+  static int[] push(int[] list, int count, int value) {
+    if (count == list.length) {
+      list = Arrays.copyOf(list, count * 2);
+    }
+    list[count] = value;
+    return list;
+  }
+
+  //Returns whether the first count items of list include value
+  static boolean contains(int[] list, int count, int value) {
+    for (int i = 0; i < count; i++) {
+      if (list[i] == value) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  //Returns whether the first bigCount items of big include all of the first smallCount items
+  //of small
+  static boolean contains(int[] big, int bigCount, int[] small, int smallCount) {
+    for (int i = 0; i < smallCount; i++) {
+      if (!Solver.contains(big, bigCount, small[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
+
+//Represents the unknown tiles next to revealed tiles, numbered from 0, with each revealed tile
+//as a constraint on how many mines are among the unknown tiles around it. Tiles that share a
+//constraint, directly or through others, are grouped into components
+class Frontier {
+  int[] tiles = new int[16];
+  int tileCount = 0;
+  int[] consStart = new int[17];
+  int[] consVars = new int[64];
+  int[] consMines = new int[16];
+  int[] consTiles = new int[16];
+  int consCount = 0;
+  int[] parent;
+  int[] compOf;
+  int[] compPos;
+  int[][] compVars;
+  int[][] compCons;
+
+  //Adds an unknown tile, returning its number
+  int addTile(int tile) {
+    this.tiles = Solver.push(this.tiles, this.tileCount, tile);
+    this.tileCount += 1;
+    return this.tileCount - 1;
+  }
+
+  //Adds a constraint from the revealed tile at idx that the first count of the given tile
+  //numbers hold the given number of mines
+  void addConstraint(int idx, int[] vars, int count, int mines) {
+    for (int i = 0; i < count; i++) {
+      this.consVars = Solver.push(this.consVars, this.consStart[this.consCount] + i, vars[i]);
+    }
+    this.consMines = Solver.push(this.consMines, this.consCount, mines);
+    this.consTiles = Solver.push(this.consTiles, this.consCount, idx);
+    this.consCount += 1;
+    this.consStart = Solver.push(this.consStart, this.consCount,
+        this.consStart[this.consCount - 1] + count);
+  }
+
+  //Splits the tiles and constraints into components
+  void group() {
+    this.parent = new int[this.tileCount];
+    for (int i = 0; i < this.tileCount; i++) {
+      this.parent[i] = i;
+    }
+    for (int c = 0; c < this.consCount; c++) {
+      for (int i = this.consStart[c] + 1; i < this.consStart[c + 1]; i++) {
+        int a = this.find(this.consVars[this.consStart[c]]);
+        int b = this.find(this.consVars[i]);
+        this.parent[Math.max(a, b)] = Math.min(a, b);
+      }
+    }
+
+    this.compOf = new int[this.tileCount];
+    this.compPos = new int[this.tileCount];
+    int[] compSize = new int[this.tileCount];
+    int comps = 0;
+    for (int i = 0; i < this.tileCount; i++) {
+      int root = this.find(i);
+      this.compOf[i] = root == i ? comps++ : this.compOf[root];
+      compSize[this.compOf[i]] += 1;
+    }
+
+    int[] consSize = new int[comps];
+    for (int c = 0; c < this.consCount; c++) {
+      consSize[this.compOf[this.consVars[this.consStart[c]]]] += 1;
+    }
+    this.compVars = new int[comps][];
+    this.compCons = new int[comps][];
+    for (int i = 0; i < comps; i++) {
+      this.compVars[i] = new int[compSize[i]];
+      this.compCons[i] = new int[consSize[i]];
+      compSize[i] = 0;
+      consSize[i] = 0;
+    }
+    for (int i = 0; i < this.tileCount; i++) {
+      int comp = this.compOf[i];
+      this.compVars[comp][compSize[comp]] = i;
+      this.compPos[i] = compSize[comp];
+      compSize[comp] += 1;
+    }
+    for (int c = 0; c < this.consCount; c++) {
+      int comp = this.compOf[this.consVars[this.consStart[c]]];
+      this.compCons[comp][consSize[comp]] = c;
+      consSize[comp] += 1;
+    }
+  }
+
+  //Returns the representative tile number of the component holding tile number v
+  int find(int v) {
+    while (this.parent[v] != v) {
+      this.parent[v] = this.parent[this.parent[v]];
+      v = this.parent[v];
+    }
+    return v;
+  }
+
+  //Returns the number of components
+  int componentCount() {
+    return this.compVars.length;
+  }
+
+  //Returns the number of tiles in the given component
+  int componentSize(int comp) {
+    return this.compVars[comp].length;
+  }
+
+  //Returns the tile numbers in the given component
+  int[] componentVars(int comp) {
+    return this.compVars[comp];
+  }
+
+  //Tries every arrangement of mines on the tiles of the given component that satisfies its
+  //constraints, returning how many there are. For each tile, in the order of componentVars,
+  //adds to mineCounts the number of arrangements in which it is a mine. If byMines is not
+  //null, also adds to byMines[k] the number of arrangements with k mines
+  long enumerate(int comp, long[] mineCounts, long[] byMines) {
+    int[] cons = this.compCons[comp];
+    int[] open = new int[cons.length];
+    int[] need = new int[cons.length];
+    for (int c = 0; c < cons.length; c++) {
+      need[c] = this.consMines[cons[c]];
+      open[c] = this.consStart[cons[c] + 1] - this.consStart[cons[c]];
+    }
+    return this.search(0, 0, new boolean[this.compVars[comp].length],
+        this.varConstraints(comp), open, need, mineCounts, byMines);
+  }
+
+  //Returns, for each tile of the given component in the order of componentVars, the
+  //positions in compCons of the constraints on it
+  int[][] varConstraints(int comp) {
+    int[] cons = this.compCons[comp];
+    int[][] varCons = new int[this.compVars[comp].length][];
+    int[] varConsCount = new int[varCons.length];
+    for (int c = 0; c < cons.length; c++) {
+      for (int i = this.consStart[cons[c]]; i < this.consStart[cons[c] + 1]; i++) {
+        varConsCount[this.compPos[this.consVars[i]]] += 1;
+      }
+    }
+    for (int v = 0; v < varCons.length; v++) {
+      varCons[v] = new int[varConsCount[v]];
+      varConsCount[v] = 0;
+    }
+    for (int c = 0; c < cons.length; c++) {
+      for (int i = this.consStart[cons[c]]; i < this.consStart[cons[c] + 1]; i++) {
+        int v = this.compPos[this.consVars[i]];
+        varCons[v][varConsCount[v]] = c;
+        varConsCount[v] += 1;
+      }
+    }
+    return varCons;
+  }
+
+  //Counts the arrangements of mines on the tiles of the given component that satisfy its
+  //constraints, by how many mines they have and by which tiles are mines. The tiles are
+  //assigned in breadth first order, and partial arrangements that leave every constraint
+  //needing the same number of mines are merged, so the work grows with the number of such
+  //states rather than with the number of arrangements. Counts are scaled down whenever they
+  //grow large, which keeps their ratios
+  ComponentCounts count(int comp) {
+    int[] vars = this.compVars[comp];
+    int[] cons = this.compCons[comp];
+    int[][] varCons = this.varConstraints(comp);
+    int n = vars.length;
+
+    int[] order = new int[n];
+    boolean[] seen = new boolean[n];
+    int ordered = 0;
+    for (int start = 0; start < n; start++) {
+      if (seen[start]) {
+        continue;
+      }
+      seen[start] = true;
+      order[ordered] = start;
+      ordered += 1;
+      for (int next = ordered - 1; next < ordered; next++) {
+        for (int c : varCons[order[next]]) {
+          for (int i = this.consStart[cons[c]]; i < this.consStart[cons[c] + 1]; i++) {
+            int u = this.compPos[this.consVars[i]];
+            if (!seen[u]) {
+              seen[u] = true;
+              order[ordered] = u;
+              ordered += 1;
+            }
+          }
+        }
+      }
+    }
+
+    int[] left = new int[cons.length];
+    byte[] need = new byte[cons.length];
+    for (int c = 0; c < cons.length; c++) {
+      left[c] = this.consStart[cons[c] + 1] - this.consStart[cons[c]];
+      need[c] = (byte) Math.max(-1, this.consMines[cons[c]]);
+    }
+    HashMap<CountState, CountState> states = new HashMap<CountState, CountState>();
+    CountState first = new CountState(need, 0, n);
+    first.ways = 1;
+    states.put(first, first);
+
+    for (int v : order) {
+      for (int c : varCons[v]) {
+        left[c] -= 1;
+      }
+      HashMap<CountState, CountState> next = new HashMap<CountState, CountState>();
+      double most = 0;
+      for (CountState state : states.values()) {
+        for (int choice = 0; choice < 2; choice++) {
+          byte[] after = choice == 0 ? state.need : state.need.clone();
+          boolean ok = true;
+          for (int c : varCons[v]) {
+            after[c] -= choice;
+            if (after[c] < 0 || after[c] > left[c]) {
+              ok = false;
+            }
+          }
+          if (!ok) {
+            continue;
+          }
+          CountState key = new CountState(after, state.mines + choice, 0);
+          CountState found = next.get(key);
+          if (found == null) {
+            found = new CountState(after, key.mines, n);
+            next.put(found, found);
+          }
+          found.add(state, choice == 1 ? v : -1);
+          most = Math.max(most, found.ways);
+        }
+      }
+      if (most > 1e200) {
+        for (CountState state : next.values()) {
+          state.scale(1e-200);
+        }
+      }
+      states = next;
+    }
+
+    long[] byTile = new long[n];
+    for (int i = 0; i < n; i++) {
+      byTile[i] = ((long) this.tiles[vars[i]] << 32) | i;
+    }
+    Arrays.sort(byTile);
+    int[] sorted = new int[n];
+    ComponentCounts counts = new ComponentCounts(n);
+    for (int i = 0; i < n; i++) {
+      sorted[i] = (int) byTile[i];
+      counts.tiles[i] = (int) (byTile[i] >>> 32);
+    }
+    for (CountState state : states.values()) {
+      counts.ways[state.mines] += state.ways;
+      for (int i = 0; i < n; i++) {
+        counts.mineWays[i][state.mines] += state.mineWays[sorted[i]];
+      }
+    }
+    return counts;
+  }
+
+  //Assigns the tiles of a component from tile v onwards, given the earlier assignments in
+  //isMine, the open tiles and needed mines left in each constraint, and the mines placed so
+  //far, counting the arrangements that satisfy every constraint
+  long search(int v, int mines, boolean[] isMine, int[][] varCons, int[] open, int[] need,
+      long[] mineCounts, long[] byMines) {
+    if (v == isMine.length) {
+      for (int i = 0; i < isMine.length; i++) {
+        if (isMine[i]) {
+          mineCounts[i] += 1;
+        }
+      }
+      if (byMines != null) {
+        byMines[mines] += 1;
+      }
+      return 1;
+    }
+
+    long found = 0;
+    for (int choice = 0; choice < 2; choice++) {
+      boolean ok = true;
+      for (int c : varCons[v]) {
+        open[c] -= 1;
+        need[c] -= choice;
+        if (need[c] < 0 || need[c] > open[c]) {
+          ok = false;
+        }
+      }
+      if (ok) {
+        isMine[v] = choice == 1;
+        found += this.search(v + 1, mines + choice, isMine, varCons, open, need, mineCounts,
+            byMines);
+        isMine[v] = false;
+      }
+      for (int c : varCons[v]) {
+        open[c] += 1;
+        need[c] += choice;
+      }
+    }
+    return found;
+  }
+}
+
+//Plays by revealing tiles the Solver knows are safe, and otherwise the tile least likely to be
+//a mine, or a random unknown tile if the flags have made the chances impossible to work out
+class SolverStrategy implements IStrategy {
+
+  //Reveals a safe tile if one can be worked out, or guesses
+  public void move(MineWorld world, Random rand) {
+    int next = world.solver().suggest();
+    if (next < 0) {
+      next = world.probabilities().safest();
+    }
+    if (next < 0) {
+      Solver solver = world.solver();
+      next = rand.nextInt(world.board.size());
+      while (world.board.isRevealed(next) || world.board.isFlagged(next)
+          || solver.isMine(next)) {
+        next = rand.nextInt(world.board.size());
+      }
+    }
+    world.reveal(next / world.colMax, next % world.colMax);
+  }
+}
+
+class ExamplesSolver {
+  Board board1;
+  Solver solver1;
+
+  //Makes a 2x3 board with mines at 0 and 2 and the bottom row revealed:
+  //  * . *
+  //  1 2 1
+  void reset() {
+    this.board1 = new Board(2, 3);
+    this.board1.makeMine(0);
+    this.board1.makeMine(2);
+    this.board1.floodFill(3);
+    this.board1.floodFill(4);
+    this.board1.floodFill(5);
+    this.solver1 = new Solver(this.board1);
+  }
+
+  void testConstructor(Tester t) {
+    reset();
+    t.checkExpect(this.solver1.pendingCount, 3);
+    t.checkExpect(this.solver1.frontierCount, 3);
+    t.checkExpect(this.solver1.marks[3], (byte) (Solver.PENDING | Solver.FRONTIER));
+    t.checkExpect(this.solver1.marks[0], (byte) 0);
+  }
+
+  void testUnknownsAndRemaining(Tester t) {
+    reset();
+    int[] out = new int[8];
+    t.checkExpect(this.solver1.unknowns(3, out), 2);
+    t.checkExpect(Arrays.copyOf(out, 2), new int[] {0, 1});
+    t.checkExpect(this.solver1.remaining(3), 1);
+    t.checkExpect(this.solver1.remaining(4), 2);
+    this.board1.toggleFlag(0);
+    t.checkExpect(this.solver1.unknowns(3, out), 1);
+    t.checkExpect(out[0], 1);
+    t.checkExpect(this.solver1.remaining(3), 0);
+  }
+
+  void testPropagate(Tester t) {
+    reset();
+    t.checkExpect(this.solver1.propagate(), true);
+    t.checkExpect(this.solver1.isMine(0), true);
+    t.checkExpect(this.solver1.isMine(2), true);
+    t.checkExpect(this.solver1.isSafe(1), true);
+    t.checkExpect(this.solver1.isSafe(0), false);
+    t.checkExpect(this.solver1.nextSafe(), 1);
+    t.checkExpect(this.solver1.propagate(), false);
+
+    t.checkExpect(this.solver1.reveal(1), 1);
+    t.checkExpect(this.solver1.pendingCount, 4);
+    t.checkExpect(this.solver1.propagate(), false);
+    t.checkExpect(this.solver1.nextSafe(), -1);
+  }
+
+  void testUnflag(Tester t) {
+    //  0 1 .
+    //  0 1 *   where flagging 2 makes the mine at 5 look safe until the flag is taken away
+    //          again
+    Board board = new Board(2, 3);
+    board.makeMine(5);
+    board.floodFill(0);
+    Solver solver = new Solver(board);
+    board.toggleFlag(2);
+    solver.flagged(2);
+    t.checkExpect(solver.suggest(), 5);
+    board.toggleFlag(2);
+    solver.flagged(2);
+    t.checkExpect(solver.isSafe(5), false);
+    t.checkExpect(solver.suggest(), -1);
+  }
+
+  void testSubsetRule(Tester t) {
+    //  . * . *
+    //  1 1 2 1   where only the subset rule applies: the 1 at 4 covers {0, 1} and the 1 at 5
+    //            covers {0, 1, 2}, so 2 is safe
+    Board board = new Board(2, 4);
+    board.makeMine(1);
+    board.makeMine(3);
+    for (int i = 4; i < 8; i++) {
+      board.floodFill(i);
+    }
+    Solver solver = new Solver(board);
+    t.checkExpect(solver.examine(5), true);
+    t.checkExpect(solver.isSafe(2), true);
+    solver.propagate();
+    t.checkExpect(solver.isMine(1), true);
+    t.checkExpect(solver.isMine(3), true);
+    t.checkExpect(solver.isSafe(0), true);
+  }
+
+  void testEnumerate(Tester t) {
+    reset();
+    t.checkExpect(this.solver1.enumerate(), true);
+    t.checkExpect(this.solver1.isSafe(1), true);
+    t.checkExpect(this.solver1.isMine(0), true);
+    t.checkExpect(this.solver1.isMine(2), true);
+
+    reset();
+    Frontier parts = this.solver1.frontier();
+    t.checkExpect(parts.tileCount, 3);
+    t.checkExpect(parts.consCount, 3);
+    t.checkExpect(parts.componentCount(), 1);
+    long[] counts = new long[3];
+    long[] byMines = new long[4];
+    t.checkExpect(parts.enumerate(0, counts, byMines), 1L);
+    t.checkExpect(counts, new long[] {1, 0, 1});
+    t.checkExpect(byMines, new long[] {0, 0, 1, 0});
+    t.checkExpect(this.solver1.varOf, new int[] {-1, -1, -1, -1, -1, -1});
+  }
+
+  void testFrontierComponents(Tester t) {
+    //Two revealed tiles far apart on a row give two separate components
+    Board board = new Board(2, 7);
+    board.makeMine(0);
+    board.makeMine(6);
+    board.floodFill(7);
+    board.floodFill(13);
+    Frontier parts = new Solver(board).frontier();
+    t.checkExpect(parts.componentCount(), 2);
+    t.checkExpect(parts.componentSize(0), 3);
+    t.checkExpect(parts.componentSize(1), 3);
+    long[] counts = new long[3];
+    t.checkExpect(parts.enumerate(0, counts, null), 3L);
+    t.checkExpect(counts, new long[] {1, 1, 1});
+  }
+
+  void testReset(Tester t) {
+    reset();
+    this.solver1.propagate();
+    this.board1.hideAll();
+    this.solver1.reset();
+    t.checkExpect(this.solver1.marks, new byte[6]);
+    t.checkExpect(this.solver1.pendingCount, 0);
+    t.checkExpect(this.solver1.nextSafe(), -1);
+    t.checkExpect(this.solver1.frontier().tileCount, 0);
+  }
+
+  void testSuggest(Tester t) {
+    reset();
+    t.checkExpect(this.solver1.suggest(), 1);
+    t.checkExpect(new Solver(new Board(2, 2)).suggest(), -1);
+  }
+
+  void testSolverStrategy(Tester t) {
+    BatchRunner runner = new BatchRunner(9, 9, 10, new SolverStrategy());
+    BatchResult solved = runner.run(5, 200);
+    BatchResult random = new BatchRunner(9, 9, 10, new RandomStrategy()).run(5, 200);
+    t.checkExpect(solved.wins > random.wins, true);
+    t.checkExpect(solved.wins > 100, true);
+    t.checkExpect(runner.runParallel(5, 200, 3).wins, solved.wins);
+  }
+}
@@ -0,0 +1,300 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+import tester.*;
+
+//Represents the tiles one reveal or flag changed on a Board, so that the move can be taken back
+//or made again in time proportional to its size. A reveal's tiles are kept as a list of indices,
+//or as a bitmap of the whole Board when that is smaller
+class Delta {
+  boolean flag;
+  int[] tiles;
+  long[] bits;
+
+  Delta(boolean flag, int[] tiles, long[] bits) {
+    this.flag = flag;
+    this.tiles = tiles;
+    this.bits = bits;
+  }
+
+  //Returns the Delta of a reveal that revealed the first count tiles of the given list, on a
+  //Board with the given number of tiles
+  static Delta revealOf(int[] revealed, int count, int size) {
+    return Delta.revealOf(revealed, 0, count, size);
+  }
+
+  //Returns the Delta of a reveal that revealed the tiles in revealed[from .. to), on a Board
+  //with the given number of tiles
+  static Delta revealOf(int[] revealed, int from, int to, int size) {
+    if ((to - from) * 32L <= size) {
+      return new Delta(false, Arrays.copyOfRange(revealed, from, to), null);
+    }
+    long[] bits = new long[(size + 63) / 64];
+    for (int i = from; i < to; i++) {
+      bits[revealed[i] >> 6] |= 1L << revealed[i];
+    }
+    return new Delta(false, null, bits);
+  }
+
+  //Returns the Delta of toggling the flag on the tile at idx
+  static Delta flagOf(int idx) {
+    return new Delta(true, new int[] {idx}, null);
+  }
+
+  //Returns roughly how many bytes this Delta holds
+  int bytes() {
+    if (this.tiles != null) {
+      return 4 * this.tiles.length;
+    }
+    return 8 * this.bits.length;
+  }
+
+  //Takes this move back on the given Board
+  void undo(Board board) {
+    this.apply(board, false);
+  }
+
+  //Makes this move again on the given Board
+  void redo(Board board) {
+    this.apply(board, true);
+  }
+
+  //Reveals this Delta's tiles if reveal is true and hides them otherwise, or toggles its flag
+  void apply(Board board, boolean reveal) {
+    if (this.flag) {
+      board.toggleFlag(this.tiles[0]);
+    }
+    else if (this.tiles != null) {
+      for (int tile : this.tiles) {
+        this.set(board, tile, reveal);
+      }
+    }
+    else {
+      for (int w = 0; w < this.bits.length; w++) {
+        long word = this.bits[w];
+        while (word != 0) {
+          this.set(board, (w << 6) + Long.numberOfTrailingZeros(word), reveal);
+          word &= word - 1;
+        }
+      }
+    }
+  }
+
+  //Reveals or hides the tile at idx
+  void set(Board board, int idx, boolean reveal) {
+    if (reveal) {
+      board.set(idx, Board.REVEALED);
+    }
+    else {
+      board.clear(idx, Board.REVEALED);
+    }
+  }
+}
+
+//Remembers the moves made on a Board so that they can be undone and redone. Making a new move
+//forgets the moves that were undone. Once the moves remembered hold more than maxBytes, the
+//oldest are forgotten until they fit again, though the latest move is always kept
+class UndoHistory {
+  static final int DEFAULT_BYTES = 1 << 22;
+
+  Board board;
+  int maxBytes;
+  ArrayDeque<Delta> undos = new ArrayDeque<Delta>();
+  ArrayDeque<Delta> redos = new ArrayDeque<Delta>();
+  long bytes = 0;
+  int dropped = 0;
+
+  UndoHistory(Board board, int maxBytes) {
+    this.board = board;
+    this.maxBytes = maxBytes;
+  }
+
+  //Takes note of a reveal that revealed the first count tiles of the given list
+  void revealed(int[] tiles, int count) {
+    this.revealed(tiles, 0, count);
+  }
+
+  //Takes note of a reveal that revealed the tiles in tiles[from .. to)
+  void revealed(int[] tiles, int from, int to) {
+    if (to > from) {
+      this.push(Delta.revealOf(tiles, from, to, this.board.size()));
+    }
+  }
+
+  //Takes note of the flag on the tile at idx having been toggled
+  void flagged(int idx) {
+    this.push(Delta.flagOf(idx));
+  }
+
+  //Remembers the given move as the latest, forgetting any undone moves and then the oldest
+  //moves if there are too many
+  void push(Delta delta) {
+    for (Delta undone : this.redos) {
+      this.bytes -= undone.bytes();
+    }
+    this.redos.clear();
+    this.undos.addLast(delta);
+    this.bytes += delta.bytes();
+    while (this.bytes > this.maxBytes && this.undos.size() > 1) {
+      this.bytes -= this.undos.pollFirst().bytes();
+      this.dropped += 1;
+    }
+  }
+
+  //Takes back the latest move, returning false if there is none to take back
+  boolean undo() {
+    Delta delta = this.undos.pollLast();
+    if (delta == null) {
+      return false;
+    }
+    delta.undo(this.board);
+    this.redos.addLast(delta);
+    return true;
+  }
+
+  //Makes the latest undone move again, returning false if there is none
+  boolean redo() {
+    Delta delta = this.redos.pollLast();
+    if (delta == null) {
+      return false;
+    }
+    delta.redo(this.board);
+    this.undos.addLast(delta);
+    return true;
+  }
+
+  //Forgets every move
+  void clear() {
+    this.undos.clear();
+    this.redos.clear();
+    this.bytes = 0;
+  }
+}
+
+class ExamplesUndo {
+  Board board;
+  UndoHistory history;
+
+  //Makes a 4x5 board with mines at 0 and 19
+  void reset() {
+    this.board = new Board(4, 5);
+    this.board.makeMine(0);
+    this.board.makeMine(19);
+    this.history = new UndoHistory(this.board, 1000);
+  }
+
+  //Reveals the tile at idx on this test's board and notes it in its history
+  int reveal(int idx) {
+    int count = this.board.reveal(idx);
+    this.history.revealed(this.board.revealed, count);
+    return count;
+  }
+
+  //Toggles the flag on the tile at idx on this test's board and notes it in its history
+  void flag(int idx) {
+    this.board.toggleFlag(idx);
+    this.history.flagged(idx);
+  }
+
+  void testDeltas(Tester t) {
+    int[] revealed = {3, 9, 2, 70};
+    Delta small = Delta.revealOf(revealed, 3, 96);
+    t.checkExpect(small.tiles, new int[] {3, 9, 2});
+    t.checkExpect(small.bits, null);
+    t.checkExpect(small.bytes(), 12);
+    Delta big = Delta.revealOf(revealed, 4, 100);
+    t.checkExpect(big.tiles, null);
+    t.checkExpect(big.bits, new long[] {(1L << 2) | (1L << 3) | (1L << 9), 1L << 6});
+    t.checkExpect(big.bytes(), 16);
+    t.checkExpect(Delta.revealOf(revealed, 1, 3, 96).tiles, new int[] {9, 2});
+    t.checkExpect(Delta.flagOf(7).tiles, new int[] {7});
+  }
+
+  void testUndoRedo(Tester t) {
+    reset();
+    byte[] start = this.board.state.clone();
+    t.checkExpect(this.history.undo(), false);
+    this.flag(19);
+    t.checkExpect(this.reveal(14), 1);
+    t.checkExpect(this.reveal(14), 0);
+    byte[] middle = this.board.state.clone();
+    t.checkExpect(this.reveal(10), 17);
+    byte[] end = this.board.state.clone();
+    t.checkExpect(this.board.isWon(), true);
+    t.checkExpect(this.history.undos.size(), 3);
+
+    t.checkExpect(this.history.undo(), true);
+    t.checkExpect(this.board.state, middle);
+    t.checkExpect(this.board.isWon(), false);
+    t.checkExpect(this.board.safeHidden, 17);
+    t.checkExpect(this.history.undo(), true);
+    t.checkExpect(this.history.undo(), true);
+    t.checkExpect(this.history.undo(), false);
+    t.checkExpect(this.board.state, start);
+    this.board.checkCounts();
+
+    t.checkExpect(this.history.redo(), true);
+    t.checkExpect(this.history.redo(), true);
+    t.checkExpect(this.history.redo(), true);
+    t.checkExpect(this.history.redo(), false);
+    t.checkExpect(this.board.state, end);
+    t.checkExpect(this.board.isWon(), true);
+    this.board.checkCounts();
+
+    this.history.undo();
+    this.history.undo();
+    this.flag(1);
+    t.checkExpect(this.history.redos.size(), 0);
+    t.checkExpect(this.history.bytes, 8L);
+    t.checkExpect(this.history.redo(), false);
+  }
+
+  void testLostGame(Tester t) {
+    reset();
+    this.reveal(4);
+    t.checkExpect(this.reveal(0), 1);
+    t.checkExpect(this.board.isLost(), true);
+    this.history.undo();
+    t.checkExpect(this.board.isLost(), false);
+    t.checkExpect(this.board.isRevealed(4), true);
+    this.board.checkCounts();
+  }
+
+  void testBoundedMemory(Tester t) {
+    reset();
+    this.history.maxBytes = 12;
+    this.flag(1);
+    this.flag(2);
+    this.flag(3);
+    t.checkExpect(this.history.dropped, 0);
+    this.flag(4);
+    t.checkExpect(this.history.dropped, 1);
+    t.checkExpect(this.history.bytes, 12L);
+    this.reveal(10);
+    t.checkExpect(this.history.undos.size(), 2);
+    t.checkExpect(this.history.dropped, 3);
+    t.checkExpect(this.history.undo(), true);
+    t.checkExpect(this.history.undo(), true);
+    t.checkExpect(this.history.undo(), false);
+    t.checkExpect(this.board.isFlagged(4), false);
+    t.checkExpect(this.board.isFlagged(3), true);
+    this.history.clear();
+    t.checkExpect(this.history.bytes, 0L);
+    t.checkExpect(this.history.redo(), false);
+  }
+
+  void testLargeReveal(Tester t) {
+    Board big = new Board(1000, 1000);
+    big.makeMine(999999);
+    UndoHistory history = new UndoHistory(big, UndoHistory.DEFAULT_BYTES);
+    int count = big.floodFill(0);
+    history.revealed(big.revealed, count);
+    t.checkExpect(history.bytes, 8L * 15625);
+    history.undo();
+    t.checkExpect(big.safeHidden, 999999);
+    t.checkExpect(big.isRevealed(0), false);
+    history.redo();
+    t.checkExpect(big.isWon(), true);
+    big.checkCounts();
+  }
+}